@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Measures generating the payload pool at startup and picking a payload for each record. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PayloadBenchmark {
+
+  // the size of the pool generated for a --record-size distribution
+  private static final int POOL_SIZE = 1024;
+
+  @Param({"100", "1024", "uniform:100-10000"})
+  public String recordSize;
+
+  @Param({"false", "true"})
+  public boolean offHeap;
+
+  private int[] sizes;
+  private PayloadSource.Reader reader;
+
+  @Setup
+  public void setUp() {
+    sizes =
+        RecordSizeDistribution.parse(recordSize).sample(POOL_SIZE, 0L);
+    reader = PayloadPool.generate(sizes, offHeap, 0L).newReader();
+  }
+
+  @Benchmark
+  public byte[] next() {
+    return reader.next();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public PayloadPool generate() {
+    return PayloadPool.generate(sizes, offHeap, 0L);
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures the cost of acquiring a permit while every producer thread contends for the shared
+ * limiter. The rate is far higher than the threads can send, so acquiring never waits and only the
+ * cost of claiming a slot is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class RateLimiterBenchmark {
+
+  @Param({"unlimited", "constant", "profile", "adjustable"})
+  public String mode;
+
+  private RateLimiter rateLimiter;
+
+  @Setup
+  public void setUp() {
+    switch (mode) {
+      case "unlimited":
+        rateLimiter = new RateLimiter(-1);
+        break;
+      case "constant":
+        rateLimiter = new RateLimiter(Integer.MAX_VALUE);
+        break;
+      case "profile":
+        rateLimiter = new RateLimiter(LoadProfile.parse("ramp:1000000000-2000000000:1h"));
+        break;
+      default:
+        rateLimiter = RateLimiter.adjustable(Integer.MAX_VALUE);
+        break;
+    }
+    rateLimiter.start(System.nanoTime());
+  }
+
+  @Benchmark
+  public long acquire() {
+    return rateLimiter.acquire();
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures one pass of the producer thread's send loop, from picking the payload and key to the
+ * acknowledgement being recorded, against the --dry-run sink so that no network is involved.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SendBenchmark {
+
+  // the size of the pool generated for a --record-size distribution
+  private static final int POOL_SIZE = 1024;
+
+  @Param({"none", "uniform"})
+  public String keyDistribution;
+
+  private final ProducerStats stats = new ProducerStats();
+  private SinkProducer sink;
+  private Workload workload;
+  private PayloadSource.Reader payloads;
+  private KeyGenerator.Reader keys;
+  private SendCallback.Pool callbacks;
+  private long sequence;
+
+  @Setup
+  public void setUp() {
+    int[] sizes = RecordSizeDistribution.parse("1024").sample(POOL_SIZE, 0L);
+    workload =
+        new Workload(
+            "benchmark",
+            new RateLimiter(-1),
+            PayloadPool.generate(sizes, false, 0L),
+            KeyGenerator.create(keyDistribution, 1000),
+            null,
+            0,
+            null,
+            false);
+    workload.start(System.nanoTime());
+    sink = new SinkProducer(new Properties(), 0, 0);
+    payloads = workload.getPayloads().newReader();
+    keys = workload.getKeys().newReader();
+    callbacks = new SendCallback.Pool(stats, null, 1024);
+  }
+
+  @TearDown
+  public void tearDown() {
+    sink.close();
+  }
+
+  @Benchmark
+  public void send() {
+    byte[] payload = payloads.next();
+    int keyIndex = keys.next();
+    long i = sequence++;
+    ProducerRecord<byte[], byte[]> record =
+        new ProducerRecord<>(
+            workload.getTopic(),
+            workload.partitionFor(keyIndex, i),
+            workload.getKeys().key(keyIndex),
+            payload);
+    long scheduledNanos = workload.getRateLimiter().acquire();
+    SendCallback callback = callbacks.acquire();
+    callback.prepare(scheduledNanos, System.nanoTime(), payload.length);
+    sink.send(record, callback);
+    stats.recordSend();
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures recording a latency and recording a whole acknowledgement, which happens on the Kafka
+ * client's network thread for every record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StatsBenchmark {
+
+  private static final int LATENCIES = 1024;
+
+  private final LatencyHistogram histogram = new LatencyHistogram();
+  private final ProducerStats stats = new ProducerStats();
+  private final long[] latencyNanos = new long[LATENCIES];
+  private int next;
+
+  @Setup
+  public void setUp() {
+    // a long-tailed spread of latencies, so that recording touches many buckets
+    Random random = new Random(0L);
+    for (int i = 0; i < LATENCIES; i++) {
+      latencyNanos[i] = (long) (1_000_000 * Math.exp(random.nextGaussian()));
+    }
+  }
+
+  @Benchmark
+  public void recordLatency() {
+    histogram.record(latencyNanos[next++ & (LATENCIES - 1)] / 1000);
+  }
+
+  @Benchmark
+  public void recordAck() {
+    long latency = latencyNanos[next++ & (LATENCIES - 1)];
+    stats.recordAck(latency, latency, 1024);
+  }
+}
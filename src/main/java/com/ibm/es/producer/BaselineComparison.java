@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares a run against the JSON results of an earlier run, for --baseline. The run regresses if
+ * its throughput is lower, or its 99th percentile latency higher, than the baseline's by more than
+ * the threshold.
+ */
+public class BaselineComparison {
+
+  /** One figure compared against the baseline. */
+  public static class Check {
+    private final String name;
+    private final double baseline;
+    private final double current;
+    private final boolean regressed;
+
+    Check(String name, double baseline, double current, boolean regressed) {
+      this.name = name;
+      this.baseline = baseline;
+      this.current = current;
+      this.regressed = regressed;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public double getBaseline() {
+      return baseline;
+    }
+
+    public double getCurrent() {
+      return current;
+    }
+
+    /** The change from the baseline as a percentage of the baseline. */
+    public double getChangePercent() {
+      return baseline == 0 ? 0.0 : (current - baseline) / baseline * 100;
+    }
+
+    public boolean isRegressed() {
+      return regressed;
+    }
+  }
+
+  private final List<Check> checks;
+
+  private BaselineComparison(List<Check> checks) {
+    this.checks = checks;
+  }
+
+  /** Reads a baseline results file and compares the given run against it. */
+  public static BaselineComparison compare(
+      String baselinePath, ProducerStats.Snapshot total, double thresholdPercent)
+      throws IOException {
+    String text = new String(Files.readAllBytes(Paths.get(baselinePath)), StandardCharsets.UTF_8);
+    Map<String, Object> baseline = summaryOf(Json.parse(text), baselinePath);
+    Map<String, Object> current = ResultsWriter.summarize(total);
+
+    List<Check> checks = new ArrayList<>();
+    double threshold = thresholdPercent / 100;
+    double baselineThroughput = number(baseline, "recordsPerSecond", baselinePath);
+    double throughput = (Double) current.get("recordsPerSecond");
+    checks.add(
+        new Check(
+            "recordsPerSecond",
+            baselineThroughput,
+            throughput,
+            throughput < baselineThroughput * (1 - threshold)));
+
+    double baselineLatency =
+        number(section(baseline, "latencyMs", baselinePath), "p99", baselinePath);
+    double latency = (Double) section(current, "latencyMs", baselinePath).get("p99");
+    checks.add(
+        new Check(
+            "latencyMs.p99",
+            baselineLatency,
+            latency,
+            latency > baselineLatency * (1 + threshold)));
+    return new BaselineComparison(checks);
+  }
+
+  private static Map<String, Object> summaryOf(Object results, String path) {
+    if (!(results instanceof Map)) {
+      throw new IllegalArgumentException("The baseline " + path + " is not a results file");
+    }
+    return section(castMap(results), "summary", path);
+  }
+
+  private static Map<String, Object> section(Map<String, Object> map, String name, String path) {
+    Object value = map.get(name);
+    if (!(value instanceof Map)) {
+      throw new IllegalArgumentException("The baseline " + path + " has no " + name);
+    }
+    return castMap(value);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> castMap(Object value) {
+    return (Map<String, Object>) value;
+  }
+
+  private static double number(Map<String, Object> map, String name, String path) {
+    Object value = map.get(name);
+    if (!(value instanceof Number)) {
+      throw new IllegalArgumentException("The baseline " + path + " has no " + name);
+    }
+    return ((Number) value).doubleValue();
+  }
+
+  public List<Check> getChecks() {
+    return Collections.unmodifiableList(checks);
+  }
+
+  public boolean isRegression() {
+    for (Check check : checks) {
+      if (check.isRegressed()) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
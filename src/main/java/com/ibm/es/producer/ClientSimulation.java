@@ -0,0 +1,234 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs many logical clients, each with its own Kafka producer and its own low rate, on a small pool
+ * of carrier threads, for --clients. Each client is a periodic task rather than a thread, so
+ * thousands of mostly idle clients cost a scheduled task each instead of a thread stack each.
+ *
+ * <p>Clients are paced independently: client k sends its n-th record at a fixed offset plus n
+ * periods of --client-rate from the start of the run, and latency from the scheduled send time is
+ * measured from that point even if the carriers fall behind.
+ */
+public class ClientSimulation {
+
+  private static Logger logger = LoggerFactory.getLogger(ClientSimulation.class);
+
+  // a client only has a few records in flight at its low rate, so its callback ring is small
+  private static final int CALLBACK_POOL_SIZE = 8;
+
+  private final Workload workload;
+  private final List<Client> clients = new ArrayList<>();
+  private final ProducerStats[] stats;
+  private final ScheduledThreadPoolExecutor carriers;
+  private final CountDownLatch finished;
+  private final long periodNanos;
+  private final long rampNanos;
+
+  /**
+   * Creates a client for each producer, sharing the records between them, to run on the given
+   * number of carrier threads. A ramp of 0 spreads the clients' first sends randomly over one
+   * period; otherwise the clients start one after another over the ramp.
+   */
+  ClientSimulation(
+      List<org.apache.kafka.clients.producer.Producer<byte[], byte[]>> producers,
+      long numRecords,
+      double clientRate,
+      long rampNanos,
+      int carrierThreads,
+      Workload workload) {
+    this.workload = workload;
+    this.periodNanos = (long) (1e9 / clientRate);
+    this.rampNanos = rampNanos;
+    this.stats = new ProducerStats[carrierThreads];
+    for (int i = 0; i < carrierThreads; i++) {
+      stats[i] = new ProducerStats();
+    }
+
+    ThreadGroup group = new ThreadGroup("Clients");
+    AtomicInteger created = new AtomicInteger();
+    this.carriers =
+        new ScheduledThreadPoolExecutor(
+            carrierThreads,
+            runnable -> {
+              int index = created.getAndIncrement();
+              ProducerStats carrierStats = stats[index % stats.length];
+              // statistics start on the carrier itself, so that its allocation is tracked
+              Thread thread =
+                  new Thread(
+                      group,
+                      () -> {
+                        carrierStats.start(System.nanoTime());
+                        runnable.run();
+                      },
+                      String.format("client-carrier%d", index));
+              thread.setDaemon(true);
+              return thread;
+            });
+    carriers.setRemoveOnCancelPolicy(true);
+
+    int count = producers.size();
+    long perClient = workload.hasDuration() ? Long.MAX_VALUE : numRecords / count;
+    long remainder = workload.hasDuration() ? 0 : numRecords % count;
+    this.finished = new CountDownLatch(count);
+    for (int i = 0; i < count; i++) {
+      clients.add(
+          new Client(
+              producers.get(i),
+              i < remainder ? perClient + 1 : perClient,
+              stats[i % stats.length]));
+    }
+  }
+
+  /** Starts the carrier threads and schedules every client. */
+  void start(long startNanos) {
+    carriers.prestartAllCoreThreads();
+    Random random = new Random(0L);
+    for (int i = 0; i < clients.size(); i++) {
+      long offset =
+          rampNanos > 0
+              ? rampNanos * i / clients.size()
+              : (long) (random.nextDouble() * periodNanos);
+      clients.get(i).schedule(startNanos, offset);
+    }
+  }
+
+  /** Waits for every client to send its share of the records and flushes their producers. */
+  void awaitCompletion() throws InterruptedException {
+    finished.await();
+    for (Client client : clients) {
+      client.kafkaProducer.flush();
+    }
+    long now = System.nanoTime();
+    for (ProducerStats carrierStats : stats) {
+      carrierStats.finish(now);
+    }
+    carriers.shutdown();
+  }
+
+  void close() {
+    carriers.shutdownNow();
+  }
+
+  /** Combines the statistics of every carrier thread. */
+  ProducerStats.Snapshot aggregate() {
+    ProducerStats.Snapshot total = new ProducerStats.Snapshot();
+    for (ProducerStats carrierStats : stats) {
+      total.merge(carrierStats.snapshot());
+    }
+    return total;
+  }
+
+  int getClientCount() {
+    return clients.size();
+  }
+
+  private class Client implements Runnable {
+    private final org.apache.kafka.clients.producer.Producer<byte[], byte[]> kafkaProducer;
+    private final long numRecords;
+    private final ProducerStats stats;
+    private final PayloadSource.Reader payloadReader;
+    private final KeyGenerator.Reader keyReader;
+    private final SendCallback.Pool callbacks;
+    private long firstNanos;
+    private long sent;
+    private volatile boolean done;
+    private volatile ScheduledFuture<?> future;
+
+    Client(
+        org.apache.kafka.clients.producer.Producer<byte[], byte[]> kafkaProducer,
+        long numRecords,
+        ProducerStats stats) {
+      this.kafkaProducer = kafkaProducer;
+      this.numRecords = numRecords;
+      this.stats = stats;
+      this.payloadReader = workload.getPayloads().newReader();
+      this.keyReader = workload.getKeys().newReader();
+      this.callbacks =
+          new SendCallback.Pool(stats, workload.getPartitionStats(), CALLBACK_POOL_SIZE);
+    }
+
+    void schedule(long startNanos, long offsetNanos) {
+      firstNanos = startNanos + offsetNanos;
+      if (numRecords == 0) {
+        finish();
+        return;
+      }
+      long delay = firstNanos - System.nanoTime();
+      future =
+          carriers.scheduleAtFixedRate(this, Math.max(0, delay), periodNanos, TimeUnit.NANOSECONDS);
+      if (done) {
+        // the client finished before its future was set
+        future.cancel(false);
+      }
+    }
+
+    @Override
+    public void run() {
+      if (done) {
+        return;
+      }
+      long scheduledNanos = firstNanos + sent * periodNanos;
+      if (sent >= numRecords || workload.isPastEnd(scheduledNanos)) {
+        finish();
+        return;
+      }
+      try {
+        byte[] payload = payloadReader.next();
+        int keyIndex = keyReader.next();
+        ProducerRecord<byte[], byte[]> record =
+            new ProducerRecord<>(
+                workload.getTopic(),
+                workload.partitionFor(keyIndex, sent),
+                workload.getKeys().key(keyIndex),
+                payload);
+        long sendStartNanos = System.nanoTime();
+        if (workload.isEndToEnd()) {
+          EndToEndConsumer.stamp(record, sendStartNanos);
+        }
+        SendCallback callback = callbacks.acquire();
+        callback.prepare(scheduledNanos, sendStartNanos, payload.length);
+        kafkaProducer.send(record, callback);
+        stats.recordSend();
+        sent++;
+      } catch (Exception error) {
+        logger.error("Failed to execute", error);
+        finish();
+      }
+    }
+
+    private void finish() {
+      done = true;
+      if (future != null) {
+        future.cancel(false);
+      }
+      finished.countDown();
+    }
+  }
+}
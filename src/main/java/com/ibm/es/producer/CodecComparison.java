@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.kafka.common.record.BufferSupplier;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.record.MemoryRecords;
+import org.apache.kafka.common.record.MemoryRecordsBuilder;
+import org.apache.kafka.common.record.MutableRecordBatch;
+import org.apache.kafka.common.record.Record;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.utils.CloseableIterator;
+
+/**
+ * Measures each of Kafka's compression codecs on a corpus of records, without a broker, for
+ * --compare-codecs. Records are compressed the way the producer compresses them: appended to record
+ * batches of up to batch.size bytes with Kafka's own batch format, so the ratios include the batch
+ * overhead and benefit from repetition between the records of a batch, as they do in a real run.
+ * Each codec compresses and decompresses the corpus over and over for the measurement time, after
+ * one pass to warm up.
+ */
+public class CodecComparison {
+
+  static final CompressionType[] CODECS = {
+    CompressionType.NONE,
+    CompressionType.GZIP,
+    CompressionType.SNAPPY,
+    CompressionType.LZ4,
+    CompressionType.ZSTD
+  };
+
+  /** How one codec did on the corpus. */
+  public static class Result {
+    private final CompressionType codec;
+    private final long batchBytes;
+    private final long uncompressedBatchBytes;
+    private final long payloadBytes;
+    private final double compressSeconds;
+    private final double decompressSeconds;
+
+    Result(
+        CompressionType codec,
+        long batchBytes,
+        long uncompressedBatchBytes,
+        long payloadBytes,
+        double compressSeconds,
+        double decompressSeconds) {
+      this.codec = codec;
+      this.batchBytes = batchBytes;
+      this.uncompressedBatchBytes = uncompressedBatchBytes;
+      this.payloadBytes = payloadBytes;
+      this.compressSeconds = compressSeconds;
+      this.decompressSeconds = decompressSeconds;
+    }
+
+    public CompressionType getCodec() {
+      return codec;
+    }
+
+    /** The size of the compressed batches as a fraction of the uncompressed batches. */
+    public double getRatio() {
+      return (double) batchBytes / uncompressedBatchBytes;
+    }
+
+    /** Megabytes of keys and values compressed per second on one thread. */
+    public double getCompressMegabytesPerSecond() {
+      return payloadBytes / compressSeconds / (1024 * 1024);
+    }
+
+    /** Megabytes of keys and values decompressed per second on one thread. */
+    public double getDecompressMegabytesPerSecond() {
+      return payloadBytes / decompressSeconds / (1024 * 1024);
+    }
+  }
+
+  private final List<byte[]> keys = new ArrayList<>();
+  private final List<byte[]> values = new ArrayList<>();
+  private final int batchSize;
+  private long corpusBytes;
+  // values read back by the last decompression, so the reads cannot be optimized away
+  private long bytesRead;
+
+  public CodecComparison(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  /** Adds a record to the corpus. The arrays are kept, so callers must not reuse them. */
+  public void add(byte[] key, byte[] value) {
+    keys.add(key);
+    values.add(value);
+    corpusBytes += (key == null ? 0 : key.length) + (value == null ? 0 : value.length);
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public int getRecordCount() {
+    return values.size();
+  }
+
+  /** The bytes of keys and values in the corpus. */
+  public long getCorpusBytes() {
+    return corpusBytes;
+  }
+
+  /** Measures every codec for about the given time each. */
+  public List<Result> run(long measureNanos) {
+    List<Result> results = new ArrayList<>();
+    long uncompressedBatchBytes = 0;
+    for (CompressionType codec : CODECS) {
+      List<MemoryRecords> batches = compress(codec);
+      long batchBytes = 0;
+      for (MemoryRecords batch : batches) {
+        batchBytes += batch.sizeInBytes();
+      }
+      if (codec == CompressionType.NONE) {
+        uncompressedBatchBytes = batchBytes;
+      }
+      decompress(batches);
+
+      long passes = 0;
+      long start = System.nanoTime();
+      long elapsed;
+      do {
+        compress(codec);
+        passes++;
+      } while ((elapsed = System.nanoTime() - start) < measureNanos);
+      double compressSeconds = elapsed / 1e9 / passes;
+
+      passes = 0;
+      start = System.nanoTime();
+      do {
+        decompress(batches);
+        passes++;
+      } while ((elapsed = System.nanoTime() - start) < measureNanos);
+      double decompressSeconds = elapsed / 1e9 / passes;
+
+      results.add(
+          new Result(
+              codec,
+              batchBytes,
+              uncompressedBatchBytes,
+              corpusBytes,
+              compressSeconds,
+              decompressSeconds));
+    }
+    return results;
+  }
+
+  /**
+   * Appends the corpus to batches of up to batch.size bytes, as the producer's accumulator does.
+   */
+  private List<MemoryRecords> compress(CompressionType codec) {
+    List<MemoryRecords> batches = new ArrayList<>();
+    MemoryRecordsBuilder builder = null;
+    for (int i = 0; i < values.size(); i++) {
+      byte[] key = keys.get(i);
+      byte[] value = values.get(i);
+      if (builder != null && !builder.hasRoomFor(0L, key, value, Record.EMPTY_HEADERS)) {
+        batches.add(builder.build());
+        builder = null;
+      }
+      if (builder == null) {
+        builder =
+            MemoryRecords.builder(
+                ByteBuffer.allocate(batchSize), codec, TimestampType.CREATE_TIME, 0L);
+      }
+      builder.append(0L, key, value);
+    }
+    if (builder != null) {
+      batches.add(builder.build());
+    }
+    return batches;
+  }
+
+  /** Reads every record back, as a consumer does. */
+  private void decompress(List<MemoryRecords> batches) {
+    long bytes = 0;
+    BufferSupplier buffers = BufferSupplier.create();
+    for (MemoryRecords records : batches) {
+      for (MutableRecordBatch batch : records.batches()) {
+        try (CloseableIterator<Record> iterator = batch.streamingIterator(buffers)) {
+          while (iterator.hasNext()) {
+            bytes += iterator.next().valueSize();
+          }
+        }
+      }
+    }
+    bytesRead = bytes;
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs --compare-codecs: compresses the records that the run would send with every codec and prints
+ * how much smaller and how fast each one is, without connecting to Kafka.
+ */
+public final class CodecMode {
+
+  private static Logger logger = LoggerFactory.getLogger(CodecMode.class);
+  private static ResourceBundle producerTranslations =
+      ResourceBundle.getBundle("MessageBundle", Locale.getDefault());
+
+  // how long each codec is measured for when --duration is not set
+  private static final long DEFAULT_MEASURE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private CodecMode() {}
+
+  /** Compares the codecs and returns the exit code for the tool. */
+  public static int run(Producer producer) {
+    LoadEngine engine = producer.createEngine();
+    CodecComparison comparison;
+    try {
+      comparison = engine.prepareCodecComparison();
+    } catch (IOException exception) {
+      System.err.println(producerTranslations.getString("producer.startFail"));
+      logger.error(producerTranslations.getString("producer.startFail"), exception);
+      return 1;
+    }
+    long measureNanos =
+        producer.getDurationNanos() > 0 ? producer.getDurationNanos() : DEFAULT_MEASURE_NANOS;
+    System.out.println(
+        String.format(
+            producerTranslations.getString("producer.codecs.start"),
+            comparison.getRecordCount(),
+            comparison.getCorpusBytes() / (1024.0 * 1024.0),
+            comparison.getBatchSize(),
+            measureNanos / 1e9));
+    for (CodecComparison.Result result : comparison.run(measureNanos)) {
+      System.out.println(
+          String.format(
+              producerTranslations.getString("producer.codecs.result"),
+              result.getCodec().name,
+              result.getRatio() * 100,
+              (1 - result.getRatio()) * 100,
+              result.getCompressMegabytesPerSecond(),
+              result.getDecompressMegabytesPerSecond()));
+    }
+    return 0;
+  }
+}
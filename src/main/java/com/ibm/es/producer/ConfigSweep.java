@@ -0,0 +1,237 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The producer configurations to compare with --sweep. Each swept property has a list of values,
+ * given as {@code name=a,b,c}, or a range of numbers, given as {@code name=FROM..TO+STEP} or {@code
+ * name=FROM..TO*FACTOR}. Properties are separated by semicolons, or read one per line from {@code
+ * file:PATH}.
+ *
+ * <p>The full grid holds every combination of values. A sample of it is chosen by Latin hypercube
+ * sampling, which spreads the sample so that every value of every property is used about equally
+ * often, however few combinations are run.
+ */
+public class ConfigSweep {
+
+  private static final int MAX_RANGE_VALUES = 1000;
+
+  /** The most combinations a sweep may run, whether the full grid or a sample of it. */
+  public static final long MAX_RUNS = 1000;
+
+  /** The outcome of running one combination. */
+  public static class Result {
+    private final Map<String, String> overrides;
+    private final ProducerStats.Snapshot total;
+
+    public Result(Map<String, String> overrides, ProducerStats.Snapshot total) {
+      this.overrides = overrides;
+      this.total = total;
+    }
+
+    public Map<String, String> getOverrides() {
+      return overrides;
+    }
+
+    public ProducerStats.Snapshot getTotal() {
+      return total;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder description = new StringBuilder();
+      for (Map.Entry<String, String> override : overrides.entrySet()) {
+        if (description.length() > 0) {
+          description.append(", ");
+        }
+        description.append(override.getKey()).append('=').append(override.getValue());
+      }
+      return description.toString();
+    }
+  }
+
+  private final Map<String, List<String>> parameters;
+
+  private ConfigSweep(Map<String, List<String>> parameters) {
+    this.parameters = parameters;
+  }
+
+  /** Parses a --sweep value, throwing IllegalArgumentException if it is not valid. */
+  public static ConfigSweep parse(String value) {
+    String spec = value.trim();
+    List<String> lines = new ArrayList<>();
+    if (spec.startsWith("file:")) {
+      String path = spec.substring("file:".length());
+      try {
+        lines.addAll(Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8));
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Could not read sweep " + path, e);
+      }
+    } else {
+      lines.addAll(Arrays.asList(spec.split(";")));
+    }
+
+    Map<String, List<String>> parameters = new LinkedHashMap<>();
+    for (String line : lines) {
+      String trimmed = line.trim();
+      if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+        continue;
+      }
+      int equals = trimmed.indexOf('=');
+      if (equals <= 0) {
+        throw new IllegalArgumentException("Invalid sweep property " + trimmed);
+      }
+      String name = trimmed.substring(0, equals).trim();
+      String values = trimmed.substring(equals + 1).trim();
+      parameters.put(name, values.contains("..") ? range(trimmed, values) : list(trimmed, values));
+    }
+    if (parameters.isEmpty()) {
+      throw new IllegalArgumentException("The sweep " + spec + " has no properties");
+    }
+    return new ConfigSweep(parameters);
+  }
+
+  private static List<String> list(String spec, String values) {
+    List<String> list = new ArrayList<>();
+    for (String item : values.split(",")) {
+      if (!item.trim().isEmpty()) {
+        list.add(item.trim());
+      }
+    }
+    if (list.isEmpty()) {
+      throw new IllegalArgumentException("No values in sweep property " + spec);
+    }
+    return list;
+  }
+
+  private static List<String> range(String spec, String values) {
+    int dots = values.indexOf("..");
+    int step = Math.max(values.indexOf('+'), values.indexOf('*'));
+    if (step < dots) {
+      throw new IllegalArgumentException("Invalid sweep range " + spec);
+    }
+    long from = Long.parseLong(values.substring(0, dots).trim());
+    long to = Long.parseLong(values.substring(dots + 2, step).trim());
+    long by = Long.parseLong(values.substring(step + 1).trim());
+    boolean multiply = values.charAt(step) == '*';
+    if (to < from || (multiply ? by < 2 || from < 1 : by < 1)) {
+      throw new IllegalArgumentException("Invalid sweep range " + spec);
+    }
+    List<String> list = new ArrayList<>();
+    for (long v = from; v <= to; v = multiply ? v * by : v + by) {
+      list.add(Long.toString(v));
+      if (list.size() > MAX_RANGE_VALUES) {
+        throw new IllegalArgumentException("Too many values in sweep range " + spec);
+      }
+    }
+    return list;
+  }
+
+  /**
+   * The number of combinations in the full grid.
+   *
+   * @throws ArithmeticException if the number does not fit in a long
+   */
+  public long getGridSize() {
+    long size = 1;
+    for (List<String> values : parameters.values()) {
+      size = Math.multiplyExact(size, values.size());
+    }
+    return size;
+  }
+
+  /**
+   * The combinations to run: the full grid when samples is 0 or at least the size of the grid, or
+   * else a Latin hypercube sample of the given number of combinations.
+   */
+  public List<Map<String, String>> combinations(int samples, long seed) {
+    if (samples <= 0 || samples >= getGridSize()) {
+      return grid();
+    }
+    Random random = new Random(seed);
+    List<Map<String, String>> combinations = new ArrayList<>();
+    for (int i = 0; i < samples; i++) {
+      combinations.add(new LinkedHashMap<>());
+    }
+    for (Map.Entry<String, List<String>> parameter : parameters.entrySet()) {
+      List<String> values = parameter.getValue();
+      // divide the samples into as many equal strata as there are values, then shuffle them
+      List<Integer> strata = new ArrayList<>();
+      for (int i = 0; i < samples; i++) {
+        strata.add((int) ((long) i * values.size() / samples));
+      }
+      Collections.shuffle(strata, random);
+      for (int i = 0; i < samples; i++) {
+        combinations.get(i).put(parameter.getKey(), values.get(strata.get(i)));
+      }
+    }
+    return combinations;
+  }
+
+  /**
+   * Orders results from best to worst. Combinations with errors come last. When the rate is
+   * limited, every combination should reach it, so the lowest 99th percentile latency is best;
+   * otherwise the highest throughput is.
+   */
+  public static List<Result> rank(List<Result> results, boolean byLatency) {
+    Comparator<Result> order =
+        Comparator.comparing((Result result) -> result.getTotal().getErrors() > 0);
+    if (byLatency) {
+      order =
+          order
+              .thenComparingDouble(result -> result.getTotal().getLatencyPercentileMs(99))
+              .thenComparingDouble(result -> -result.getTotal().getRecordsPerSecond());
+    } else {
+      order =
+          order
+              .thenComparingDouble(result -> -result.getTotal().getRecordsPerSecond())
+              .thenComparingDouble(result -> result.getTotal().getLatencyPercentileMs(99));
+    }
+    List<Result> ranked = new ArrayList<>(results);
+    ranked.sort(order);
+    return ranked;
+  }
+
+  private List<Map<String, String>> grid() {
+    List<Map<String, String>> combinations = new ArrayList<>();
+    combinations.add(new LinkedHashMap<>());
+    for (Map.Entry<String, List<String>> parameter : parameters.entrySet()) {
+      List<Map<String, String>> expanded = new ArrayList<>();
+      for (Map<String, String> combination : combinations) {
+        for (String value : parameter.getValue()) {
+          Map<String, String> next = new LinkedHashMap<>(combination);
+          next.put(parameter.getKey(), value);
+          expanded.add(next);
+        }
+      }
+      combinations = expanded;
+    }
+    return combinations;
+  }
+}
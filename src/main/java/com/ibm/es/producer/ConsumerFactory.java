@@ -13,28 +13,16 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package org.apache.kafka.tools;
+package com.ibm.es.producer;
 
-public class ProducerPerformance {
+import java.util.Properties;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
 
-  private static String[] arguments;
-  private static int callCount = 0;
+/** Creates the consumer that reads the records back for --end-to-end. */
+@FunctionalInterface
+public interface ConsumerFactory {
 
-  public static void main(String[] args) {
-    arguments = args;
-    callCount++;
-  }
+  ConsumerFactory KAFKA = KafkaConsumer::new;
 
-  public static String[] getArguments() {
-    return arguments;
-  }
-
-  public static int getCallCount() {
-    return callCount;
-  }
-
-  public static void reset() {
-    arguments = null;
-    callCount = 0;
-  }
+  org.apache.kafka.clients.consumer.Consumer<byte[], byte[]> create(Properties properties);
 }
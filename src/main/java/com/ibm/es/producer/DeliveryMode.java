@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.Locale;
+import java.util.Properties;
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+/** The delivery guarantee the producers are benchmarked with, from --delivery-mode. */
+public enum DeliveryMode {
+  /** Records are sent with the configured properties, which by default do not wait for acks. */
+  PLAIN,
+  /** Every producer is idempotent, so retries cannot duplicate or reorder records. */
+  IDEMPOTENT,
+  /** Every producer is idempotent and sends its records in transactions. */
+  TRANSACTIONAL;
+
+  /** The transactional.id prefix when the configuration does not set one. */
+  static final String DEFAULT_TRANSACTIONAL_ID = "es-producer";
+
+  /** Parses a --delivery-mode value, throwing IllegalArgumentException if it is unknown. */
+  public static DeliveryMode parse(String value) {
+    return valueOf(value.trim().toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Sets the properties of one producer instance that this mode needs. Idempotence requires
+   * acks=all, so this takes precedence over the configuration, and each transactional producer gets
+   * its own transactional.id: the configured one, or es-producer, followed by the instance.
+   */
+  void configure(Properties properties, int instance) {
+    if (this == PLAIN) {
+      return;
+    }
+    properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+    properties.put(ProducerConfig.ACKS_CONFIG, "all");
+    if (this == TRANSACTIONAL) {
+      String prefix = properties.getProperty(ProducerConfig.TRANSACTIONAL_ID_CONFIG);
+      properties.put(
+          ProducerConfig.TRANSACTIONAL_ID_CONFIG,
+          (prefix == null || prefix.trim().isEmpty() ? DEFAULT_TRANSACTIONAL_ID : prefix.trim())
+              + "-"
+              + instance);
+    } else {
+      properties.remove(ProducerConfig.TRANSACTIONAL_ID_CONFIG);
+    }
+  }
+}
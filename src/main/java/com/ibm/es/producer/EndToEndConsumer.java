@@ -0,0 +1,162 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The in-process consumer of --end-to-end. Each record is stamped with the time it was sent in a
+ * header, and this thread reads the records back from the topic and measures how long each took to
+ * reach a consumer. Both ends read the clock of the same JVM, so no clock synchronization is
+ * needed. Records without the header, such as those sent by other applications, are skipped.
+ */
+public class EndToEndConsumer extends Thread {
+
+  private static Logger logger = LoggerFactory.getLogger(EndToEndConsumer.class);
+
+  static final String SEND_NANOS_HEADER = "es-producer-send-nanos";
+
+  private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+  // an in-process stand-in consumer returns from poll() at once when it has nothing to read
+  private static final long IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final Consumer<byte[], byte[]> consumer;
+  private final String topic;
+  private final LatencyHistogram latencies = new LatencyHistogram();
+  private volatile long consumed;
+  private volatile boolean stopping;
+
+  EndToEndConsumer(Consumer<byte[], byte[]> consumer, String topic) {
+    super("end-to-end-consumer");
+    setDaemon(true);
+    this.consumer = consumer;
+    this.topic = topic;
+  }
+
+  /** Adds the time a record is sent to its headers. */
+  static void stamp(ProducerRecord<byte[], byte[]> record, long sendNanos) {
+    byte[] value = new byte[Long.BYTES];
+    for (int i = Long.BYTES - 1; i >= 0; i--) {
+      value[i] = (byte) sendNanos;
+      sendNanos >>>= 8;
+    }
+    record.headers().add(SEND_NANOS_HEADER, value);
+  }
+
+  private static long sendNanos(byte[] value) {
+    long nanos = 0;
+    for (int i = 0; i < Long.BYTES; i++) {
+      nanos = (nanos << 8) | (value[i] & 0xff);
+    }
+    return nanos;
+  }
+
+  /**
+   * Assigns every partition of the topic and moves to the end of each, so that only records sent
+   * from now on are read. Called before the producers start.
+   */
+  void assignPartitions() {
+    List<TopicPartition> partitions = new ArrayList<>();
+    for (PartitionInfo partition : consumer.partitionsFor(topic)) {
+      partitions.add(new TopicPartition(topic, partition.partition()));
+    }
+    consumer.assign(partitions);
+    consumer.seekToEnd(partitions);
+    // seekToEnd() is lazy, so look the positions up now rather than at the first poll
+    for (TopicPartition partition : partitions) {
+      consumer.position(partition);
+    }
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (!stopping) {
+        ConsumerRecords<byte[], byte[]> records = consumer.poll(POLL_TIMEOUT);
+        long nowNanos = System.nanoTime();
+        if (records.isEmpty()) {
+          LockSupport.parkNanos(IDLE_NANOS);
+          continue;
+        }
+        long stamped = 0;
+        for (ConsumerRecord<byte[], byte[]> record : records) {
+          Header header = record.headers().lastHeader(SEND_NANOS_HEADER);
+          if (header != null && header.value() != null && header.value().length == Long.BYTES) {
+            latencies.record((nowNanos - sendNanos(header.value())) / 1000);
+            stamped++;
+          }
+        }
+        consumed += stamped;
+      }
+    } catch (WakeupException wakeup) {
+      // finish() was called
+    } catch (Exception error) {
+      logger.error("Failed to consume", error);
+    } finally {
+      consumer.close();
+    }
+  }
+
+  /**
+   * Waits until at least the given number of records have been consumed or the timeout passes, and
+   * returns whether they were.
+   */
+  boolean awaitRecords(long records, long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (consumed < records && isAlive()) {
+      if (System.nanoTime() - deadline >= 0) {
+        return false;
+      }
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    return consumed >= records;
+  }
+
+  /** Stops consuming and waits for the consumer to close. */
+  void finish() throws InterruptedException {
+    stopping = true;
+    if (getState() == State.NEW) {
+      consumer.close();
+      return;
+    }
+    consumer.wakeup();
+    join();
+  }
+
+  /** The number of stamped records consumed so far. */
+  public long getConsumed() {
+    return consumed;
+  }
+
+  /** The latency from send to consume of every stamped record so far. */
+  public LatencyHistogram.Snapshot snapshot() {
+    return latencies.snapshot();
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Takes a combined snapshot of every producer thread at a fixed interval while a run is in progress
+ * and passes what happened during the interval to its listeners. Snapshots only read the threads'
+ * counters, so reporting does not slow the producer threads down.
+ */
+public class IntervalReporter extends Thread {
+
+  private static Logger logger = LoggerFactory.getLogger(IntervalReporter.class);
+
+  /** Receives the statistics of each interval. */
+  public interface Listener {
+
+    /**
+     * Called on the reporter thread with what happened during the interval and the totals since the
+     * run started.
+     */
+    void onInterval(ProducerStats.Snapshot interval, ProducerStats.Snapshot total);
+  }
+
+  private final LoadEngine engine;
+  private final long intervalNanos;
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  public IntervalReporter(LoadEngine engine, long interval, TimeUnit unit) {
+    super("reporter");
+    setDaemon(true);
+    this.engine = engine;
+    this.intervalNanos = unit.toNanos(interval);
+  }
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void run() {
+    ProducerStats.Snapshot previous = new ProducerStats.Snapshot();
+    long next = System.nanoTime() + intervalNanos;
+    while (!isInterrupted()) {
+      long remaining;
+      while ((remaining = next - System.nanoTime()) > 0 && !isInterrupted()) {
+        LockSupport.parkNanos(remaining);
+      }
+      if (isInterrupted()) {
+        break;
+      }
+      next += intervalNanos;
+      previous = report(previous);
+    }
+  }
+
+  /** Stops reporting and waits for the reporter thread to end. */
+  public void finish() throws InterruptedException {
+    interrupt();
+    join();
+  }
+
+  private ProducerStats.Snapshot report(ProducerStats.Snapshot previous) {
+    ProducerStats.Snapshot total = engine.aggregate();
+    ProducerStats.Snapshot interval = total.since(previous);
+    for (Listener listener : listeners) {
+      try {
+        listener.onInterval(interval, total);
+      } catch (RuntimeException error) {
+        logger.warn("Failed to report interval", error);
+      }
+    }
+    return total;
+  }
+}
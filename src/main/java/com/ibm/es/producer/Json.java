@@ -0,0 +1,296 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the results files: writes maps, lists, strings, numbers, booleans and nulls,
+ * and parses them back into the same types, with every number read as a Double.
+ */
+final class Json {
+
+  private Json() {}
+
+  /** Writes a value as indented JSON. */
+  static String write(Object value) {
+    StringBuilder out = new StringBuilder();
+    write(out, value, "");
+    return out.append('\n').toString();
+  }
+
+  private static void write(StringBuilder out, Object value, String indent) {
+    if (value == null) {
+      out.append("null");
+    } else if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      if (map.isEmpty()) {
+        out.append("{}");
+        return;
+      }
+      String inner = indent + "  ";
+      out.append("{\n");
+      boolean first = true;
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        if (!first) {
+          out.append(",\n");
+        }
+        first = false;
+        out.append(inner);
+        writeString(out, String.valueOf(entry.getKey()));
+        out.append(": ");
+        write(out, entry.getValue(), inner);
+      }
+      out.append('\n').append(indent).append('}');
+    } else if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      if (list.isEmpty()) {
+        out.append("[]");
+        return;
+      }
+      String inner = indent + "  ";
+      out.append("[\n");
+      for (int i = 0; i < list.size(); i++) {
+        if (i > 0) {
+          out.append(",\n");
+        }
+        out.append(inner);
+        write(out, list.get(i), inner);
+      }
+      out.append('\n').append(indent).append(']');
+    } else if (value instanceof Double || value instanceof Float) {
+      double number = ((Number) value).doubleValue();
+      if (Double.isNaN(number) || Double.isInfinite(number)) {
+        out.append("null");
+      } else {
+        out.append(String.format(Locale.ROOT, "%.3f", number));
+      }
+    } else if (value instanceof Number || value instanceof Boolean) {
+      out.append(value);
+    } else {
+      writeString(out, value.toString());
+    }
+  }
+
+  private static void writeString(StringBuilder out, String value) {
+    out.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            out.append(String.format("\\u%04x", (int) c));
+          } else {
+            out.append(c);
+          }
+      }
+    }
+    out.append('"');
+  }
+
+  /** Parses JSON text, throwing IllegalArgumentException if it is not valid. */
+  static Object parse(String text) {
+    Parser parser = new Parser(text);
+    Object value = parser.value();
+    parser.skipWhitespace();
+    if (parser.position != text.length()) {
+      throw parser.error("Unexpected text");
+    }
+    return value;
+  }
+
+  private static class Parser {
+    private final String text;
+    private int position;
+
+    Parser(String text) {
+      this.text = text;
+    }
+
+    Object value() {
+      skipWhitespace();
+      if (position >= text.length()) {
+        throw error("Unexpected end");
+      }
+      char c = text.charAt(position);
+      switch (c) {
+        case '{':
+          return object();
+        case '[':
+          return array();
+        case '"':
+          return string();
+        case 't':
+          return literal("true", Boolean.TRUE);
+        case 'f':
+          return literal("false", Boolean.FALSE);
+        case 'n':
+          return literal("null", null);
+        default:
+          return number();
+      }
+    }
+
+    private Map<String, Object> object() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      position++;
+      skipWhitespace();
+      if (peek() == '}') {
+        position++;
+        return map;
+      }
+      while (true) {
+        skipWhitespace();
+        String name = string();
+        skipWhitespace();
+        expect(':');
+        map.put(name, value());
+        skipWhitespace();
+        if (peek() == ',') {
+          position++;
+        } else {
+          expect('}');
+          return map;
+        }
+      }
+    }
+
+    private List<Object> array() {
+      List<Object> list = new ArrayList<>();
+      position++;
+      skipWhitespace();
+      if (peek() == ']') {
+        position++;
+        return list;
+      }
+      while (true) {
+        list.add(value());
+        skipWhitespace();
+        if (peek() == ',') {
+          position++;
+        } else {
+          expect(']');
+          return list;
+        }
+      }
+    }
+
+    private String string() {
+      expect('"');
+      StringBuilder out = new StringBuilder();
+      while (true) {
+        if (position >= text.length()) {
+          throw error("Unterminated string");
+        }
+        char c = text.charAt(position++);
+        if (c == '"') {
+          return out.toString();
+        }
+        if (c != '\\') {
+          out.append(c);
+          continue;
+        }
+        char escaped = text.charAt(position++);
+        switch (escaped) {
+          case 'n':
+            out.append('\n');
+            break;
+          case 'r':
+            out.append('\r');
+            break;
+          case 't':
+            out.append('\t');
+            break;
+          case 'b':
+            out.append('\b');
+            break;
+          case 'f':
+            out.append('\f');
+            break;
+          case 'u':
+            out.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+            position += 4;
+            break;
+          default:
+            out.append(escaped);
+        }
+      }
+    }
+
+    private Object literal(String word, Object value) {
+      if (!text.startsWith(word, position)) {
+        throw error("Unexpected text");
+      }
+      position += word.length();
+      return value;
+    }
+
+    private Double number() {
+      int start = position;
+      while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+        position++;
+      }
+      try {
+        return Double.valueOf(text.substring(start, position));
+      } catch (NumberFormatException e) {
+        throw error("Invalid number");
+      }
+    }
+
+    private char peek() {
+      if (position >= text.length()) {
+        throw error("Unexpected end");
+      }
+      return text.charAt(position);
+    }
+
+    private void expect(char c) {
+      if (peek() != c) {
+        throw error("Expected '" + c + "'");
+      }
+      position++;
+    }
+
+    void skipWhitespace() {
+      while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+        position++;
+      }
+    }
+
+    IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(message + " at position " + position + " of JSON");
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads resource usage of the tool's own threads from the JVM. Measurements that the running JVM
+ * does not support are reported as -1.
+ */
+public final class JvmResources {
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+  private static final boolean ALLOCATION_SUPPORTED = enableAllocationTracking();
+
+  private JvmResources() {}
+
+  private static boolean enableAllocationTracking() {
+    if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+      return false;
+    }
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+    try {
+      if (threads.isThreadAllocatedMemorySupported()) {
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return true;
+      }
+    } catch (UnsupportedOperationException | SecurityException e) {
+      // fall through and report allocation as unsupported
+    }
+    return false;
+  }
+
+  public static boolean isAllocationSupported() {
+    return ALLOCATION_SUPPORTED;
+  }
+
+  /** Total bytes allocated on the heap by the given thread since it started, or -1. */
+  public static long threadAllocatedBytes(long threadId) {
+    if (!ALLOCATION_SUPPORTED) {
+      return -1;
+    }
+    return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(threadId);
+  }
+}
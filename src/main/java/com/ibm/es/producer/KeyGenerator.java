@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses the key of each record, parsed from --key-distribution. The keys themselves are generated
+ * once into a table of --key-cardinality entries, so each record only costs choosing an index into
+ * the table:
+ *
+ * <ul>
+ *   <li>{@code none} - records have no key
+ *   <li>{@code sequential} - each thread cycles through the keys in order
+ *   <li>{@code uniform} - every key is equally likely
+ *   <li>{@code zipf:S} - key n is chosen in proportion to 1/n^S, so a few keys take most records
+ *   <li>{@code hotkey:FRACTION} - one key takes FRACTION of the records and the rest are uniform
+ * </ul>
+ */
+public class KeyGenerator {
+
+  /** Picks keys for one producer thread. */
+  public interface Reader {
+
+    /** Returns the index of the next key, or -1 if records have no key. */
+    int next();
+  }
+
+  private static final Reader NO_KEYS = () -> -1;
+
+  private final String type;
+  private final byte[][] keys;
+  private final double[] cumulative;
+  private final double hotFraction;
+
+  private KeyGenerator(String type, byte[][] keys, double[] cumulative, double hotFraction) {
+    this.type = type;
+    this.keys = keys;
+    this.cumulative = cumulative;
+    this.hotFraction = hotFraction;
+  }
+
+  /** Parses a --key-distribution value, throwing IllegalArgumentException if it is not valid. */
+  public static KeyGenerator create(String distribution, int cardinality) {
+    String spec = distribution.trim();
+    int colon = spec.indexOf(':');
+    String type = colon < 0 ? spec : spec.substring(0, colon);
+    String argument = colon < 0 ? null : spec.substring(colon + 1);
+
+    if ("none".equals(type)) {
+      return new KeyGenerator(type, new byte[0][], null, 0);
+    }
+    if (cardinality < 1) {
+      throw new IllegalArgumentException("The key cardinality must be at least 1");
+    }
+    switch (type) {
+      case "sequential":
+      case "uniform":
+        return new KeyGenerator(type, generateKeys(cardinality), null, 0);
+      case "zipf":
+        {
+          double skew = parseArgument(spec, argument);
+          double[] cumulative = new double[cardinality];
+          double total = 0;
+          for (int i = 0; i < cardinality; i++) {
+            total += 1.0 / Math.pow(i + 1, skew);
+            cumulative[i] = total;
+          }
+          for (int i = 0; i < cardinality; i++) {
+            cumulative[i] /= total;
+          }
+          return new KeyGenerator(type, generateKeys(cardinality), cumulative, 0);
+        }
+      case "hotkey":
+        {
+          double fraction = parseArgument(spec, argument);
+          if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("The hot key fraction must be between 0 and 1");
+          }
+          return new KeyGenerator(type, generateKeys(cardinality), null, fraction);
+        }
+      default:
+        throw new IllegalArgumentException("Unknown key distribution " + type);
+    }
+  }
+
+  private static double parseArgument(String spec, String argument) {
+    if (argument == null || argument.isEmpty()) {
+      throw new IllegalArgumentException("Missing parameter for key distribution " + spec);
+    }
+    return Double.parseDouble(argument);
+  }
+
+  private static byte[][] generateKeys(int cardinality) {
+    int width = String.valueOf(cardinality - 1).length();
+    byte[][] keys = new byte[cardinality][];
+    for (int i = 0; i < cardinality; i++) {
+      keys[i] = String.format("key-%0" + width + "d", i).getBytes(StandardCharsets.UTF_8);
+    }
+    return keys;
+  }
+
+  public boolean hasKeys() {
+    return keys.length > 0;
+  }
+
+  public int getCardinality() {
+    return keys.length;
+  }
+
+  /** Returns the key at the given index, or null for -1. */
+  public byte[] key(int index) {
+    return index < 0 ? null : keys[index];
+  }
+
+  /** Creates a reader for use by a single producer thread. */
+  public Reader newReader() {
+    final int cardinality = keys.length;
+    switch (type) {
+      case "sequential":
+        return new Reader() {
+          private int next = 0;
+
+          @Override
+          public int next() {
+            if (next == cardinality) {
+              next = 0;
+            }
+            return next++;
+          }
+        };
+      case "uniform":
+        return () -> ThreadLocalRandom.current().nextInt(cardinality);
+      case "zipf":
+        return () -> {
+          int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+          return Math.min(index < 0 ? -index - 1 : index, cardinality - 1);
+        };
+      case "hotkey":
+        return () -> {
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          if (cardinality == 1 || random.nextDouble() < hotFraction) {
+            return 0;
+          }
+          return 1 + random.nextInt(cardinality - 1);
+        };
+      default:
+        return NO_KEYS;
+    }
+  }
+}
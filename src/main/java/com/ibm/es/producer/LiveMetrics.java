@@ -0,0 +1,280 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The statistics of a run while it is in progress, for --metrics-port and --jmx. Reading them only
+ * takes a snapshot of the producer threads' counters, which never blocks the threads, and a
+ * snapshot is reused for a short time so that frequent scrapes do not add up.
+ */
+public class LiveMetrics implements LiveMetricsMXBean {
+
+  private static Logger logger = LoggerFactory.getLogger(LiveMetrics.class);
+  private static ResourceBundle producerTranslations =
+      ResourceBundle.getBundle("MessageBundle", Locale.getDefault());
+
+  static final String OBJECT_NAME = "com.ibm.es.producer:type=LiveMetrics";
+  private static final long SNAPSHOT_MAX_AGE_NANOS = 500_000_000L;
+  private static final double[] QUANTILES = {0.5, 0.95, 0.99, 0.999};
+  // the Kafka producer metrics that are worth watching during a load test
+  private static final Set<String> KAFKA_METRICS =
+      new HashSet<>(
+          Arrays.asList(
+              "record-queue-time-avg",
+              "record-queue-time-max",
+              "request-latency-avg",
+              "request-latency-max",
+              "batch-size-avg",
+              "records-per-request-avg",
+              "compression-rate-avg",
+              "record-send-rate",
+              "record-error-rate",
+              "record-retry-rate",
+              "buffer-available-bytes",
+              "bufferpool-wait-ratio",
+              "requests-in-flight"));
+
+  private final LoadEngine engine;
+  private volatile ProducerStats.Snapshot snapshot;
+  private volatile long snapshotNanos;
+  private ObjectName registeredName;
+
+  public LiveMetrics(LoadEngine engine) {
+    this.engine = engine;
+  }
+
+  private ProducerStats.Snapshot snapshot() {
+    long now = System.nanoTime();
+    ProducerStats.Snapshot current = snapshot;
+    if (current == null || now - snapshotNanos > SNAPSHOT_MAX_AGE_NANOS) {
+      current = engine.aggregate();
+      snapshot = current;
+      snapshotNanos = now;
+    }
+    return current;
+  }
+
+  /** Registers these metrics with the platform MBean server. */
+  public void register() throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    registeredName = new ObjectName(OBJECT_NAME);
+    server.registerMBean(this, registeredName);
+  }
+
+  public void unregister() throws JMException {
+    if (registeredName != null) {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+      registeredName = null;
+    }
+  }
+
+  /** Registers these metrics for --jmx, warning rather than failing the run if that fails. */
+  public void tryRegister() {
+    try {
+      register();
+    } catch (JMException exception) {
+      logger.warn(producerTranslations.getString("producer.jmxFail"), exception);
+    }
+  }
+
+  public void tryUnregister() {
+    try {
+      unregister();
+    } catch (JMException exception) {
+      logger.warn(producerTranslations.getString("producer.jmxFail"), exception);
+    }
+  }
+
+  @Override
+  public long getRecordsSent() {
+    return snapshot().getSent();
+  }
+
+  @Override
+  public long getRecordsAcknowledged() {
+    return snapshot().getAcked();
+  }
+
+  @Override
+  public long getErrors() {
+    return snapshot().getErrors();
+  }
+
+  @Override
+  public long getRecordsInFlight() {
+    return snapshot().getInFlight();
+  }
+
+  @Override
+  public long getBytesAcknowledged() {
+    return snapshot().getAckedBytes();
+  }
+
+  @Override
+  public double getLatency50thMs() {
+    return snapshot().getLatencyPercentileMs(50);
+  }
+
+  @Override
+  public double getLatency99thMs() {
+    return snapshot().getLatencyPercentileMs(99);
+  }
+
+  @Override
+  public double getLatency999thMs() {
+    return snapshot().getLatencyPercentileMs(99.9);
+  }
+
+  @Override
+  public double getCorrectedLatency99thMs() {
+    return snapshot().getCorrectedLatencyPercentileMs(99);
+  }
+
+  @Override
+  public Map<String, Double> getKafkaMetrics() {
+    Map<String, Double> values = new LinkedHashMap<>();
+    List<org.apache.kafka.clients.producer.Producer<byte[], byte[]>> producers =
+        engine.getKafkaProducers();
+    for (int i = 0; i < producers.size(); i++) {
+      for (Map.Entry<String, Double> entry : selectedKafkaMetrics(producers.get(i)).entrySet()) {
+        values.put(String.format("producer%d:%s", i, entry.getKey()), entry.getValue());
+      }
+    }
+    return values;
+  }
+
+  private static Map<String, Double> selectedKafkaMetrics(
+      org.apache.kafka.clients.producer.Producer<byte[], byte[]> producer) {
+    Map<String, Double> values = new TreeMap<>();
+    for (Map.Entry<MetricName, ? extends Metric> entry : producer.metrics().entrySet()) {
+      MetricName name = entry.getKey();
+      if (name.group().equals("producer-metrics") && KAFKA_METRICS.contains(name.name())) {
+        Object value = entry.getValue().metricValue();
+        if (value instanceof Number) {
+          values.put(name.name(), ((Number) value).doubleValue());
+        }
+      }
+    }
+    return values;
+  }
+
+  /** Writes the metrics in the Prometheus text exposition format. */
+  public void writePrometheus(PrintWriter out) {
+    ProducerStats.Snapshot total = snapshot();
+    counter(out, "records_sent_total", "Records sent", total.getSent());
+    counter(out, "records_acknowledged_total", "Records acknowledged", total.getAcked());
+    counter(out, "errors_total", "Records that failed to send", total.getErrors());
+    counter(out, "acknowledged_bytes_total", "Bytes acknowledged", total.getAckedBytes());
+    gauge(out, "records_in_flight", "Records sent but not yet acknowledged", total.getInFlight());
+
+    summary(
+        out,
+        "latency_ms",
+        "Latency from send to acknowledgement in milliseconds",
+        total.getLatencies(),
+        total.getAverageLatencyMs() * total.getAcked());
+    summary(
+        out,
+        "corrected_latency_ms",
+        "Latency from the scheduled send time to acknowledgement in milliseconds",
+        total.getCorrectedLatencies(),
+        Double.NaN);
+
+    List<org.apache.kafka.clients.producer.Producer<byte[], byte[]>> producers =
+        engine.getKafkaProducers();
+    Map<String, StringBuilder> kafkaSeries = new LinkedHashMap<>();
+    for (int i = 0; i < producers.size(); i++) {
+      for (Map.Entry<String, Double> entry : selectedKafkaMetrics(producers.get(i)).entrySet()) {
+        kafkaSeries
+            .computeIfAbsent(entry.getKey(), name -> new StringBuilder())
+            .append(
+                String.format(
+                    Locale.ROOT,
+                    "%s{producer=\"producer%d\"} %s%n",
+                    metricName("kafka_" + entry.getKey()),
+                    i,
+                    format(entry.getValue())));
+      }
+    }
+    for (Map.Entry<String, StringBuilder> series : kafkaSeries.entrySet()) {
+      String name = metricName("kafka_" + series.getKey());
+      out.printf("# HELP %s Kafka producer metric %s%n", name, series.getKey());
+      out.printf("# TYPE %s gauge%n", name);
+      out.print(series.getValue());
+    }
+    out.flush();
+  }
+
+  private static void counter(PrintWriter out, String name, String help, long value) {
+    out.printf("# HELP es_producer_%s %s%n# TYPE es_producer_%s counter%n", name, help, name);
+    out.printf("es_producer_%s %d%n", name, value);
+  }
+
+  private static void gauge(PrintWriter out, String name, String help, long value) {
+    out.printf("# HELP es_producer_%s %s%n# TYPE es_producer_%s gauge%n", name, help, name);
+    out.printf("es_producer_%s %d%n", name, value);
+  }
+
+  private static void summary(
+      PrintWriter out, String name, String help, LatencyHistogram.Snapshot latencies, double sum) {
+    out.printf("# HELP es_producer_%s %s%n# TYPE es_producer_%s summary%n", name, help, name);
+    for (double quantile : QUANTILES) {
+      out.printf(
+          Locale.ROOT,
+          "es_producer_%s{quantile=\"%s\"} %s%n",
+          name,
+          quantile,
+          format(latencies.getPercentileMs(quantile * 100)));
+    }
+    if (!Double.isNaN(sum)) {
+      out.printf("es_producer_%s_sum %s%n", name, format(sum));
+    }
+    out.printf("es_producer_%s_count %d%n", name, latencies.getCount());
+  }
+
+  private static String metricName(String name) {
+    return "es_producer_" + name.replace('-', '_');
+  }
+
+  private static String format(double value) {
+    if (Double.isNaN(value)) {
+      return "NaN";
+    }
+    if (Double.isInfinite(value)) {
+      return value > 0 ? "+Inf" : "-Inf";
+    }
+    return String.format(Locale.ROOT, "%.6f", value);
+  }
+}
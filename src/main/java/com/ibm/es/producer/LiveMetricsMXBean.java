@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.Map;
+
+/** The live statistics of a run, as exposed over JMX with --jmx. */
+public interface LiveMetricsMXBean {
+
+  long getRecordsSent();
+
+  long getRecordsAcknowledged();
+
+  long getErrors();
+
+  long getRecordsInFlight();
+
+  long getBytesAcknowledged();
+
+  double getLatency50thMs();
+
+  double getLatency99thMs();
+
+  double getLatency999thMs();
+
+  double getCorrectedLatency99thMs();
+
+  /** Selected Kafka producer metrics, named "producer:metric". */
+  Map<String, Double> getKafkaMetrics();
+}
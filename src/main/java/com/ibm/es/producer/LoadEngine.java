@@ -0,0 +1,587 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a load test in-process: creates the Kafka producers, divides the records between the
+ * producer threads, paces them with one shared {@link RateLimiter} and combines the statistics of
+ * every thread into a single result.
+ */
+public class LoadEngine {
+
+  private static Logger logger = LoggerFactory.getLogger(LoadEngine.class);
+
+  /** Properties starting with this and an instance number apply to that producer only. */
+  static final String INSTANCE_PREFIX = "instance.";
+
+  /** How long to wait, once sending ends, for the --end-to-end consumer to read every record. */
+  static final long END_TO_END_DRAIN_SECONDS = 30;
+
+  /** The corpus of --compare-codecs stops growing at this many bytes or records. */
+  static final long CODEC_CORPUS_BYTES = 16 * 1024 * 1024;
+
+  static final int CODEC_CORPUS_RECORDS = 100_000;
+
+  private static final int DEFAULT_BATCH_SIZE = 16384;
+
+  private final Producer producer;
+  private final ProducerFactory producerFactory;
+  private final ConsumerFactory consumerFactory;
+  private EndToEndConsumer endToEndConsumer;
+  private final List<ProducerThread> threads = new ArrayList<>();
+  private ClientSimulation clientSimulation;
+  private TraceReplay traceReplay;
+  private WarmUp warmUp;
+  private long heapPerClientBytes = -1;
+  private RateLimiter rateLimiter;
+  private Workload workload;
+  private Properties properties;
+  private Map<String, String> propertyOverrides = Collections.emptyMap();
+  private final List<org.apache.kafka.clients.producer.Producer<byte[], byte[]>> kafkaProducers =
+      new ArrayList<>();
+
+  public LoadEngine(Producer producer, ProducerFactory producerFactory) {
+    this(producer, producerFactory, ConsumerFactory.KAFKA);
+  }
+
+  public LoadEngine(
+      Producer producer, ProducerFactory producerFactory, ConsumerFactory consumerFactory) {
+    this.producer = producer;
+    this.producerFactory = producerFactory;
+    this.consumerFactory = consumerFactory;
+  }
+
+  /** Sets producer properties that take precedence over the configuration file. */
+  public void overrideProperties(Map<String, String> overrides) {
+    this.propertyOverrides = overrides;
+  }
+
+  /** Creates the Kafka producers and the producer threads or simulated clients that use them. */
+  public void prepare() throws IOException, InterruptedException {
+    properties = loadProducerProperties(producer.getConfigFilePath(), producer.isDryRun());
+    properties.putAll(propertyOverrides);
+    if (producer.getClients() > 0 || producer.getTraceFile() != null) {
+      // each simulated client paces itself at --client-rate, and a trace at its own timing
+      rateLimiter = new RateLimiter(-1);
+    } else if (producer.getSearchStrategy() != null) {
+      rateLimiter = RateLimiter.adjustable(producer.getSearchStart());
+    } else if (producer.getLoadProfile() != null) {
+      rateLimiter = new RateLimiter(producer.getLoadProfile());
+    } else {
+      rateLimiter = new RateLimiter(producer.getThroughput());
+    }
+    workload =
+        new Workload(
+            producer.getTopic(),
+            rateLimiter,
+            producer.getTraceFile() != null ? null : loadPayloads(),
+            producer.getKeyGenerator(),
+            producer.getPartitions(),
+            producer.getDurationNanos(),
+            producer.isPartitionBreakdown() ? new PartitionStats() : null,
+            producer.isEndToEnd());
+    if (producer.getClients() > 0) {
+      prepareClients();
+    } else if (producer.getTraceFile() != null) {
+      prepareReplay();
+    } else {
+      prepareThreads();
+    }
+    if (producer.getWarmUpNanos() > 0 || producer.getWarmUpRecords() > 0) {
+      warmUp();
+    }
+    refreshLeaders();
+    if (producer.isEndToEnd()) {
+      endToEndConsumer =
+          new EndToEndConsumer(
+              consumerFactory.create(consumerProperties(properties)), workload.getTopic());
+      endToEndConsumer.assignPartitions();
+    }
+  }
+
+  /**
+   * The configuration of the --end-to-end consumer: the connection and security properties of the
+   * producer configuration, without a consumer group.
+   */
+  static Properties consumerProperties(Properties properties) {
+    Properties result = new Properties();
+    for (String name : properties.stringPropertyNames()) {
+      if (ConsumerConfig.configNames().contains(name)
+          && !ConsumerConfig.GROUP_ID_CONFIG.equals(name)) {
+        result.put(name, properties.get(name));
+      }
+    }
+    result.put(ConsumerConfig.CLIENT_ID_CONFIG, "es-producer-end-to-end");
+    result.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+    result.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+    result.put(
+        ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+    return result;
+  }
+
+  /** Creates the producers and divides the records between the producer threads. */
+  private void prepareThreads() {
+
+    // split the records exactly, giving the remainder to the first threads, unless the run is
+    // bounded by --duration or stopped by a throughput search instead
+    boolean unbounded = workload.hasDuration() || producer.getSearchStrategy() != null;
+    int numThreads = producer.getNumThreads();
+    long recordsPerThread = unbounded ? Long.MAX_VALUE : producer.getNumRecords() / numThreads;
+    long remainder = unbounded ? 0 : producer.getNumRecords() % numThreads;
+
+    int numProducers = producer.getNumProducers();
+    for (int i = 0; i < numProducers; i++) {
+      kafkaProducers.add(createProducer(i));
+    }
+
+    Transactions transactions = null;
+    if (producer.getDeliveryMode() == DeliveryMode.TRANSACTIONAL) {
+      transactions =
+          new Transactions(
+              producer.getTransactionRecords(), producer.getTransactionIntervalNanos());
+      // registers each transactional.id with its coordinator, fencing off any earlier producer
+      for (org.apache.kafka.clients.producer.Producer<byte[], byte[]> kafkaProducer :
+          kafkaProducers) {
+        kafkaProducer.initTransactions();
+      }
+    }
+
+    ThreadGroup group = new ThreadGroup("Producers");
+    for (int i = 0; i < numThreads; i++) {
+      threads.add(
+          new ProducerThread(
+              group,
+              String.format("producer%d", i),
+              producersForThread(i),
+              i < remainder ? recordsPerThread + 1 : recordsPerThread,
+              workload,
+              transactions));
+    }
+  }
+
+  /**
+   * Fetches metadata with every producer in parallel and then sends warm-up records through them
+   * with threads of their own, before the threads of the run have started. The warm-up has its own
+   * workload, so it does not use up the rate limiter, --duration or the partition statistics.
+   */
+  private void warmUp() throws InterruptedException {
+    warmUp = new WarmUp(producer.getWarmUpNanos(), producer.getWarmUpRecords());
+    warmUp.fetchMetadata(kafkaProducers, workload.getTopic());
+
+    RateLimiter warmUpRateLimiter;
+    if (producer.getSearchStrategy() != null) {
+      warmUpRateLimiter = new RateLimiter(Math.max(1, producer.getSearchStart()));
+    } else if (producer.getLoadProfile() != null) {
+      warmUpRateLimiter = new RateLimiter((int) Math.max(1, producer.getLoadProfile().rateAt(0)));
+    } else {
+      warmUpRateLimiter = new RateLimiter(producer.getThroughput());
+    }
+    Workload warmUpWorkload =
+        new Workload(
+            workload.getTopic(),
+            warmUpRateLimiter,
+            workload.getPayloads(),
+            workload.getKeys(),
+            producer.getPartitions(),
+            warmUp.getDurationNanos(),
+            null,
+            false);
+    int numThreads = producer.getNumThreads();
+    long records = warmUp.getRecords();
+    List<ProducerThread> warmUpThreads = new ArrayList<>();
+    ThreadGroup group = new ThreadGroup("Warm-up");
+    for (int i = 0; i < numThreads; i++) {
+      warmUpThreads.add(
+          new ProducerThread(
+              group,
+              String.format("warmup%d", i),
+              producersForThread(i),
+              records == 0
+                  ? Long.MAX_VALUE
+                  : records / numThreads + (i < records % numThreads ? 1 : 0),
+              warmUpWorkload,
+              threads.isEmpty() ? null : threads.get(i).getTransactions()));
+    }
+    warmUp.run(warmUpThreads, warmUpWorkload);
+  }
+
+  /** Creates producer instance N with its own properties and those of the --delivery-mode. */
+  private org.apache.kafka.clients.producer.Producer<byte[], byte[]> createProducer(int instance) {
+    Properties instanceProperties = instanceProperties(properties, instance);
+    producer.getDeliveryMode().configure(instanceProperties, instance);
+    return producerFactory.create(instanceProperties);
+  }
+
+  /**
+   * The producers a thread sends through: with round-robin assignment one producer, shared with
+   * every --num-producers-th thread, and with key assignment all of them, picked by the key.
+   */
+  @SuppressWarnings("unchecked")
+  private org.apache.kafka.clients.producer.Producer<byte[], byte[]>[] producersForThread(
+      int thread) {
+    if (producer.getProducerAssignment() == ProducerAssignment.KEY) {
+      return kafkaProducers.toArray(new org.apache.kafka.clients.producer.Producer[0]);
+    }
+    return new org.apache.kafka.clients.producer.Producer[] {
+      kafkaProducers.get(thread % kafkaProducers.size())
+    };
+  }
+
+  /**
+   * Builds a corpus of the records that a run would send, for --compare-codecs, without creating
+   * any producers. The records come from the trace, the payload file or the generated payloads,
+   * with keys from --key-distribution, and are compressed in batches of the configured batch.size.
+   */
+  public CodecComparison prepareCodecComparison() throws IOException {
+    properties = loadProducerProperties(producer.getConfigFilePath(), true);
+    properties.putAll(propertyOverrides);
+    Object batchSize = properties.get(ProducerConfig.BATCH_SIZE_CONFIG);
+    CodecComparison comparison =
+        new CodecComparison(
+            batchSize == null ? DEFAULT_BATCH_SIZE : Integer.parseInt(batchSize.toString().trim()));
+    if (producer.getTraceFile() != null) {
+      TraceFile trace =
+          TraceFile.open(
+              producer.getTraceFile(),
+              TraceFile.Format.valueOf(producer.getTraceFormat().toUpperCase(Locale.ROOT)));
+      try (TraceFile.Reader reader = trace.newReader()) {
+        TraceFile.Record record;
+        while (!isCorpusFull(comparison) && (record = reader.next()) != null) {
+          comparison.add(record.getKey(), record.getValue());
+        }
+      }
+      return comparison;
+    }
+    PayloadSource.Reader payloads = loadPayloads().newReader();
+    KeyGenerator keys = producer.getKeyGenerator();
+    KeyGenerator.Reader keyReader = keys.newReader();
+    while (!isCorpusFull(comparison)) {
+      // readers may reuse the array they return, so keep a copy
+      comparison.add(keys.key(keyReader.next()), payloads.next().clone());
+    }
+    return comparison;
+  }
+
+  private static boolean isCorpusFull(CodecComparison comparison) {
+    return comparison.getCorpusBytes() >= CODEC_CORPUS_BYTES
+        || comparison.getRecordCount() >= CODEC_CORPUS_RECORDS;
+  }
+
+  /** Creates the producers and a sender thread for each of --num-threads to replay the trace. */
+  private void prepareReplay() throws IOException {
+    TraceFile trace =
+        TraceFile.open(
+            producer.getTraceFile(),
+            TraceFile.Format.valueOf(producer.getTraceFormat().toUpperCase(Locale.ROOT)));
+    for (int i = 0; i < producer.getNumProducers(); i++) {
+      kafkaProducers.add(createProducer(i));
+    }
+    List<org.apache.kafka.clients.producer.Producer<byte[], byte[]>[]> producers =
+        new ArrayList<>();
+    for (int i = 0; i < producer.getNumThreads(); i++) {
+      producers.add(producersForThread(i));
+    }
+    traceReplay = new TraceReplay(trace, producers, producer.getTraceSpeed(), workload);
+  }
+
+  /**
+   * The configuration of one producer instance: the shared properties, overridden by any properties
+   * prefixed with {@code instance.N.} for that instance.
+   */
+  static Properties instanceProperties(Properties properties, int instance) {
+    Properties result = new Properties();
+    String prefix = INSTANCE_PREFIX + instance + ".";
+    for (String name : properties.stringPropertyNames()) {
+      if (!name.startsWith(INSTANCE_PREFIX)) {
+        result.put(name, properties.get(name));
+      }
+    }
+    for (String name : properties.stringPropertyNames()) {
+      if (name.startsWith(prefix)) {
+        result.put(name.substring(prefix.length()), properties.get(name));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Creates a Kafka producer for each of the --clients and schedules them on the producer threads,
+   * counting the heap allocated while the clients are created as an approximation of what they
+   * take.
+   */
+  private void prepareClients() {
+    long threadId = Thread.currentThread().getId();
+    long allocatedBefore = JvmResources.threadAllocatedBytes(threadId);
+    for (int i = 0; i < producer.getClients(); i++) {
+      kafkaProducers.add(createProducer(i));
+    }
+    clientSimulation =
+        new ClientSimulation(
+            kafkaProducers,
+            producer.getNumRecords(),
+            producer.getClientRate(),
+            producer.getClientRampNanos(),
+            producer.getNumThreads(),
+            workload);
+    if (allocatedBefore >= 0) {
+      heapPerClientBytes =
+          (JvmResources.threadAllocatedBytes(threadId) - allocatedBefore) / producer.getClients();
+    }
+  }
+
+  /** Starts every prepared producer thread. */
+  public void start() {
+    long startNanos = System.nanoTime();
+    workload.start(startNanos);
+    if (endToEndConsumer != null) {
+      endToEndConsumer.start();
+    }
+    if (clientSimulation != null) {
+      clientSimulation.start(startNanos);
+    }
+    if (traceReplay != null) {
+      traceReplay.start(startNanos);
+    }
+    for (ProducerThread thread : threads) {
+      thread.start();
+    }
+  }
+
+  /**
+   * Waits for every producer thread to finish sending its share of the records and, with
+   * --end-to-end, for the consumer to read them back.
+   */
+  public void awaitCompletion() throws InterruptedException {
+    if (clientSimulation != null) {
+      clientSimulation.awaitCompletion();
+    }
+    if (traceReplay != null) {
+      traceReplay.awaitCompletion();
+    }
+    for (ProducerThread thread : threads) {
+      thread.join();
+    }
+    if (endToEndConsumer != null
+        && !endToEndConsumer.awaitRecords(
+            aggregate().getAcked(), END_TO_END_DRAIN_SECONDS, TimeUnit.SECONDS)) {
+      logger.warn(
+          "Only {} of {} records were consumed within {} seconds",
+          endToEndConsumer.getConsumed(),
+          aggregate().getAcked(),
+          END_TO_END_DRAIN_SECONDS);
+    }
+  }
+
+  /** Asks the producer threads to stop sending and waits for them to flush what they have sent. */
+  public void stop() throws InterruptedException {
+    workload.stop();
+    awaitCompletion();
+  }
+
+  /** Stops the producer threads and releases the Kafka producers. */
+  public void close() {
+    if (clientSimulation != null) {
+      clientSimulation.close();
+    }
+    if (traceReplay != null) {
+      traceReplay.close();
+    }
+    if (endToEndConsumer != null) {
+      try {
+        endToEndConsumer.finish();
+      } catch (InterruptedException interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    for (ProducerThread thread : threads) {
+      thread.interrupt();
+    }
+    for (org.apache.kafka.clients.producer.Producer<byte[], byte[]> kafkaProducer :
+        kafkaProducers) {
+      try {
+        kafkaProducer.close();
+      } catch (Exception error) {
+        logger.warn("Failed to close producer", error);
+      }
+    }
+  }
+
+  /** Combines the statistics of every producer thread. */
+  public ProducerStats.Snapshot aggregate() {
+    ProducerStats.Snapshot total =
+        clientSimulation != null ? clientSimulation.aggregate() : new ProducerStats.Snapshot();
+    if (traceReplay != null) {
+      total.merge(traceReplay.aggregate());
+    }
+    for (ProducerThread thread : threads) {
+      total.merge(thread.getStats().snapshot());
+    }
+    if (endToEndConsumer != null) {
+      total.addEndToEndLatencies(endToEndConsumer.snapshot());
+    }
+    return total;
+  }
+
+  public RateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  public List<ProducerThread> getThreads() {
+    return Collections.unmodifiableList(threads);
+  }
+
+  /**
+   * Reads the leader of each partition from the metadata of the first producer, for
+   * --partition-breakdown. Leaders can move during a run, so this is repeated at each interval.
+   */
+  public void refreshLeaders() {
+    PartitionStats partitionStats = workload.getPartitionStats();
+    if (partitionStats == null || kafkaProducers.isEmpty()) {
+      return;
+    }
+    try {
+      partitionStats.updateLeaders(kafkaProducers.get(0).partitionsFor(workload.getTopic()));
+    } catch (Exception error) {
+      logger.warn("Failed to read the partition leaders", error);
+    }
+  }
+
+  /** The warm-up that ran before the run, or null if there was none. */
+  public WarmUp getWarmUp() {
+    return warmUp;
+  }
+
+  /** The statistics of each partition for --partition-breakdown, or null. */
+  public PartitionStats getPartitionStats() {
+    return workload.getPartitionStats();
+  }
+
+  /** The number of simulated --clients, or 0 when producer threads send instead. */
+  public int getClientCount() {
+    return clientSimulation == null ? 0 : clientSimulation.getClientCount();
+  }
+
+  /**
+   * The heap allocated to create each simulated client and its producer, or -1 if the JVM cannot
+   * count allocations. This is approximate: it includes short-lived objects, and leaves out what
+   * the producers' I/O threads allocate.
+   */
+  public long getHeapPerClientBytes() {
+    return heapPerClientBytes;
+  }
+
+  /** The number of connections the producers currently have open to the brokers. */
+  public long getConnectionCount() {
+    long connections = 0;
+    for (org.apache.kafka.clients.producer.Producer<byte[], byte[]> kafkaProducer :
+        kafkaProducers) {
+      for (Map.Entry<MetricName, ? extends Metric> entry : kafkaProducer.metrics().entrySet()) {
+        MetricName name = entry.getKey();
+        Object value = entry.getValue().metricValue();
+        if ("producer-metrics".equals(name.group())
+            && "connection-count".equals(name.name())
+            && value instanceof Number) {
+          connections += ((Number) value).longValue();
+        }
+      }
+    }
+    return connections;
+  }
+
+  /** The Kafka producer configuration that the producers were created with. */
+  public Properties getProducerProperties() {
+    return properties;
+  }
+
+  public List<org.apache.kafka.clients.producer.Producer<byte[], byte[]>> getKafkaProducers() {
+    return Collections.unmodifiableList(kafkaProducers);
+  }
+
+  /** Prints the Kafka client metrics of every producer, in the same layout as the Kafka tools. */
+  public void printMetrics() {
+    for (int i = 0; i < kafkaProducers.size(); i++) {
+      Map<String, Double> sorted = new TreeMap<>();
+      for (Map.Entry<MetricName, ? extends Metric> entry :
+          kafkaProducers.get(i).metrics().entrySet()) {
+        MetricName name = entry.getKey();
+        Object value = entry.getValue().metricValue();
+        if (value instanceof Number) {
+          sorted.put(
+              String.format("%s:%s:%s", name.group(), name.name(), name.tags()),
+              ((Number) value).doubleValue());
+        }
+      }
+      int width = 0;
+      for (String name : sorted.keySet()) {
+        width = Math.max(width, name.length());
+      }
+      System.out.println(String.format("producer%d metrics:", i));
+      for (Map.Entry<String, Double> entry : sorted.entrySet()) {
+        System.out.println(
+            String.format("%-" + width + "s : %.3f", entry.getKey(), entry.getValue()));
+      }
+    }
+  }
+
+  static Properties loadProducerProperties(String configFilePath, boolean optional)
+      throws IOException {
+    // a dry run does not connect to Kafka, so it can run without a configuration file
+    Properties properties =
+        optional && !new File(configFilePath).exists()
+            ? new Properties()
+            : Utils.loadProps(configFilePath);
+    properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+    properties.put(
+        ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+    return properties;
+  }
+
+  /**
+   * Reads the payloads once so every thread shares them. With --record-size a pool of generated
+   * payloads is built up front so that nothing is generated while sending.
+   */
+  private PayloadSource loadPayloads() throws IOException {
+    if (producer.getPayloadFilePath() == null || producer.getPayloadFilePath().isEmpty()) {
+      int[] sizes = producer.getRecordSizeDistribution().sample(producer.getPayloadPoolSize(), 0L);
+      return PayloadPool.generate(
+          sizes, producer.getPayloadContent(), producer.isPayloadPoolOffHeap(), 0L);
+    }
+    return PayloadFile.open(
+        producer.getPayloadFilePath(),
+        producer.getPayloadDelimiter(),
+        PayloadFile.Format.valueOf(producer.getPayloadFormat().toUpperCase(Locale.ROOT)));
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A target rate that changes over time, parsed from --load-profile. A profile is a sequence of
+ * phases, separated by commas or read one per line from {@code file:PATH}:
+ *
+ * <ul>
+ *   <li>{@code constant:RATE:DURATION} - a steady rate
+ *   <li>{@code ramp:FROM-TO:DURATION} - a rate that changes linearly from FROM to TO
+ *   <li>{@code step:FROM-TO:INCREMENT:DURATION} - plateaus from FROM to TO, each lasting DURATION
+ *   <li>{@code sine:MEAN:AMPLITUDE:PERIOD:DURATION} - a rate that oscillates around MEAN
+ *   <li>{@code burst:BASE:PEAK:LENGTH:PERIOD:DURATION} - BASE with a burst of PEAK every PERIOD
+ * </ul>
+ *
+ * Rates are records per second and durations are seconds, or have a suffix of ms, s, m or h. Once
+ * the profile ends, its final rate is held.
+ */
+public class LoadProfile {
+
+  private interface Rate {
+    /** The rate at the given number of seconds into the phase. */
+    double at(double seconds);
+  }
+
+  private static class Phase {
+    final double start;
+    final double length;
+    final Rate rate;
+
+    Phase(double start, double length, Rate rate) {
+      this.start = start;
+      this.length = length;
+      this.rate = rate;
+    }
+  }
+
+  private final String description;
+  private final Phase[] phases;
+  private final double lengthSeconds;
+  private final double finalRate;
+
+  private LoadProfile(String description, Phase[] phases) {
+    this.description = description;
+    this.phases = phases;
+    Phase last = phases[phases.length - 1];
+    this.lengthSeconds = last.start + last.length;
+    this.finalRate = last.rate.at(last.length);
+  }
+
+  /** Parses a --load-profile value, throwing IllegalArgumentException if it is not valid. */
+  public static LoadProfile parse(String value) {
+    String spec = value.trim();
+    List<String> phaseSpecs = new ArrayList<>();
+    if (spec.startsWith("file:")) {
+      String path = spec.substring("file:".length());
+      try {
+        for (String line : Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8)) {
+          String trimmed = line.trim();
+          if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+            phaseSpecs.add(trimmed);
+          }
+        }
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Could not read load profile " + path, e);
+      }
+    } else {
+      for (String phase : spec.split(",")) {
+        phaseSpecs.add(phase.trim());
+      }
+    }
+    if (phaseSpecs.isEmpty()) {
+      throw new IllegalArgumentException("The load profile " + spec + " has no phases");
+    }
+
+    List<Phase> phases = new ArrayList<>();
+    double start = 0;
+    for (String phaseSpec : phaseSpecs) {
+      Phase phase = parsePhase(phaseSpec, start);
+      phases.add(phase);
+      start += phase.length;
+    }
+    LoadProfile profile = new LoadProfile(spec, phases.toArray(new Phase[0]));
+    if (profile.finalRate < 1) {
+      throw new IllegalArgumentException("The load profile " + spec + " must not end at rate 0");
+    }
+    return profile;
+  }
+
+  private static Phase parsePhase(String spec, double start) {
+    String[] fields = spec.split(":");
+    switch (fields[0]) {
+      case "constant":
+        {
+          requireFields(spec, fields, 3);
+          double rate = parseRate(fields[1]);
+          return new Phase(start, parseDuration(fields[2]), seconds -> rate);
+        }
+      case "ramp":
+        {
+          requireFields(spec, fields, 3);
+          double[] range = parseRange(spec, fields[1]);
+          double length = parseDuration(fields[2]);
+          double slope = (range[1] - range[0]) / length;
+          return new Phase(start, length, seconds -> range[0] + slope * seconds);
+        }
+      case "step":
+        {
+          requireFields(spec, fields, 4);
+          double[] range = parseRange(spec, fields[1]);
+          double increment = parseRate(fields[2]);
+          double plateau = parseDuration(fields[3]);
+          if (increment <= 0) {
+            throw new IllegalArgumentException("Invalid step increment in " + spec);
+          }
+          int plateaus = (int) Math.floor(Math.abs(range[1] - range[0]) / increment) + 1;
+          double direction = Math.signum(range[1] - range[0]);
+          return new Phase(
+              start,
+              plateaus * plateau,
+              seconds -> {
+                int step = Math.min(plateaus - 1, (int) (seconds / plateau));
+                return range[0] + direction * increment * step;
+              });
+        }
+      case "sine":
+        {
+          requireFields(spec, fields, 5);
+          double mean = parseRate(fields[1]);
+          double amplitude = parseRate(fields[2]);
+          double period = parseDuration(fields[3]);
+          if (amplitude > mean) {
+            throw new IllegalArgumentException("The amplitude is larger than the mean in " + spec);
+          }
+          return new Phase(
+              start,
+              parseDuration(fields[4]),
+              seconds -> mean + amplitude * Math.sin(2 * Math.PI * seconds / period));
+        }
+      case "burst":
+        {
+          requireFields(spec, fields, 6);
+          double base = parseRate(fields[1]);
+          double peak = parseRate(fields[2]);
+          double burst = parseDuration(fields[3]);
+          double period = parseDuration(fields[4]);
+          if (burst > period) {
+            throw new IllegalArgumentException("The burst is longer than its period in " + spec);
+          }
+          return new Phase(
+              start, parseDuration(fields[5]), seconds -> seconds % period < burst ? peak : base);
+        }
+      default:
+        throw new IllegalArgumentException("Unknown load profile phase " + fields[0]);
+    }
+  }
+
+  private static void requireFields(String spec, String[] fields, int expected) {
+    if (fields.length != expected) {
+      throw new IllegalArgumentException("Invalid load profile phase " + spec);
+    }
+  }
+
+  private static double[] parseRange(String spec, String value) {
+    String[] range = value.split("-");
+    if (range.length != 2) {
+      throw new IllegalArgumentException("Invalid rate range in " + spec);
+    }
+    return new double[] {parseRate(range[0]), parseRate(range[1])};
+  }
+
+  private static double parseRate(String value) {
+    double rate = Double.parseDouble(value.trim());
+    if (rate < 0 || Double.isNaN(rate) || Double.isInfinite(rate)) {
+      throw new IllegalArgumentException("Invalid rate " + value);
+    }
+    return rate;
+  }
+
+  /** Parses a duration in seconds, with an optional suffix of ms, s, m or h. */
+  static double parseDuration(String value) {
+    String trimmed = value.trim();
+    double scale = 1;
+    if (trimmed.endsWith("ms")) {
+      scale = 0.001;
+      trimmed = trimmed.substring(0, trimmed.length() - 2);
+    } else if (trimmed.endsWith("s")) {
+      trimmed = trimmed.substring(0, trimmed.length() - 1);
+    } else if (trimmed.endsWith("m")) {
+      scale = 60;
+      trimmed = trimmed.substring(0, trimmed.length() - 1);
+    } else if (trimmed.endsWith("h")) {
+      scale = 3600;
+      trimmed = trimmed.substring(0, trimmed.length() - 1);
+    }
+    double seconds = Double.parseDouble(trimmed) * scale;
+    if (!(seconds > 0) || Double.isInfinite(seconds)) {
+      throw new IllegalArgumentException("Invalid duration " + value);
+    }
+    return seconds;
+  }
+
+  /** The target rate in records per second at the given number of seconds into the profile. */
+  public double rateAt(double seconds) {
+    if (seconds >= lengthSeconds) {
+      return finalRate;
+    }
+    int low = 0;
+    int high = phases.length - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (phases[middle].start <= seconds) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    Phase phase = phases[low];
+    return Math.max(0, phase.rate.at(Math.max(0, seconds - phase.start)));
+  }
+
+  /** The time from the start of the profile to the end of its last phase. */
+  public double getLengthSeconds() {
+    return lengthSeconds;
+  }
+
+  @Override
+  public String toString() {
+    return description;
+  }
+}
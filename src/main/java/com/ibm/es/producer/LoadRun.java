@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a single load test on the in-process engine: sends for --num-records or --duration, or
+ * searches for the highest sustainable rate with --search, while reporting each interval and
+ * serving live metrics, then prints the combined result, writes the results files and compares the
+ * run against a baseline.
+ */
+public final class LoadRun {
+
+  private static Logger logger = LoggerFactory.getLogger(LoadRun.class);
+  private static ResourceBundle producerTranslations =
+      ResourceBundle.getBundle("MessageBundle", Locale.getDefault());
+
+  private LoadRun() {}
+
+  /** Runs the load test and returns the exit code for the tool. */
+  public static int run(Producer producer) {
+    LoadEngine engine = producer.createEngine();
+    IntervalReporter reporter = null;
+    ResourceMonitor resources = null;
+    LiveMetrics liveMetrics = null;
+    MetricsServer metricsServer = null;
+    ResultsWriter results =
+        producer.getResultsJsonPath() != null || producer.getResultsCsvPath() != null
+            ? new ResultsWriter()
+            : null;
+    int reportInterval = producer.getReportInterval();
+    boolean resourceUsage = producer.isResourceUsage();
+    try {
+      if (producer.getWarmUpNanos() > 0 || producer.getWarmUpRecords() > 0) {
+        System.out.println(
+            String.format(
+                producerTranslations.getString("producer.warmUp.start"),
+                RunReport.describeWarmUp(producer.getWarmUpNanos(), producer.getWarmUpRecords())));
+      }
+      engine.prepare();
+      if (producer.getMetricsPort() != null || producer.isJmx()) {
+        liveMetrics = new LiveMetrics(engine);
+        if (producer.getMetricsPort() != null) {
+          metricsServer = MetricsServer.start(producer.getMetricsPort(), liveMetrics);
+          System.out.println(
+              String.format(
+                  producerTranslations.getString("producer.metricsServer"),
+                  metricsServer.getPort()));
+        }
+        if (producer.isJmx()) {
+          liveMetrics.tryRegister();
+        }
+      }
+      if (reportInterval > 0 || resourceUsage) {
+        resources = new ResourceMonitor(engine);
+        resources.start();
+        if (resourceUsage) {
+          resources.sampleEvery(ResourceMonitor.SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+      }
+      engine.start();
+      if (reportInterval > 0) {
+        reporter = new IntervalReporter(engine, reportInterval, TimeUnit.SECONDS);
+        reporter.addListener(RunReport::printInterval);
+        reporter.addListener(RunReport.resourceReporter(resources, resourceUsage));
+        if (engine.getPartitionStats() != null) {
+          reporter.addListener(
+              RunReport.partitionBreakdownReporter(engine, producer.getBreakdownTop()));
+        }
+        if (results != null) {
+          reporter.addListener(results);
+        }
+        reporter.start();
+      }
+      if (producer.getSearchStrategy() != null) {
+        SearchMode.run(producer, engine);
+        engine.stop();
+      } else {
+        engine.awaitCompletion();
+      }
+      if (reporter != null) {
+        reporter.finish();
+      }
+
+      ProducerStats.Snapshot total = engine.aggregate();
+      RunReport.printSummary(producer, engine, total, resourceUsage ? resources.summarize() : null);
+      if (producer.shouldPrintMetrics()) {
+        engine.printMetrics();
+      }
+      if (results != null) {
+        RunResults.write(producer, results, engine, total);
+      }
+      if (producer.getBaselinePath() != null) {
+        return RunResults.compareWithBaseline(producer, total);
+      }
+      return 0;
+    } catch (IOException exception) {
+      System.err.println(producerTranslations.getString("producer.startFail"));
+      logger.error(producerTranslations.getString("producer.startFail"), exception);
+      return 1;
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      return 1;
+    } finally {
+      if (reporter != null) {
+        reporter.interrupt();
+      }
+      if (resources != null) {
+        resources.close();
+      }
+      if (metricsServer != null) {
+        metricsServer.stop();
+      }
+      if (liveMetrics != null) {
+        liveMetrics.tryUnregister();
+      }
+      engine.close();
+    }
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.kafka.common.PartitionInfo;
+
+/**
+ * Acknowledgements counted by the partition they were written to, taken from the record metadata of
+ * each send, for --partition-breakdown. Partitions are attributed to their leader broker from the
+ * producer's cluster metadata, so that a slow broker stands out from the aggregate results. One
+ * instance is shared by every producer thread.
+ */
+public class PartitionStats {
+
+  /** The broker id of a partition whose leader is not known. */
+  public static final int UNKNOWN_BROKER = -1;
+
+  private static class Counters {
+    final AtomicLong acked = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+    final LatencyHistogram latencies = new LatencyHistogram();
+  }
+
+  private final Map<Integer, Counters> partitions = new ConcurrentHashMap<>();
+  private volatile Map<Integer, Integer> leaders = Collections.emptyMap();
+  private volatile long startNanos;
+
+  void start(long nowNanos) {
+    startNanos = nowNanos;
+  }
+
+  private Counters counters(int partition) {
+    Counters counters = partitions.get(partition);
+    return counters != null ? counters : partitions.computeIfAbsent(partition, p -> new Counters());
+  }
+
+  void recordAck(int partition, long latencyMicros) {
+    Counters counters = counters(partition);
+    counters.acked.incrementAndGet();
+    counters.latencies.record(latencyMicros);
+  }
+
+  void recordError(int partition) {
+    counters(partition).errors.incrementAndGet();
+  }
+
+  /** Updates the leader of each partition from the cluster metadata. */
+  void updateLeaders(List<PartitionInfo> partitionInfos) {
+    Map<Integer, Integer> updated = new HashMap<>();
+    for (PartitionInfo info : partitionInfos) {
+      if (info.leader() != null) {
+        updated.put(info.partition(), info.leader().id());
+      }
+    }
+    leaders = updated;
+  }
+
+  /** Copies the current counters; recording may continue while the copy is taken. */
+  public Snapshot snapshot() {
+    Snapshot snapshot = new Snapshot();
+    Map<Integer, Integer> currentLeaders = leaders;
+    for (Map.Entry<Integer, Counters> entry : partitions.entrySet()) {
+      int partition = entry.getKey();
+      Counters counters = entry.getValue();
+      snapshot.partitions.put(
+          partition,
+          new Group(
+              partition,
+              currentLeaders.getOrDefault(partition, UNKNOWN_BROKER),
+              counters.acked.get(),
+              counters.errors.get(),
+              counters.latencies.snapshot()));
+    }
+    snapshot.startNanos = startNanos;
+    snapshot.endNanos = System.nanoTime();
+    return snapshot;
+  }
+
+  /** A point-in-time copy of the statistics of every partition. */
+  public static class Snapshot {
+    private final Map<Integer, Group> partitions = new TreeMap<>();
+    private long startNanos;
+    private long endNanos;
+
+    /** Returns a new snapshot holding only what happened since the earlier snapshot. */
+    public Snapshot since(Snapshot earlier) {
+      Snapshot interval = new Snapshot();
+      for (Group group : partitions.values()) {
+        Group previous = earlier.partitions.get(group.id);
+        interval.partitions.put(group.id, previous == null ? group : group.since(previous));
+      }
+      interval.startNanos = earlier.endNanos;
+      interval.endNanos = endNanos;
+      return interval;
+    }
+
+    public double getElapsedSeconds() {
+      return Math.max(endNanos - startNanos, 1L) / 1e9;
+    }
+
+    /** The given number of partitions with the highest 99th percentile latency. */
+    public List<Group> getSlowestPartitions(int count) {
+      return slowest(new ArrayList<>(partitions.values()), count);
+    }
+
+    /** The given number of leader brokers with the highest 99th percentile latency. */
+    public List<Group> getSlowestBrokers(int count) {
+      Map<Integer, Group> brokers = new TreeMap<>();
+      for (Group partition : partitions.values()) {
+        brokers
+            .computeIfAbsent(
+                partition.leader, id -> new Group(id, id, 0, 0, new LatencyHistogram.Snapshot()))
+            .add(partition);
+      }
+      return slowest(new ArrayList<>(brokers.values()), count);
+    }
+
+    private static List<Group> slowest(List<Group> groups, int count) {
+      groups.removeIf(group -> group.acked == 0 && group.errors == 0);
+      groups.sort(
+          Comparator.comparingDouble((Group group) -> -group.getLatencyPercentileMs(99))
+              .thenComparingLong(group -> -group.errors)
+              .thenComparingInt(group -> group.id));
+      return groups.subList(0, Math.min(count, groups.size()));
+    }
+  }
+
+  /** The statistics of one partition, or of every partition led by one broker. */
+  public static class Group {
+    private final int id;
+    private final int leader;
+    private long acked;
+    private long errors;
+    private final LatencyHistogram.Snapshot latencies;
+
+    Group(int id, int leader, long acked, long errors, LatencyHistogram.Snapshot latencies) {
+      this.id = id;
+      this.leader = leader;
+      this.acked = acked;
+      this.errors = errors;
+      this.latencies = latencies;
+    }
+
+    private Group since(Group earlier) {
+      return new Group(
+          id,
+          leader,
+          acked - earlier.acked,
+          errors - earlier.errors,
+          latencies.since(earlier.latencies));
+    }
+
+    private void add(Group other) {
+      acked += other.acked;
+      errors += other.errors;
+      latencies.merge(other.latencies);
+    }
+
+    /** The partition number, or the broker id for a group of partitions. */
+    public int getId() {
+      return id;
+    }
+
+    /** The leader broker of the partition, or {@link PartitionStats#UNKNOWN_BROKER}. */
+    public int getLeader() {
+      return leader;
+    }
+
+    public long getAcked() {
+      return acked;
+    }
+
+    public long getErrors() {
+      return errors;
+    }
+
+    public double getLatencyPercentileMs(double percentile) {
+      return latencies.getPercentileMs(percentile);
+    }
+  }
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * What generated payloads contain, parsed from --payload-content. How well payloads compress
+ * depends entirely on their content, so this sets how much compression.type can save:
+ *
+ * <ul>
+ *   <li>{@code letters} - random upper case letters, as sent by the Kafka performance tool
+ *   <li>{@code random} - random bytes, which cannot be compressed
+ *   <li>{@code entropy:BITS} - bytes drawn from 2^BITS equally likely values, for BITS from 0 to 8
+ *   <li>{@code ratio:RATIO} - payloads that compress to about RATIO of their size
+ *   <li>{@code template:PATH} - records built from a template, such as JSON documents
+ * </ul>
+ *
+ * Payloads are generated once, into the payload pool, so none of this work is done while sending.
+ */
+public class PayloadContent {
+
+  public static final String DEFAULT = "letters";
+
+  /** Every block of this many bytes of a ratio payload is part random and part repeated. */
+  private static final int RATIO_BLOCK = 256;
+
+  private static final byte[] ALPHABET =
+      "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_"
+          .getBytes(StandardCharsets.US_ASCII);
+
+  private static final String[] WORDS = {
+    "alpha",
+    "bravo",
+    "charlie",
+    "delta",
+    "echo",
+    "foxtrot",
+    "golf",
+    "hotel",
+    "india",
+    "juliet",
+    "kilo",
+    "lima",
+    "mike",
+    "november",
+    "oscar",
+    "papa",
+    "quebec",
+    "romeo",
+    "sierra",
+    "tango",
+    "uniform",
+    "victor",
+    "whiskey",
+    "xray",
+    "yankee",
+    "zulu",
+    "account",
+    "order",
+    "payment",
+    "customer",
+    "product",
+    "invoice",
+    "shipment",
+    "warehouse",
+    "pending",
+    "completed",
+    "cancelled",
+    "refunded",
+    "london",
+    "paris",
+    "tokyo",
+    "sydney",
+    "toronto",
+    "berlin",
+    "madrid",
+    "mumbai"
+  };
+
+  private interface Generator {
+    /** Generates a payload of the given size, or of its own size for a template. */
+    byte[] generate(int size, Random random);
+  }
+
+  private final String description;
+  private final Generator generator;
+  private final boolean ownSize;
+
+  private PayloadContent(String description, Generator generator, boolean ownSize) {
+    this.description = description;
+    this.generator = generator;
+    this.ownSize = ownSize;
+  }
+
+  /** Random upper case letters, the content of payloads before --payload-content existed. */
+  static final PayloadContent LETTERS =
+      new PayloadContent(
+          DEFAULT,
+          (size, random) -> {
+            byte[] payload = new byte[size];
+            for (int i = 0; i < size; i++) {
+              payload[i] = (byte) (random.nextInt(26) + 65);
+            }
+            return payload;
+          },
+          false);
+
+  /** Parses a --payload-content value, throwing IllegalArgumentException if it is not valid. */
+  public static PayloadContent parse(String value) {
+    String spec = value.trim();
+    int colon = spec.indexOf(':');
+    String type = colon < 0 ? spec : spec.substring(0, colon);
+    String argument = colon < 0 ? null : spec.substring(colon + 1);
+    switch (type) {
+      case "letters":
+        return LETTERS;
+      case "random":
+        return new PayloadContent(
+            spec,
+            (size, random) -> {
+              byte[] payload = new byte[size];
+              random.nextBytes(payload);
+              return payload;
+            },
+            false);
+      case "entropy":
+        {
+          double bits = parseArgument(spec, argument);
+          if (bits < 0 || bits > 8) {
+            throw new IllegalArgumentException("The entropy must be from 0 to 8 bits in " + spec);
+          }
+          int symbols = (int) Math.max(1, Math.min(256, Math.round(Math.pow(2, bits))));
+          return new PayloadContent(
+              spec,
+              (size, random) -> {
+                byte[] payload = new byte[size];
+                for (int i = 0; i < size; i++) {
+                  payload[i] = (byte) random.nextInt(symbols);
+                }
+                return payload;
+              },
+              false);
+        }
+      case "ratio":
+        {
+          double ratio = parseArgument(spec, argument);
+          if (!(ratio > 0) || ratio > 1) {
+            throw new IllegalArgumentException(
+                "The ratio must be above 0 and at most 1 in " + spec);
+          }
+          return new PayloadContent(spec, (size, random) -> ratio(size, ratio, random), false);
+        }
+      case "template":
+        {
+          if (argument == null || argument.isEmpty()) {
+            throw new IllegalArgumentException("Missing path for payload content " + spec);
+          }
+          List<Fragment> fragments = parseTemplate(readTemplate(argument));
+          return new PayloadContent(
+              spec,
+              (size, random) -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                for (Fragment fragment : fragments) {
+                  fragment.write(out, random);
+                }
+                return out.toByteArray();
+              },
+              true);
+        }
+      default:
+        throw new IllegalArgumentException("Unknown payload content " + type);
+    }
+  }
+
+  private static double parseArgument(String spec, String argument) {
+    if (argument == null || argument.isEmpty()) {
+      throw new IllegalArgumentException("Missing parameter for payload content " + spec);
+    }
+    return Double.parseDouble(argument);
+  }
+
+  /**
+   * Fills each block with random bytes for RATIO of its length and repeats the block's first byte
+   * for the rest. Compressors cannot shrink the random part and shrink the repeated part to almost
+   * nothing, so the payload compresses to about RATIO of its size.
+   */
+  private static byte[] ratio(int size, double ratio, Random random) {
+    byte[] payload = new byte[size];
+    for (int start = 0; start < size; start += RATIO_BLOCK) {
+      int length = Math.min(RATIO_BLOCK, size - start);
+      int randomLength = Math.max(1, (int) Math.round(length * ratio));
+      for (int i = 0; i < randomLength; i++) {
+        payload[start + i] = (byte) random.nextInt(256);
+      }
+      for (int i = randomLength; i < length; i++) {
+        payload[start + i] = payload[start];
+      }
+    }
+    return payload;
+  }
+
+  private static String readTemplate(String path) {
+    try {
+      return new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8).trim();
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Could not read payload template " + path, e);
+    }
+  }
+
+  /** A piece of a template: fixed text, or a placeholder filled in for each payload. */
+  private interface Fragment {
+    void write(ByteArrayOutputStream out, Random random);
+  }
+
+  /**
+   * Splits a template into fragments. The fixed text between placeholders is encoded once here, so
+   * generating a payload only copies it.
+   */
+  private static List<Fragment> parseTemplate(String template) {
+    List<Fragment> fragments = new ArrayList<>();
+    int position = 0;
+    while (position < template.length()) {
+      int open = template.indexOf("${", position);
+      if (open < 0) {
+        fragments.add(literal(template.substring(position)));
+        break;
+      }
+      int close = template.indexOf('}', open);
+      if (close < 0) {
+        throw new IllegalArgumentException("Unclosed placeholder in payload template");
+      }
+      if (open > position) {
+        fragments.add(literal(template.substring(position, open)));
+      }
+      fragments.add(placeholder(template.substring(open + 2, close)));
+      position = close + 1;
+    }
+    return fragments;
+  }
+
+  private static Fragment literal(String text) {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    return (out, random) -> out.write(bytes, 0, bytes.length);
+  }
+
+  private static Fragment placeholder(String placeholder) {
+    int colon = placeholder.indexOf(':');
+    String type = colon < 0 ? placeholder : placeholder.substring(0, colon);
+    String argument = colon < 0 ? null : placeholder.substring(colon + 1);
+    switch (type) {
+      case "int":
+        {
+          String[] range = requireArgument(placeholder, argument).split("-");
+          if (range.length != 2) {
+            throw new IllegalArgumentException("Invalid range in placeholder " + placeholder);
+          }
+          long min = Long.parseLong(range[0].trim());
+          long max = Long.parseLong(range[1].trim());
+          if (max < min) {
+            throw new IllegalArgumentException("Invalid range in placeholder " + placeholder);
+          }
+          return (out, random) -> ascii(out, String.valueOf(min + nextLong(random, max - min + 1)));
+        }
+      case "word":
+        return (out, random) -> ascii(out, WORDS[random.nextInt(WORDS.length)]);
+      case "words":
+        {
+          int count = Integer.parseInt(requireArgument(placeholder, argument).trim());
+          return (out, random) -> {
+            for (int i = 0; i < count; i++) {
+              if (i > 0) {
+                out.write(' ');
+              }
+              ascii(out, WORDS[random.nextInt(WORDS.length)]);
+            }
+          };
+        }
+      case "choice":
+        {
+          String[] choices = requireArgument(placeholder, argument).split("\\|");
+          byte[][] encoded = new byte[choices.length][];
+          for (int i = 0; i < choices.length; i++) {
+            encoded[i] = choices[i].getBytes(StandardCharsets.UTF_8);
+          }
+          return (out, random) -> {
+            byte[] choice = encoded[random.nextInt(encoded.length)];
+            out.write(choice, 0, choice.length);
+          };
+        }
+      case "string":
+        {
+          int length = Integer.parseInt(requireArgument(placeholder, argument).trim());
+          return (out, random) -> {
+            for (int i = 0; i < length; i++) {
+              out.write(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+          };
+        }
+      case "uuid":
+        return (out, random) ->
+            ascii(out, new UUID(random.nextLong(), random.nextLong()).toString());
+      case "timestamp":
+        {
+          long base = 1577836800000L;
+          return (out, random) ->
+              ascii(out, String.valueOf(base + nextLong(random, 365L * 24 * 3600 * 1000)));
+        }
+      default:
+        throw new IllegalArgumentException("Unknown placeholder " + placeholder);
+    }
+  }
+
+  private static String requireArgument(String placeholder, String argument) {
+    if (argument == null || argument.isEmpty()) {
+      throw new IllegalArgumentException("Missing parameter in placeholder " + placeholder);
+    }
+    return argument;
+  }
+
+  private static long nextLong(Random random, long bound) {
+    return (long) (random.nextDouble() * bound);
+  }
+
+  private static void ascii(ByteArrayOutputStream out, String text) {
+    for (int i = 0; i < text.length(); i++) {
+      out.write(text.charAt(i));
+    }
+  }
+
+  /** Generates one payload; templates ignore the size, as their records have their own size. */
+  byte[] generate(int size, Random random) {
+    return generator.generate(size, random);
+  }
+
+  /** Whether payloads have their own size rather than one from --record-size. */
+  public boolean hasOwnSize() {
+    return ownSize;
+  }
+
+  @Override
+  public String toString() {
+    return description;
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Payloads read from a --payload-file. The file is memory-mapped once and an index of where each
+ * payload starts is built, so every producer thread shares the same mapping instead of holding its
+ * own copy of the file. Payloads are either separated by a delimiter (text) or each preceded by a 4
+ * byte big-endian length (binary), which allows payloads that are not valid UTF-8.
+ *
+ * <p>Files up to {@link #PRELOAD_LIMIT_BYTES} are copied into byte arrays once when the file is
+ * opened and those arrays are sent as they are. Larger files are left in the mapping and each
+ * payload is copied out of the page cache when it is sent. Each reader keeps a small cache of
+ * buffers, one per recently sent length up to {@link #READER_CACHE_SLOTS} lengths of at most {@link
+ * #READER_CACHE_MAX_LENGTH} bytes, and reuses them because KafkaProducer copies the value into its
+ * batch before send() returns. Longer payloads, and lengths that miss the cache, get a new array.
+ */
+public class PayloadFile implements PayloadSource {
+
+  public enum Format {
+    TEXT,
+    BINARY
+  }
+
+  static final long PRELOAD_LIMIT_BYTES = 256L * 1024 * 1024;
+
+  // each reader caches at most this many buffers of at most this many bytes, 4 MB in all
+  static final int READER_CACHE_SLOTS = 64;
+  static final int READER_CACHE_MAX_LENGTH = 64 * 1024;
+
+  private static final int CHUNK_BITS = 30;
+  private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+  private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final MappedByteBuffer[] chunks;
+  private long[] offsets = new long[1024];
+  private int[] lengths = new int[1024];
+  private int count;
+  private long totalBytes;
+  private byte[][] preloaded;
+
+  private PayloadFile(MappedByteBuffer[] chunks) {
+    this.chunks = chunks;
+  }
+
+  /** Maps the file and indexes the payloads in it. */
+  public static PayloadFile open(String path, String delimiter, Format format) throws IOException {
+    MappedByteBuffer[] chunks;
+    long size;
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      size = channel.size();
+      chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+      for (int i = 0; i < chunks.length; i++) {
+        long start = (long) i << CHUNK_BITS;
+        chunks[i] =
+            channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start));
+      }
+    }
+
+    PayloadFile file = new PayloadFile(chunks);
+    if (format == Format.BINARY) {
+      file.indexLengthPrefixed(size);
+    } else {
+      file.indexDelimited(size, delimiter.getBytes(StandardCharsets.UTF_8));
+    }
+    if (file.count == 0) {
+      throw new IOException("No payloads found in " + path);
+    }
+    if (file.totalBytes <= PRELOAD_LIMIT_BYTES) {
+      file.preload();
+    }
+    return file;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  /** Returns a copy of the payload at the given index. */
+  public byte[] get(int index) {
+    if (preloaded != null) {
+      return preloaded[index];
+    }
+    byte[] payload = new byte[lengths[index]];
+    copy(offsets[index], payload, views());
+    return payload;
+  }
+
+  @Override
+  public Reader newReader() {
+    if (preloaded != null) {
+      final byte[][] payloads = preloaded;
+      return () -> payloads[ThreadLocalRandom.current().nextInt(payloads.length)];
+    }
+    final ByteBuffer[] views = views();
+    return new Reader() {
+      // direct-mapped by length, so a length evicts whichever other length shared its slot
+      private final byte[][] buffers = new byte[READER_CACHE_SLOTS][];
+
+      @Override
+      public byte[] next() {
+        int index = ThreadLocalRandom.current().nextInt(count);
+        int length = lengths[index];
+        byte[] buffer;
+        if (length <= READER_CACHE_MAX_LENGTH) {
+          int slot = length % READER_CACHE_SLOTS;
+          buffer = buffers[slot];
+          if (buffer == null || buffer.length != length) {
+            buffer = new byte[length];
+            buffers[slot] = buffer;
+          }
+        } else {
+          buffer = new byte[length];
+        }
+        copy(offsets[index], buffer, views);
+        return buffer;
+      }
+    };
+  }
+
+  /** Splits the file on the delimiter bytes, skipping empty payloads. */
+  private void indexDelimited(long size, byte[] delimiter) {
+    if (delimiter.length == 0) {
+      add(0, size);
+      return;
+    }
+    // Knuth-Morris-Pratt failure table so delimiters of any length match in a single pass
+    int[] failure = new int[delimiter.length];
+    for (int i = 1, k = 0; i < delimiter.length; i++) {
+      while (k > 0 && delimiter[i] != delimiter[k]) {
+        k = failure[k - 1];
+      }
+      if (delimiter[i] == delimiter[k]) {
+        k++;
+      }
+      failure[i] = k;
+    }
+
+    long start = 0;
+    int matched = 0;
+    for (long position = 0; position < size; position++) {
+      byte value = byteAt(position);
+      while (matched > 0 && value != delimiter[matched]) {
+        matched = failure[matched - 1];
+      }
+      if (value == delimiter[matched]) {
+        matched++;
+      }
+      if (matched == delimiter.length) {
+        add(start, position + 1 - delimiter.length - start);
+        start = position + 1;
+        matched = 0;
+      }
+    }
+    add(start, size - start);
+  }
+
+  /** Reads payloads that are each preceded by their length as a 4 byte big-endian integer. */
+  private void indexLengthPrefixed(long size) throws IOException {
+    long position = 0;
+    while (position + 4 <= size) {
+      int length =
+          ((byteAt(position) & 0xff) << 24)
+              | ((byteAt(position + 1) & 0xff) << 16)
+              | ((byteAt(position + 2) & 0xff) << 8)
+              | (byteAt(position + 3) & 0xff);
+      position += 4;
+      if (length < 0 || position + length > size) {
+        throw new IOException("Invalid payload length " + length + " at offset " + (position - 4));
+      }
+      add(position, length);
+      position += length;
+    }
+  }
+
+  private void add(long offset, long length) {
+    if (length <= 0) {
+      return;
+    }
+    if (count == offsets.length) {
+      offsets = Arrays.copyOf(offsets, count * 2);
+      lengths = Arrays.copyOf(lengths, count * 2);
+    }
+    offsets[count] = offset;
+    lengths[count] = (int) length;
+    totalBytes += length;
+    count++;
+  }
+
+  private void preload() {
+    ByteBuffer[] views = views();
+    byte[][] payloads = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      payloads[i] = new byte[lengths[i]];
+      copy(offsets[i], payloads[i], views);
+    }
+    preloaded = payloads;
+  }
+
+  private byte byteAt(long position) {
+    return chunks[(int) (position >>> CHUNK_BITS)].get((int) (position & CHUNK_MASK));
+  }
+
+  /** Buffers over the mapping with their own positions, for use by a single thread. */
+  private ByteBuffer[] views() {
+    ByteBuffer[] views = new ByteBuffer[chunks.length];
+    for (int i = 0; i < chunks.length; i++) {
+      views[i] = ((ByteBuffer) chunks[i]).duplicate();
+    }
+    return views;
+  }
+
+  private static void copy(long offset, byte[] destination, ByteBuffer[] views) {
+    int copied = 0;
+    while (copied < destination.length) {
+      long position = offset + copied;
+      ByteBuffer view = views[(int) (position >>> CHUNK_BITS)];
+      int index = (int) (position & CHUNK_MASK);
+      int length = Math.min(destination.length - copied, view.limit() - index);
+      ((Buffer) view).position(index);
+      view.get(destination, copied, length);
+      copied += length;
+    }
+  }
+}
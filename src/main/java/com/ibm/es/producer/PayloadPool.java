@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * A fixed set of generated payloads used with --record-size. The payloads are generated once at
+ * startup and each thread cycles through them, so no payload is allocated or randomised while
+ * sending.
+ *
+ * <p>An off-heap pool keeps the payloads in a direct buffer, so a large pool does not add to the
+ * heap. Each send copies the payload into a buffer owned by the thread, which is reused because
+ * KafkaProducer copies the value into its batch before send() returns.
+ */
+public class PayloadPool implements PayloadSource {
+
+  private final byte[][] payloads;
+  private final ByteBuffer offHeap;
+  private final int[] offsets;
+  private final int[] lengths;
+  // for off-heap pools, the index of each payload's length among the distinct lengths
+  private final int[] lengthSlots;
+  private final int[] slotLengths;
+
+  private PayloadPool(byte[][] payloads, ByteBuffer offHeap, int[] offsets, int[] lengths) {
+    this.payloads = payloads;
+    this.offHeap = offHeap;
+    this.offsets = offsets;
+    this.lengths = lengths;
+    this.slotLengths = IntStream.of(lengths).distinct().sorted().toArray();
+    this.lengthSlots = new int[lengths.length];
+    for (int i = 0; i < lengths.length; i++) {
+      lengthSlots[i] = Arrays.binarySearch(slotLengths, lengths[i]);
+    }
+  }
+
+  /**
+   * Generates one payload of each of the given sizes. The content is random upper case letters,
+   * matching the payloads of the Kafka performance tool.
+   */
+  public static PayloadPool generate(int[] sizes, boolean offHeap, long seed) {
+    return generate(sizes, PayloadContent.LETTERS, offHeap, seed);
+  }
+
+  /**
+   * Generates one payload for each of the given sizes with the given content. Templates make
+   * payloads of their own size, so for those the sizes only set how many payloads there are.
+   */
+  public static PayloadPool generate(
+      int[] sizes, PayloadContent content, boolean offHeap, long seed) {
+    if (offHeap) {
+      // generate twice from the same seed, first to find the lengths and then to fill the buffer,
+      // so that the pool is never held on the heap
+      Random random = new Random(seed);
+      int[] lengths = new int[sizes.length];
+      int[] offsets = new int[sizes.length];
+      long total = 0;
+      for (int i = 0; i < sizes.length; i++) {
+        lengths[i] = content.hasOwnSize() ? content.generate(sizes[i], random).length : sizes[i];
+        offsets[i] = (int) total;
+        total += lengths[i];
+      }
+      if (total > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("An off-heap payload pool must be smaller than 2 GB");
+      }
+      random = new Random(seed);
+      ByteBuffer buffer = ByteBuffer.allocateDirect((int) total);
+      for (int size : sizes) {
+        buffer.put(content.generate(size, random));
+      }
+      return new PayloadPool(null, buffer, offsets, lengths);
+    }
+
+    Random random = new Random(seed);
+    byte[][] payloads = new byte[sizes.length][];
+    int[] lengths = new int[sizes.length];
+    int[] offsets = new int[sizes.length];
+    long total = 0;
+    for (int i = 0; i < sizes.length; i++) {
+      payloads[i] = content.generate(sizes[i], random);
+      lengths[i] = payloads[i].length;
+      offsets[i] = (int) total;
+      total += lengths[i];
+    }
+    return new PayloadPool(payloads, null, offsets, lengths);
+  }
+
+  public int getCount() {
+    return lengths.length;
+  }
+
+  public boolean isOffHeap() {
+    return offHeap != null;
+  }
+
+  @Override
+  public Reader newReader() {
+    // start each thread at a different payload so threads do not send in lock step
+    int start = ThreadLocalRandom.current().nextInt(lengths.length);
+    if (offHeap == null) {
+      return new Reader() {
+        private int next = start;
+
+        @Override
+        public byte[] next() {
+          if (next == payloads.length) {
+            next = 0;
+          }
+          return payloads[next++];
+        }
+      };
+    }
+
+    ByteBuffer view = offHeap.duplicate();
+    return new Reader() {
+      private final byte[][] buffers = new byte[slotLengths.length][];
+      private int next = start;
+
+      @Override
+      public byte[] next() {
+        if (next == lengths.length) {
+          next = 0;
+        }
+        int slot = lengthSlots[next];
+        byte[] buffer = buffers[slot];
+        if (buffer == null) {
+          buffer = new byte[slotLengths[slot]];
+          buffers[slot] = buffer;
+        }
+        ((Buffer) view).position(offsets[next++]);
+        view.get(buffer);
+        return buffer;
+      }
+    };
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+/**
+ * The record values to send. A single source is built once and shared by every producer thread;
+ * each thread takes its own {@link Reader} so that any per-thread state stays off the shared
+ * object.
+ */
+public interface PayloadSource {
+
+  /** Creates a reader for use by a single producer thread. */
+  Reader newReader();
+
+  /** Picks payloads for one producer thread. */
+  interface Reader {
+
+    /** Returns the value for the next record. Callers must not modify the returned array. */
+    byte[] next();
+  }
+}
@@ -17,9 +17,14 @@ package com.ibm.es.producer;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
 import java.util.ResourceBundle;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 import net.sourceforge.argparse4j.*;
 import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentGroup;
@@ -47,21 +52,122 @@ public class Producer {
   private static final String DEFAULT_PAYLOAD_DELIMITER = "\\n";
   private static final Boolean DEFAULT_PRINT_METRICS = false;
   private static final Integer DEFAULT_NUMBER_THREADS = 1;
-  private static final Integer DEFAULT_RECORD_SIZE = 100;
+  private static final String DEFAULT_RECORD_SIZE = "100";
   private static final String DEFAULT_PAYLOAD_FILE = "";
+  private static final String DEFAULT_PAYLOAD_FORMAT = "text";
+  // pool sizes used when --payload-pool-size is not set
+  private static final int FIXED_SIZE_PAYLOAD_POOL_SIZE = 1;
+  private static final int DISTRIBUTION_PAYLOAD_POOL_SIZE = 1024;
+  private static final Boolean DEFAULT_PAYLOAD_POOL_OFF_HEAP = false;
+  private static final String DEFAULT_KEY_DISTRIBUTION = "none";
+  private static final Integer DEFAULT_KEY_CARDINALITY = 1000;
+  private static final Integer DEFAULT_REPORT_INTERVAL = 5;
+  private static final Double DEFAULT_REGRESSION_THRESHOLD = 10.0;
+  private static final Double DEFAULT_SLO_PERCENTILE = 99.0;
+  private static final String DEFAULT_PROBE_DURATION = "30s";
+  private static final Integer DEFAULT_SEARCH_START = 1000;
+  private static final Integer DEFAULT_SEARCH_MAX_PROBES = 20;
+  private static final Integer DEFAULT_SWEEP_SAMPLES = 0;
+  private static final Double DEFAULT_DRY_RUN_DELAY_MS = 0.0;
+  private static final Integer DEFAULT_CLIENTS = 0;
+  private static final Integer DEFAULT_BREAKDOWN_TOP = 5;
+  private static final String DEFAULT_PRODUCER_ASSIGNMENT = "round-robin";
+  private static final String DEFAULT_DELIVERY_MODE = "plain";
+  private static final Integer DEFAULT_TRANSACTION_RECORDS = 1000;
+  private static final Double DEFAULT_CLIENT_RATE = 1.0;
+  private static final String DEFAULT_TRACE_FORMAT = "json";
+  private static final Double DEFAULT_TRACE_SPEED = 1.0;
+  private static final Double DEFAULT_DRY_RUN_JITTER_MS = 0.0;
+  // how long each sweep combination runs for when --duration is not set
+  private static final long DEFAULT_SWEEP_DURATION_NANOS = TimeUnit.SECONDS.toNanos(30);
+  // producer configuration that is not echoed into the results
+  private static final Pattern SECRET_PROPERTY =
+      Pattern.compile("(?i).*(password|secret|jaas|token|credential).*");
 
   private String size;
   private String topic;
   private Integer numThreads;
+  private Integer numProducers;
+  private String producerAssignment = DEFAULT_PRODUCER_ASSIGNMENT;
+  private ProducerAssignment parsedProducerAssignment = ProducerAssignment.ROUND_ROBIN;
+  private String deliveryMode = DEFAULT_DELIVERY_MODE;
+  private DeliveryMode parsedDeliveryMode = DeliveryMode.PLAIN;
+  private Integer transactionRecords = DEFAULT_TRANSACTION_RECORDS;
+  private String transactionInterval;
+  private long transactionIntervalNanos;
+  private String warmUp;
+  private long warmUpNanos;
+  private Long warmUpRecords = 0L;
   private Long numRecords;
   private Integer throughput;
   private String configFilePath;
-  private Integer recordSize;
+  private String recordSize;
+  private RecordSizeDistribution recordSizeDistribution;
   private String payloadFilePath;
   private Boolean shouldPrintMetrics;
   private String payloadDelimiter;
+  private String payloadFormat;
+  private Integer payloadPoolSize;
+  private Boolean payloadPoolOffHeap;
+  private String payloadContent = PayloadContent.DEFAULT;
+  private PayloadContent parsedPayloadContent = PayloadContent.LETTERS;
+  private String keyDistribution;
+  private Integer keyCardinality;
+  private KeyGenerator keyGenerator;
+  private String partitions;
+  private int[] partitionList;
+  private String loadProfile;
+  private LoadProfile parsedLoadProfile;
+  private String duration;
+  private long durationNanos;
+  private Integer reportInterval;
+  private Integer metricsPort;
+  private Boolean jmx;
+  private String resultsJsonPath;
+  private String resultsCsvPath;
+  private String baselinePath;
+  private Double regressionThreshold;
+  private String search;
+  private ThroughputSearch.Strategy searchStrategy;
+  private Double sloMs;
+  private Double sloPercentile;
+  private String probeDuration;
+  private long probeDurationNanos;
+  private Integer searchStart;
+  private Integer searchMaxProbes;
+  private String sweep;
+  private ConfigSweep parsedSweep;
+  private Integer sweepSamples;
+  private Boolean dryRun = false;
+  private Boolean compareCodecs = false;
+  private Boolean partitionBreakdown = false;
+  private Boolean resourceUsage = false;
+  private Boolean endToEnd = false;
+  private Integer breakdownTop = DEFAULT_BREAKDOWN_TOP;
+  private Integer clients = 0;
+  private String traceFile;
+  private String traceFormat = DEFAULT_TRACE_FORMAT;
+  private Double traceSpeed = DEFAULT_TRACE_SPEED;
+  private Double clientRate;
+  private String clientRamp;
+  private long clientRampNanos;
+  private Double dryRunDelayMs;
+  private Double dryRunJitterMs;
+  private ProducerFactory producerFactory = ProducerFactory.KAFKA;
 
   public static void main(String[] args) {
+    Producer producer = configure(args);
+    if (producer != null) {
+      Exit.exit(producer.run());
+    }
+  }
+
+  /**
+   * Parses the command line and environment overrides into a producer that is ready to run. Returns
+   * null if there is nothing to run, for example when help was printed or a configuration file was
+   * generated.
+   */
+  public static Producer configure(String[] args) {
     Producer producer = new Producer();
 
     ArgumentParser parser = argParser();
@@ -71,13 +177,58 @@ public class Producer {
 
       producer.setTopic(res.getString("topic"));
       producer.setNumRecords(res.getLong("numRecords"));
-      producer.setRecordSize(res.getInt("recordSize"));
+      producer.setRecordSize(res.getString("recordSize"));
       producer.setThroughput(res.getInt("throughput"));
       producer.setConfigFilePath(res.getString("producerConfigFile"));
       producer.setPayloadFilePath(res.getString("payloadFile"));
       producer.setShouldPrintMetrics(res.getBoolean("printMetrics"));
       producer.setNumThreads(res.getInt("numThreads"));
+      producer.setNumProducers(res.getInt("numProducers"));
+      producer.setProducerAssignment(res.getString("producerAssignment"));
+      producer.setDeliveryMode(res.getString("deliveryMode"));
+      producer.setTransactionRecords(res.getInt("transactionRecords"));
+      producer.setTransactionInterval(res.getString("transactionInterval"));
+      producer.setWarmUp(res.getString("warmUp"));
+      producer.setWarmUpRecords(res.getLong("warmUpRecords"));
       producer.setSize(res.getString("size"));
+      producer.setPayloadFormat(res.getString("payloadFormat"));
+      producer.setPayloadPoolSize(res.getInt("payloadPoolSize"));
+      producer.setPayloadPoolOffHeap(res.getBoolean("payloadPoolOffHeap"));
+      producer.setPayloadContent(res.getString("payloadContent"));
+      producer.setCompareCodecs(res.getBoolean("compareCodecs"));
+      producer.setKeyDistribution(res.getString("keyDistribution"));
+      producer.setKeyCardinality(res.getInt("keyCardinality"));
+      producer.setPartitions(res.getString("partitions"));
+      producer.setLoadProfile(res.getString("loadProfile"));
+      producer.setDuration(res.getString("duration"));
+      producer.setReportInterval(res.getInt("reportInterval"));
+      producer.setMetricsPort(res.getInt("metricsPort"));
+      producer.setJmx(res.getBoolean("jmx"));
+      producer.setResultsJsonPath(res.getString("resultsJson"));
+      producer.setResultsCsvPath(res.getString("resultsCsv"));
+      producer.setBaselinePath(res.getString("baseline"));
+      producer.setRegressionThreshold(res.getDouble("regressionThreshold"));
+      producer.setSearch(res.getString("search"));
+      producer.setSloMs(res.getDouble("sloMs"));
+      producer.setSloPercentile(res.getDouble("sloPercentile"));
+      producer.setProbeDuration(res.getString("probeDuration"));
+      producer.setSearchStart(res.getInt("searchStart"));
+      producer.setSearchMaxProbes(res.getInt("searchMaxProbes"));
+      producer.setSweep(res.getString("sweep"));
+      producer.setSweepSamples(res.getInt("sweepSamples"));
+      producer.setDryRun(res.getBoolean("dryRun"));
+      producer.setPartitionBreakdown(res.getBoolean("partitionBreakdown"));
+      producer.setResourceUsage(res.getBoolean("resourceUsage"));
+      producer.setEndToEnd(res.getBoolean("endToEnd"));
+      producer.setBreakdownTop(res.getInt("breakdownTop"));
+      producer.setClients(res.getInt("clients"));
+      producer.setClientRate(res.getDouble("clientRate"));
+      producer.setTraceFile(res.getString("traceFile"));
+      producer.setTraceFormat(res.getString("traceFormat"));
+      producer.setTraceSpeed(res.getDouble("traceSpeed"));
+      producer.setClientRamp(res.getString("clientRamp"));
+      producer.setDryRunDelayMs(res.getDouble("dryRunDelayMs"));
+      producer.setDryRunJitterMs(res.getDouble("dryRunJitterMs"));
 
       producer.setPayloadDelimiter(
           res.getString("payloadDelimiter").equals("\\n")
@@ -100,7 +251,7 @@ public class Producer {
 
       } else {
         // if one of the required arguments is missing, log and exit.
-        if (producer.getTopic() == null
+        if ((producer.getTopic() == null && !producer.compareCodecs)
             || producer.getConfigFilePath() == null
             || (producer.getRecordSize() == null && producer.getPayloadFilePath() == null)) {
           System.out.println(producerTranslations.getString("producer.argsMissing"));
@@ -115,33 +266,94 @@ public class Producer {
           System.out.println(producerTranslations.getString("producer.invalidThroughput"));
           parser.printHelp();
           Exit.exit(0);
+        } else if (producer.payloadPoolSize != null && producer.payloadPoolSize < 1) {
+          System.out.println(producerTranslations.getString("producer.invalidPayloadPoolSize"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (!producer.parseRecordSize()) {
+          System.out.println(producerTranslations.getString("producer.invalidRecordSize"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (!producer.parsePayloadContent()) {
+          System.out.println(producerTranslations.getString("producer.invalidPayloadContent"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (!producer.parseKeys()) {
+          System.out.println(producerTranslations.getString("producer.invalidKeys"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (!producer.parseLoadProfile()) {
+          System.out.println(producerTranslations.getString("producer.invalidLoadProfile"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (!producer.parseDuration() || producer.reportInterval < 0) {
+          System.out.println(producerTranslations.getString("producer.invalidDuration"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (producer.metricsPort != null
+            && (producer.metricsPort < 0 || producer.metricsPort > 65535)) {
+          System.out.println(producerTranslations.getString("producer.invalidMetricsPort"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (producer.regressionThreshold < 0) {
+          System.out.println(producerTranslations.getString("producer.invalidRegressionThreshold"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (!producer.parseSearch()) {
+          System.out.println(producerTranslations.getString("producer.invalidSearch"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (!producer.parseSweep()) {
+          System.out.println(producerTranslations.getString("producer.invalidSweep"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (!producer.parseClients()) {
+          System.out.println(producerTranslations.getString("producer.invalidClients"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (!producer.parseTrace()) {
+          System.out.println(producerTranslations.getString("producer.invalidTrace"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (!producer.parseProducers()) {
+          System.out.println(producerTranslations.getString("producer.invalidProducers"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (!producer.parseDelivery()) {
+          System.out.println(producerTranslations.getString("producer.invalidDelivery"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (!producer.parseWarmUp()) {
+          System.out.println(producerTranslations.getString("producer.invalidWarmUp"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (producer.breakdownTop < 1) {
+          System.out.println(producerTranslations.getString("producer.invalidBreakdownTop"));
+          parser.printHelp();
+          Exit.exit(0);
+        } else if (!(producer.dryRunDelayMs >= 0) || !(producer.dryRunJitterMs >= 0)) {
+          System.out.println(producerTranslations.getString("producer.invalidDryRun"));
+          parser.printHelp();
+          Exit.exit(0);
         } else {
-          ThreadGroup producers = new ThreadGroup("Producers");
-          for (int i = 0; i < producer.getNumThreads(); i++) {
-            // if size set, determine the values to use
-            if (!producer.getSize().isEmpty()) {
-              switch (producer.getSize()) {
-                case "small":
-                  producer.setNumRecords(60000L);
-                  producer.setThroughput(1000);
-                  break;
-                case "medium":
-                  producer.setNumRecords(600000L);
-                  producer.setThroughput(10000);
-                  break;
-                case "large":
-                  producer.setNumRecords(6000000L);
-                  producer.setThroughput(100000);
-                  break;
-              }
+          // if size set, determine the values to use
+          if (!producer.getSize().isEmpty()) {
+            switch (producer.getSize()) {
+              case "small":
+                producer.setNumRecords(60000L);
+                producer.setThroughput(1000);
+                break;
+              case "medium":
+                producer.setNumRecords(600000L);
+                producer.setThroughput(10000);
+                break;
+              case "large":
+                producer.setNumRecords(6000000L);
+                producer.setThroughput(100000);
+                break;
             }
-            // if we have a number of threads to run over, divide the work between them
-            producer.numRecords = producer.numRecords / producer.numThreads;
-
-            ProducerThread producerThread =
-                new ProducerThread(producers, String.format("producer%d", i), producer);
-            producerThread.start();
           }
+          return producer;
         }
       }
     } catch (ArgumentParserException error) {
@@ -153,6 +365,353 @@ public class Producer {
         Exit.exit(1);
       }
     }
+    return null;
+  }
+
+  /** Parses --record-size into a distribution, returning false if it is not valid. */
+  private boolean parseRecordSize() {
+    if (recordSize == null) {
+      return true;
+    }
+    try {
+      recordSizeDistribution = RecordSizeDistribution.parse(recordSize);
+      return true;
+    } catch (IllegalArgumentException exception) {
+      logger.error(exception.getMessage());
+      return false;
+    }
+  }
+
+  /** Parses --payload-content, returning false if it is not valid or payloads are not generated. */
+  private boolean parsePayloadContent() {
+    if (payloadContent == null || PayloadContent.DEFAULT.equals(payloadContent.trim())) {
+      parsedPayloadContent = PayloadContent.LETTERS;
+      return true;
+    }
+    if ((payloadFilePath != null && !payloadFilePath.isEmpty())
+        || (traceFile != null && !traceFile.trim().isEmpty())) {
+      return false;
+    }
+    try {
+      parsedPayloadContent = PayloadContent.parse(payloadContent);
+      return true;
+    } catch (IllegalArgumentException exception) {
+      logger.error(exception.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Builds the key table from --key-distribution and --key-cardinality and parses --partitions,
+   * returning false if either is not valid.
+   */
+  private boolean parseKeys() {
+    try {
+      keyGenerator = KeyGenerator.create(keyDistribution, keyCardinality);
+      if (partitions == null || partitions.trim().isEmpty()) {
+        partitionList = null;
+        return true;
+      }
+      String[] values = partitions.split(",");
+      partitionList = new int[values.length];
+      for (int i = 0; i < values.length; i++) {
+        partitionList[i] = Integer.parseInt(values[i].trim());
+        if (partitionList[i] < 0) {
+          throw new IllegalArgumentException("Invalid partition " + values[i]);
+        }
+      }
+      return true;
+    } catch (IllegalArgumentException exception) {
+      logger.error(exception.getMessage());
+      return false;
+    }
+  }
+
+  /** Parses --load-profile, returning false if it is not valid. */
+  private boolean parseLoadProfile() {
+    if (loadProfile == null || loadProfile.trim().isEmpty()) {
+      parsedLoadProfile = null;
+      return true;
+    }
+    try {
+      parsedLoadProfile = LoadProfile.parse(loadProfile);
+      return true;
+    } catch (IllegalArgumentException exception) {
+      logger.error(exception.getMessage());
+      return false;
+    }
+  }
+
+  /** Parses --duration, returning false if it is not valid. */
+  private boolean parseDuration() {
+    if (duration == null || duration.trim().isEmpty()) {
+      durationNanos = 0;
+      return true;
+    }
+    try {
+      durationNanos = (long) (LoadProfile.parseDuration(duration) * 1e9);
+      return true;
+    } catch (IllegalArgumentException exception) {
+      logger.error(exception.getMessage());
+      return false;
+    }
+  }
+
+  /** Parses the throughput search options, returning false if they are not valid. */
+  private boolean parseSearch() {
+    if (search == null || search.trim().isEmpty()) {
+      searchStrategy = null;
+      return true;
+    }
+    try {
+      searchStrategy = ThroughputSearch.Strategy.parse(search);
+      probeDurationNanos = (long) (LoadProfile.parseDuration(probeDuration) * 1e9);
+    } catch (IllegalArgumentException exception) {
+      logger.error(exception.getMessage());
+      return false;
+    }
+    return sloMs != null
+        && sloMs > 0
+        && sloPercentile > 0
+        && sloPercentile <= 100
+        && searchStart >= 1
+        && searchMaxProbes >= 1;
+  }
+
+  /**
+   * Checks the client simulation options, returning false if they are not valid. Simulated clients
+   * pace themselves, so they cannot be combined with a shared target rate.
+   */
+  private boolean parseClients() {
+    if (clients == null || clients == 0) {
+      return true;
+    }
+    if (clients < 0
+        || !(clientRate > 0)
+        || throughput != -1
+        || !size.isEmpty()
+        || parsedLoadProfile != null
+        || searchStrategy != null) {
+      return false;
+    }
+    if (clientRamp == null || clientRamp.trim().isEmpty()) {
+      clientRampNanos = 0;
+      return true;
+    }
+    try {
+      clientRampNanos = (long) (LoadProfile.parseDuration(clientRamp) * 1e9);
+      return true;
+    } catch (IllegalArgumentException exception) {
+      logger.error(exception.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Checks the --trace-file options, returning false if they are not valid. A trace brings its own
+   * timing, keys and values, so it cannot be combined with options that set those.
+   */
+  private boolean parseTrace() {
+    if (traceFile == null || traceFile.trim().isEmpty()) {
+      traceFile = null;
+      return true;
+    }
+    return traceSpeed != null
+        && traceSpeed >= 0
+        && !Double.isInfinite(traceSpeed)
+        && clients == 0
+        && searchStrategy == null
+        && parsedLoadProfile == null
+        && !keyGenerator.hasKeys();
+  }
+
+  /** Checks --num-producers and --producer-assignment, returning false if they are not valid. */
+  private boolean parseProducers() {
+    try {
+      parsedProducerAssignment = ProducerAssignment.parse(producerAssignment);
+    } catch (IllegalArgumentException exception) {
+      logger.error(exception.getMessage());
+      return false;
+    }
+    if (parsedProducerAssignment == ProducerAssignment.KEY
+        && !keyGenerator.hasKeys()
+        && traceFile == null) {
+      return false;
+    }
+    if (numProducers == null) {
+      return true;
+    }
+    if (numProducers < 1 || clients > 0) {
+      return false;
+    }
+    // with round-robin assignment, producers beyond the number of threads would never be used
+    return parsedProducerAssignment == ProducerAssignment.KEY || numProducers <= numThreads;
+  }
+
+  /**
+   * Parses --delivery-mode, --transaction-records and --transaction-interval, returning false if
+   * they are not valid. Transactions need a producer of their own for each thread, as a producer
+   * has only one transaction open at a time.
+   */
+  private boolean parseDelivery() {
+    try {
+      parsedDeliveryMode = DeliveryMode.parse(deliveryMode);
+      transactionIntervalNanos =
+          transactionInterval == null || transactionInterval.trim().isEmpty()
+              ? 0
+              : (long) (LoadProfile.parseDuration(transactionInterval) * 1e9);
+    } catch (IllegalArgumentException exception) {
+      logger.error(exception.getMessage());
+      return false;
+    }
+    if (parsedDeliveryMode != DeliveryMode.TRANSACTIONAL) {
+      return true;
+    }
+    return transactionRecords != null
+        && transactionRecords >= 1
+        && clients == 0
+        && traceFile == null
+        && parsedProducerAssignment == ProducerAssignment.ROUND_ROBIN
+        && getNumProducers().equals(numThreads);
+  }
+
+  /**
+   * Parses --warm-up and --warm-up-records, returning false if they are not valid. Simulated
+   * clients and trace replays pace themselves, so they have no warm-up.
+   */
+  private boolean parseWarmUp() {
+    try {
+      warmUpNanos =
+          warmUp == null || warmUp.trim().isEmpty()
+              ? 0
+              : (long) (LoadProfile.parseDuration(warmUp) * 1e9);
+    } catch (IllegalArgumentException exception) {
+      logger.error(exception.getMessage());
+      return false;
+    }
+    if (warmUpRecords == null || warmUpRecords < 0) {
+      return false;
+    }
+    return (warmUpNanos == 0 && warmUpRecords == 0) || (clients == 0 && traceFile == null);
+  }
+
+  /** Parses --sweep, returning false if it is not valid. */
+  private boolean parseSweep() {
+    if (sweep == null || sweep.trim().isEmpty()) {
+      parsedSweep = null;
+      return true;
+    }
+    if (searchStrategy != null || sweepSamples < 0) {
+      return false;
+    }
+    try {
+      parsedSweep = ConfigSweep.parse(sweep);
+    } catch (IllegalArgumentException exception) {
+      logger.error(exception.getMessage());
+      return false;
+    }
+    long gridSize;
+    try {
+      gridSize = parsedSweep.getGridSize();
+    } catch (ArithmeticException exception) {
+      logger.error("Too many combinations in sweep " + sweep);
+      return false;
+    }
+    // the full grid is built when no sample is taken or the sample covers it
+    long runs = sweepSamples > 0 ? Math.min(sweepSamples, gridSize) : gridSize;
+    if (runs > ConfigSweep.MAX_RUNS) {
+      logger.error(runs + " combinations in sweep " + sweep);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Runs the mode the arguments chose: a codec comparison, a sweep, or a single load test on the
+   * in-process engine. Returns the exit code for the tool.
+   */
+  public int run() {
+    if (dryRun) {
+      System.out.println(
+          String.format(
+              producerTranslations.getString("producer.dryRun"), dryRunDelayMs, dryRunJitterMs));
+    }
+    if (compareCodecs) {
+      return CodecMode.run(this);
+    }
+    if (parsedSweep != null) {
+      return runSweep();
+    }
+    return LoadRun.run(this);
+  }
+
+  private int runSweep() {
+    if (durationNanos == 0) {
+      durationNanos = DEFAULT_SWEEP_DURATION_NANOS;
+    }
+    return SweepMode.run(this, parsedSweep);
+  }
+
+  /** The configuration of this run, as echoed into the results, without any secrets. */
+  Map<String, Object> describe(Properties producerProperties) {
+    Map<String, Object> configuration = new LinkedHashMap<>();
+    configuration.put("topic", topic);
+    configuration.put("numThreads", numThreads);
+    configuration.put("numProducers", getNumProducers());
+    configuration.put("producerAssignment", producerAssignment);
+    configuration.put("deliveryMode", deliveryMode);
+    configuration.put("warmUp", warmUp);
+    configuration.put("warmUpRecords", warmUpRecords > 0 ? warmUpRecords : null);
+    if (parsedDeliveryMode == DeliveryMode.TRANSACTIONAL) {
+      configuration.put("transactionRecords", transactionRecords);
+      configuration.put("transactionInterval", transactionInterval);
+    }
+    configuration.put("numRecords", durationNanos > 0 ? null : numRecords);
+    configuration.put("duration", duration);
+    configuration.put("throughput", throughput);
+    configuration.put("loadProfile", loadProfile);
+    configuration.put("recordSize", payloadFilePath == null ? recordSize : null);
+    configuration.put("payloadFile", payloadFilePath);
+    configuration.put("payloadContent", parsedPayloadContent.toString());
+    configuration.put("traceFile", traceFile);
+    configuration.put("traceSpeed", traceFile == null ? null : traceSpeed);
+    configuration.put("keyDistribution", keyDistribution);
+    configuration.put("keyCardinality", keyCardinality);
+    configuration.put("partitions", partitions);
+    Map<String, Object> properties = new TreeMap<>();
+    for (String name : producerProperties.stringPropertyNames()) {
+      properties.put(
+          name,
+          SECRET_PROPERTY.matcher(name).matches()
+              ? "[hidden]"
+              : producerProperties.getProperty(name));
+    }
+    configuration.put("producerConfig", properties);
+    return configuration;
+  }
+
+  /** Creates the engine that will run this producer's workload, without starting it. */
+  public LoadEngine createEngine() {
+    if (dryRun && endToEnd) {
+      // the sink producers append to a topic that the end-to-end consumer reads from
+      int sinkPartitions = 1;
+      if (partitionList != null) {
+        for (int partition : partitionList) {
+          sinkPartitions = Math.max(sinkPartitions, partition + 1);
+        }
+      }
+      SinkTopic sinkTopic = new SinkTopic(topic, sinkPartitions);
+      return new LoadEngine(
+          this,
+          SinkProducer.factory(
+              (long) (dryRunDelayMs * 1e6), (long) (dryRunJitterMs * 1e6), sinkTopic),
+          properties -> sinkTopic.newConsumer());
+    }
+    if (dryRun) {
+      return new LoadEngine(
+          this, SinkProducer.factory((long) (dryRunDelayMs * 1e6), (long) (dryRunJitterMs * 1e6)));
+    }
+    return new LoadEngine(this, producerFactory);
   }
 
   private static ArgumentParser argParser() {
@@ -229,120 +788,715 @@ public class Producer {
         .help(producerTranslations.getString("producer.throughput.help"));
 
     generalConfig
-        .addArgument("-d", "--payload-delimiter")
+        .addArgument("--load-profile")
         .action(Arguments.store())
         .required(false)
         .type(String.class)
-        .metavar("PAYLOAD-DELIMITER")
-        .dest("payloadDelimiter")
-        .setDefault(DEFAULT_PAYLOAD_DELIMITER)
-        .help(producerTranslations.getString("producer.payloadDelimeter.help"));
+        .metavar("LOAD-PROFILE")
+        .dest("loadProfile")
+        .help(producerTranslations.getString("producer.loadProfile.help"));
 
     generalConfig
-        .addArgument("-m", "--print-metrics")
-        .action(Arguments.storeTrue())
+        .addArgument("--duration")
+        .action(Arguments.store())
         .required(false)
-        .type(Arguments.booleanType())
-        .dest("printMetrics")
-        .setDefault(DEFAULT_PRINT_METRICS)
-        .help(producerTranslations.getString("producer.printMetrics.help"));
+        .type(String.class)
+        .metavar("DURATION")
+        .dest("duration")
+        .help(producerTranslations.getString("producer.duration.help"));
 
     generalConfig
-        .addArgument("-x", "--num-threads")
+        .addArgument("--report-interval")
         .action(Arguments.store())
         .required(false)
         .type(Integer.class)
-        .metavar("NUM_THREADS")
-        .dest("numThreads")
-        .setDefault(DEFAULT_NUMBER_THREADS)
-        .help(producerTranslations.getString("producer.numThreads.help"));
+        .metavar("SECONDS")
+        .dest("reportInterval")
+        .setDefault(DEFAULT_REPORT_INTERVAL)
+        .help(producerTranslations.getString("producer.reportInterval.help"));
 
-    MutuallyExclusiveGroup payloadOptions =
-        parser
-            .addMutuallyExclusiveGroup()
-            .description(producerTranslations.getString("producer.payload.options"));
+    generalConfig
+        .addArgument("--metrics-port")
+        .action(Arguments.store())
+        .required(false)
+        .type(Integer.class)
+        .metavar("PORT")
+        .dest("metricsPort")
+        .help(producerTranslations.getString("producer.metricsPort.help"));
 
-    payloadOptions
-        .addArgument("-r", "--record-size")
+    generalConfig
+        .addArgument("--jmx")
+        .action(Arguments.storeTrue())
+        .required(false)
+        .type(Arguments.booleanType())
+        .dest("jmx")
+        .setDefault(false)
+        .help(producerTranslations.getString("producer.jmx.help"));
+
+    generalConfig
+        .addArgument("--clients")
         .action(Arguments.store())
         .required(false)
         .type(Integer.class)
-        .metavar("RECORD-SIZE")
-        .dest("recordSize")
-        .setDefault(DEFAULT_RECORD_SIZE)
-        .help(producerTranslations.getString("producer.recordSize.help"));
+        .metavar("CLIENTS")
+        .dest("clients")
+        .setDefault(DEFAULT_CLIENTS)
+        .help(producerTranslations.getString("producer.clients.help"));
 
-    payloadOptions
-        .addArgument("-f", "--payload-file")
+    generalConfig
+        .addArgument("--client-rate")
+        .action(Arguments.store())
+        .required(false)
+        .type(Double.class)
+        .metavar("RATE")
+        .dest("clientRate")
+        .setDefault(DEFAULT_CLIENT_RATE)
+        .help(producerTranslations.getString("producer.clientRate.help"));
+
+    generalConfig
+        .addArgument("--client-ramp")
         .action(Arguments.store())
         .required(false)
         .type(String.class)
-        .metavar("PAYLOAD-FILE")
-        .dest("payloadFile")
-        .setDefault(DEFAULT_PAYLOAD_FILE)
-        .help(producerTranslations.getString("producer.payloadFile.help"));
+        .metavar("DURATION")
+        .dest("clientRamp")
+        .help(producerTranslations.getString("producer.clientRamp.help"));
 
-    return parser;
-  }
+    generalConfig
+        .addArgument("--resource-usage")
+        .action(Arguments.storeTrue())
+        .required(false)
+        .type(Arguments.booleanType())
+        .dest("resourceUsage")
+        .setDefault(false)
+        .help(producerTranslations.getString("producer.resourceUsage.help"));
 
-  private static void overrideArgumentsWithEnvVars(Producer producer) {
-    Map<String, String> env = System.getenv();
-    boolean throughputOverridden = false;
-    boolean numRecordsOverridden = false;
+    generalConfig
+        .addArgument("--partition-breakdown")
+        .action(Arguments.storeTrue())
+        .required(false)
+        .type(Arguments.booleanType())
+        .dest("partitionBreakdown")
+        .setDefault(false)
+        .help(producerTranslations.getString("producer.partitionBreakdown.help"));
 
-    if (env.containsKey("ES_TOPIC")) {
-      producer.setTopic(env.get("ES_TOPIC"));
-    }
-    if (env.containsKey("ES_RECORD_SIZE")) {
-      producer.setRecordSize(Integer.parseInt(env.get("ES_RECORD_SIZE")));
-    }
-    if (env.containsKey("ES_NUM_THREADS")) {
-      producer.setNumThreads(Integer.parseInt(env.get("ES_NUM_THREADS")));
-    }
-    if (env.containsKey("ES_PRODUCER_CONFIG")) {
-      producer.setConfigFilePath(env.get("ES_PRODUCER_CONFIG"));
-    }
-    if (env.containsKey("ES_PAYLOAD_FILE")) {
-      producer.setPayloadFilePath(env.get("ES_PAYLOAD_FILE"));
-    }
-    if (env.containsKey("ES_PAYLOAD_DELIMITER")) {
-      producer.setPayloadDelimiter(env.get("ES_PAYLOAD_DELIMITER"));
-    }
+    generalConfig
+        .addArgument("--breakdown-top")
+        .action(Arguments.store())
+        .required(false)
+        .type(Integer.class)
+        .metavar("COUNT")
+        .dest("breakdownTop")
+        .setDefault(DEFAULT_BREAKDOWN_TOP)
+        .help(producerTranslations.getString("producer.breakdownTop.help"));
 
-    if (env.containsKey("ES_THROUGHPUT")) {
-      producer.setThroughput(Integer.parseInt(env.get("ES_THROUGHPUT")));
-      throughputOverridden = true;
-    }
-    if (env.containsKey("ES_NUM_RECORDS")) {
-      producer.setNumRecords(Long.parseLong(env.get("ES_NUM_RECORDS")));
-      numRecordsOverridden = true;
-    }
-    if (throughputOverridden && numRecordsOverridden) {
-      producer.setSize("");
-    }
-    if ((throughputOverridden && !numRecordsOverridden)
-        || (!throughputOverridden && numRecordsOverridden)) {
-      logger.warn(producerTranslations.getString("producer.envar.warning"));
-    }
+    generalConfig
+        .addArgument("--dry-run")
+        .action(Arguments.storeTrue())
+        .required(false)
+        .type(Arguments.booleanType())
+        .dest("dryRun")
+        .setDefault(false)
+        .help(producerTranslations.getString("producer.dryRun.help"));
 
-    if (env.containsKey("ES_SIZE")) producer.size = env.get("ES_SIZE");
-  }
+    generalConfig
+        .addArgument("--end-to-end")
+        .action(Arguments.storeTrue())
+        .required(false)
+        .type(Arguments.booleanType())
+        .dest("endToEnd")
+        .setDefault(false)
+        .help(producerTranslations.getString("producer.endToEnd.help"));
 
-  public void setSize(String size) {
-    this.size = size;
-  }
+    generalConfig
+        .addArgument("--dry-run-delay-ms")
+        .action(Arguments.store())
+        .required(false)
+        .type(Double.class)
+        .metavar("MS")
+        .dest("dryRunDelayMs")
+        .setDefault(DEFAULT_DRY_RUN_DELAY_MS)
+        .help(producerTranslations.getString("producer.dryRunDelayMs.help"));
 
-  public void setTopic(String topic) {
-    this.topic = topic;
-  }
+    generalConfig
+        .addArgument("--dry-run-jitter-ms")
+        .action(Arguments.store())
+        .required(false)
+        .type(Double.class)
+        .metavar("MS")
+        .dest("dryRunJitterMs")
+        .setDefault(DEFAULT_DRY_RUN_JITTER_MS)
+        .help(producerTranslations.getString("producer.dryRunJitterMs.help"));
 
-  public void setNumThreads(Integer numThreads) {
-    this.numThreads = numThreads;
-  }
+    generalConfig
+        .addArgument("--results-json")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("FILE")
+        .dest("resultsJson")
+        .help(producerTranslations.getString("producer.resultsJson.help"));
 
-  public void setNumRecords(Long numRecords) {
-    this.numRecords = numRecords;
-  }
+    generalConfig
+        .addArgument("--results-csv")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("FILE")
+        .dest("resultsCsv")
+        .help(producerTranslations.getString("producer.resultsCsv.help"));
+
+    generalConfig
+        .addArgument("--baseline")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("FILE")
+        .dest("baseline")
+        .help(producerTranslations.getString("producer.baseline.help"));
+
+    generalConfig
+        .addArgument("--regression-threshold")
+        .action(Arguments.store())
+        .required(false)
+        .type(Double.class)
+        .metavar("PERCENT")
+        .dest("regressionThreshold")
+        .setDefault(DEFAULT_REGRESSION_THRESHOLD)
+        .help(producerTranslations.getString("producer.regressionThreshold.help"));
+
+    generalConfig
+        .addArgument("--search")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("STRATEGY")
+        .dest("search")
+        .choices("bisect", "aimd")
+        .help(producerTranslations.getString("producer.search.help"));
+
+    generalConfig
+        .addArgument("--slo-ms")
+        .action(Arguments.store())
+        .required(false)
+        .type(Double.class)
+        .metavar("MS")
+        .dest("sloMs")
+        .help(producerTranslations.getString("producer.sloMs.help"));
+
+    generalConfig
+        .addArgument("--slo-percentile")
+        .action(Arguments.store())
+        .required(false)
+        .type(Double.class)
+        .metavar("PERCENTILE")
+        .dest("sloPercentile")
+        .setDefault(DEFAULT_SLO_PERCENTILE)
+        .help(producerTranslations.getString("producer.sloPercentile.help"));
+
+    generalConfig
+        .addArgument("--probe-duration")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("DURATION")
+        .dest("probeDuration")
+        .setDefault(DEFAULT_PROBE_DURATION)
+        .help(producerTranslations.getString("producer.probeDuration.help"));
+
+    generalConfig
+        .addArgument("--search-start")
+        .action(Arguments.store())
+        .required(false)
+        .type(Integer.class)
+        .metavar("RATE")
+        .dest("searchStart")
+        .setDefault(DEFAULT_SEARCH_START)
+        .help(producerTranslations.getString("producer.searchStart.help"));
+
+    generalConfig
+        .addArgument("--search-max-probes")
+        .action(Arguments.store())
+        .required(false)
+        .type(Integer.class)
+        .metavar("PROBES")
+        .dest("searchMaxProbes")
+        .setDefault(DEFAULT_SEARCH_MAX_PROBES)
+        .help(producerTranslations.getString("producer.searchMaxProbes.help"));
+
+    generalConfig
+        .addArgument("--sweep")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("SWEEP")
+        .dest("sweep")
+        .help(producerTranslations.getString("producer.sweep.help"));
+
+    generalConfig
+        .addArgument("--sweep-samples")
+        .action(Arguments.store())
+        .required(false)
+        .type(Integer.class)
+        .metavar("SAMPLES")
+        .dest("sweepSamples")
+        .setDefault(DEFAULT_SWEEP_SAMPLES)
+        .help(producerTranslations.getString("producer.sweepSamples.help"));
+
+    generalConfig
+        .addArgument("-d", "--payload-delimiter")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("PAYLOAD-DELIMITER")
+        .dest("payloadDelimiter")
+        .setDefault(DEFAULT_PAYLOAD_DELIMITER)
+        .help(producerTranslations.getString("producer.payloadDelimeter.help"));
+
+    generalConfig
+        .addArgument("--trace-format")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("TRACE-FORMAT")
+        .dest("traceFormat")
+        .choices("json", "binary")
+        .setDefault(DEFAULT_TRACE_FORMAT)
+        .help(producerTranslations.getString("producer.traceFormat.help"));
+
+    generalConfig
+        .addArgument("--trace-speed")
+        .action(Arguments.store())
+        .required(false)
+        .type(Double.class)
+        .metavar("SPEED")
+        .dest("traceSpeed")
+        .setDefault(DEFAULT_TRACE_SPEED)
+        .help(producerTranslations.getString("producer.traceSpeed.help"));
+
+    generalConfig
+        .addArgument("--payload-format")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("PAYLOAD-FORMAT")
+        .dest("payloadFormat")
+        .choices("text", "binary")
+        .setDefault(DEFAULT_PAYLOAD_FORMAT)
+        .help(producerTranslations.getString("producer.payloadFormat.help"));
+
+    generalConfig
+        .addArgument("-m", "--print-metrics")
+        .action(Arguments.storeTrue())
+        .required(false)
+        .type(Arguments.booleanType())
+        .dest("printMetrics")
+        .setDefault(DEFAULT_PRINT_METRICS)
+        .help(producerTranslations.getString("producer.printMetrics.help"));
+
+    generalConfig
+        .addArgument("-x", "--num-threads")
+        .action(Arguments.store())
+        .required(false)
+        .type(Integer.class)
+        .metavar("NUM_THREADS")
+        .dest("numThreads")
+        .setDefault(DEFAULT_NUMBER_THREADS)
+        .help(producerTranslations.getString("producer.numThreads.help"));
+
+    generalConfig
+        .addArgument("--num-producers")
+        .action(Arguments.store())
+        .required(false)
+        .type(Integer.class)
+        .metavar("NUM_PRODUCERS")
+        .dest("numProducers")
+        .help(producerTranslations.getString("producer.numProducers.help"));
+
+    generalConfig
+        .addArgument("--producer-assignment")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("ASSIGNMENT")
+        .dest("producerAssignment")
+        .choices("round-robin", "key")
+        .setDefault(DEFAULT_PRODUCER_ASSIGNMENT)
+        .help(producerTranslations.getString("producer.producerAssignment.help"));
+
+    generalConfig
+        .addArgument("--warm-up")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("DURATION")
+        .dest("warmUp")
+        .help(producerTranslations.getString("producer.warmUp.help"));
+
+    generalConfig
+        .addArgument("--warm-up-records")
+        .action(Arguments.store())
+        .required(false)
+        .type(Long.class)
+        .metavar("RECORDS")
+        .dest("warmUpRecords")
+        .setDefault(0L)
+        .help(producerTranslations.getString("producer.warmUpRecords.help"));
+
+    generalConfig
+        .addArgument("--delivery-mode")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("MODE")
+        .dest("deliveryMode")
+        .choices("plain", "idempotent", "transactional")
+        .setDefault(DEFAULT_DELIVERY_MODE)
+        .help(producerTranslations.getString("producer.deliveryMode.help"));
+
+    generalConfig
+        .addArgument("--transaction-records")
+        .action(Arguments.store())
+        .required(false)
+        .type(Integer.class)
+        .metavar("RECORDS")
+        .dest("transactionRecords")
+        .setDefault(DEFAULT_TRANSACTION_RECORDS)
+        .help(producerTranslations.getString("producer.transactionRecords.help"));
+
+    generalConfig
+        .addArgument("--transaction-interval")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("DURATION")
+        .dest("transactionInterval")
+        .help(producerTranslations.getString("producer.transactionInterval.help"));
+
+    generalConfig
+        .addArgument("--payload-pool-size")
+        .action(Arguments.store())
+        .required(false)
+        .type(Integer.class)
+        .metavar("PAYLOAD-POOL-SIZE")
+        .dest("payloadPoolSize")
+        .help(producerTranslations.getString("producer.payloadPoolSize.help"));
+
+    generalConfig
+        .addArgument("--payload-pool-off-heap")
+        .action(Arguments.storeTrue())
+        .required(false)
+        .type(Arguments.booleanType())
+        .dest("payloadPoolOffHeap")
+        .setDefault(DEFAULT_PAYLOAD_POOL_OFF_HEAP)
+        .help(producerTranslations.getString("producer.payloadPoolOffHeap.help"));
+
+    generalConfig
+        .addArgument("--payload-content")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("CONTENT")
+        .dest("payloadContent")
+        .setDefault(PayloadContent.DEFAULT)
+        .help(producerTranslations.getString("producer.payloadContent.help"));
+
+    generalConfig
+        .addArgument("--compare-codecs")
+        .action(Arguments.storeTrue())
+        .required(false)
+        .type(Arguments.booleanType())
+        .dest("compareCodecs")
+        .setDefault(false)
+        .help(producerTranslations.getString("producer.compareCodecs.help"));
+
+    generalConfig
+        .addArgument("--key-distribution")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("KEY-DISTRIBUTION")
+        .dest("keyDistribution")
+        .setDefault(DEFAULT_KEY_DISTRIBUTION)
+        .help(producerTranslations.getString("producer.keyDistribution.help"));
+
+    generalConfig
+        .addArgument("--key-cardinality")
+        .action(Arguments.store())
+        .required(false)
+        .type(Integer.class)
+        .metavar("KEY-CARDINALITY")
+        .dest("keyCardinality")
+        .setDefault(DEFAULT_KEY_CARDINALITY)
+        .help(producerTranslations.getString("producer.keyCardinality.help"));
+
+    generalConfig
+        .addArgument("--partitions")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("PARTITIONS")
+        .dest("partitions")
+        .help(producerTranslations.getString("producer.partitions.help"));
+
+    MutuallyExclusiveGroup payloadOptions =
+        parser
+            .addMutuallyExclusiveGroup()
+            .description(producerTranslations.getString("producer.payload.options"));
+
+    payloadOptions
+        .addArgument("-r", "--record-size")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("RECORD-SIZE")
+        .dest("recordSize")
+        .setDefault(DEFAULT_RECORD_SIZE)
+        .help(producerTranslations.getString("producer.recordSize.help"));
+
+    payloadOptions
+        .addArgument("--trace-file")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("TRACE-FILE")
+        .dest("traceFile")
+        .help(producerTranslations.getString("producer.traceFile.help"));
+
+    payloadOptions
+        .addArgument("-f", "--payload-file")
+        .action(Arguments.store())
+        .required(false)
+        .type(String.class)
+        .metavar("PAYLOAD-FILE")
+        .dest("payloadFile")
+        .setDefault(DEFAULT_PAYLOAD_FILE)
+        .help(producerTranslations.getString("producer.payloadFile.help"));
+
+    return parser;
+  }
+
+  private static void overrideArgumentsWithEnvVars(Producer producer) {
+    Map<String, String> env = System.getenv();
+    boolean throughputOverridden = false;
+    boolean numRecordsOverridden = false;
+
+    if (env.containsKey("ES_TOPIC")) {
+      producer.setTopic(env.get("ES_TOPIC"));
+    }
+    if (env.containsKey("ES_RECORD_SIZE")) {
+      producer.setRecordSize(env.get("ES_RECORD_SIZE"));
+    }
+    if (env.containsKey("ES_NUM_THREADS")) {
+      producer.setNumThreads(Integer.parseInt(env.get("ES_NUM_THREADS")));
+    }
+    if (env.containsKey("ES_NUM_PRODUCERS")) {
+      producer.setNumProducers(Integer.parseInt(env.get("ES_NUM_PRODUCERS")));
+    }
+    if (env.containsKey("ES_PRODUCER_ASSIGNMENT")) {
+      producer.setProducerAssignment(env.get("ES_PRODUCER_ASSIGNMENT"));
+    }
+    if (env.containsKey("ES_WARM_UP")) {
+      producer.setWarmUp(env.get("ES_WARM_UP"));
+    }
+    if (env.containsKey("ES_WARM_UP_RECORDS")) {
+      producer.setWarmUpRecords(Long.parseLong(env.get("ES_WARM_UP_RECORDS")));
+    }
+    if (env.containsKey("ES_DELIVERY_MODE")) {
+      producer.setDeliveryMode(env.get("ES_DELIVERY_MODE"));
+    }
+    if (env.containsKey("ES_TRANSACTION_RECORDS")) {
+      producer.setTransactionRecords(Integer.parseInt(env.get("ES_TRANSACTION_RECORDS")));
+    }
+    if (env.containsKey("ES_TRANSACTION_INTERVAL")) {
+      producer.setTransactionInterval(env.get("ES_TRANSACTION_INTERVAL"));
+    }
+    if (env.containsKey("ES_PRODUCER_CONFIG")) {
+      producer.setConfigFilePath(env.get("ES_PRODUCER_CONFIG"));
+    }
+    if (env.containsKey("ES_PAYLOAD_FILE")) {
+      producer.setPayloadFilePath(env.get("ES_PAYLOAD_FILE"));
+    }
+    if (env.containsKey("ES_PAYLOAD_DELIMITER")) {
+      producer.setPayloadDelimiter(env.get("ES_PAYLOAD_DELIMITER"));
+    }
+    if (env.containsKey("ES_TRACE_FILE")) {
+      producer.setTraceFile(env.get("ES_TRACE_FILE"));
+    }
+    if (env.containsKey("ES_TRACE_FORMAT")) {
+      producer.setTraceFormat(env.get("ES_TRACE_FORMAT"));
+    }
+    if (env.containsKey("ES_TRACE_SPEED")) {
+      producer.setTraceSpeed(Double.parseDouble(env.get("ES_TRACE_SPEED")));
+    }
+    if (env.containsKey("ES_PAYLOAD_FORMAT")) {
+      producer.setPayloadFormat(env.get("ES_PAYLOAD_FORMAT"));
+    }
+    if (env.containsKey("ES_PAYLOAD_CONTENT")) {
+      producer.setPayloadContent(env.get("ES_PAYLOAD_CONTENT"));
+    }
+    if (env.containsKey("ES_COMPARE_CODECS")) {
+      producer.setCompareCodecs(Boolean.parseBoolean(env.get("ES_COMPARE_CODECS")));
+    }
+    if (env.containsKey("ES_PAYLOAD_POOL_SIZE")) {
+      producer.setPayloadPoolSize(Integer.parseInt(env.get("ES_PAYLOAD_POOL_SIZE")));
+    }
+    if (env.containsKey("ES_PAYLOAD_POOL_OFF_HEAP")) {
+      producer.setPayloadPoolOffHeap(Boolean.parseBoolean(env.get("ES_PAYLOAD_POOL_OFF_HEAP")));
+    }
+    if (env.containsKey("ES_KEY_DISTRIBUTION")) {
+      producer.setKeyDistribution(env.get("ES_KEY_DISTRIBUTION"));
+    }
+    if (env.containsKey("ES_KEY_CARDINALITY")) {
+      producer.setKeyCardinality(Integer.parseInt(env.get("ES_KEY_CARDINALITY")));
+    }
+    if (env.containsKey("ES_PARTITIONS")) {
+      producer.setPartitions(env.get("ES_PARTITIONS"));
+    }
+    if (env.containsKey("ES_LOAD_PROFILE")) {
+      producer.setLoadProfile(env.get("ES_LOAD_PROFILE"));
+    }
+    if (env.containsKey("ES_DURATION")) {
+      producer.setDuration(env.get("ES_DURATION"));
+    }
+    if (env.containsKey("ES_REPORT_INTERVAL")) {
+      producer.setReportInterval(Integer.parseInt(env.get("ES_REPORT_INTERVAL")));
+    }
+    if (env.containsKey("ES_METRICS_PORT")) {
+      producer.setMetricsPort(Integer.parseInt(env.get("ES_METRICS_PORT")));
+    }
+    if (env.containsKey("ES_JMX")) {
+      producer.setJmx(Boolean.parseBoolean(env.get("ES_JMX")));
+    }
+    if (env.containsKey("ES_CLIENTS")) {
+      producer.setClients(Integer.parseInt(env.get("ES_CLIENTS")));
+    }
+    if (env.containsKey("ES_CLIENT_RATE")) {
+      producer.setClientRate(Double.parseDouble(env.get("ES_CLIENT_RATE")));
+    }
+    if (env.containsKey("ES_CLIENT_RAMP")) {
+      producer.setClientRamp(env.get("ES_CLIENT_RAMP"));
+    }
+    if (env.containsKey("ES_RESOURCE_USAGE")) {
+      producer.setResourceUsage(Boolean.parseBoolean(env.get("ES_RESOURCE_USAGE")));
+    }
+    if (env.containsKey("ES_PARTITION_BREAKDOWN")) {
+      producer.setPartitionBreakdown(Boolean.parseBoolean(env.get("ES_PARTITION_BREAKDOWN")));
+    }
+    if (env.containsKey("ES_BREAKDOWN_TOP")) {
+      producer.setBreakdownTop(Integer.parseInt(env.get("ES_BREAKDOWN_TOP")));
+    }
+    if (env.containsKey("ES_DRY_RUN")) {
+      producer.setDryRun(Boolean.parseBoolean(env.get("ES_DRY_RUN")));
+    }
+    if (env.containsKey("ES_END_TO_END")) {
+      producer.setEndToEnd(Boolean.parseBoolean(env.get("ES_END_TO_END")));
+    }
+    if (env.containsKey("ES_DRY_RUN_DELAY_MS")) {
+      producer.setDryRunDelayMs(Double.parseDouble(env.get("ES_DRY_RUN_DELAY_MS")));
+    }
+    if (env.containsKey("ES_DRY_RUN_JITTER_MS")) {
+      producer.setDryRunJitterMs(Double.parseDouble(env.get("ES_DRY_RUN_JITTER_MS")));
+    }
+    if (env.containsKey("ES_RESULTS_JSON")) {
+      producer.setResultsJsonPath(env.get("ES_RESULTS_JSON"));
+    }
+    if (env.containsKey("ES_RESULTS_CSV")) {
+      producer.setResultsCsvPath(env.get("ES_RESULTS_CSV"));
+    }
+    if (env.containsKey("ES_BASELINE")) {
+      producer.setBaselinePath(env.get("ES_BASELINE"));
+    }
+    if (env.containsKey("ES_REGRESSION_THRESHOLD")) {
+      producer.setRegressionThreshold(Double.parseDouble(env.get("ES_REGRESSION_THRESHOLD")));
+    }
+    if (env.containsKey("ES_SEARCH")) {
+      producer.setSearch(env.get("ES_SEARCH"));
+    }
+    if (env.containsKey("ES_SLO_MS")) {
+      producer.setSloMs(Double.parseDouble(env.get("ES_SLO_MS")));
+    }
+    if (env.containsKey("ES_SLO_PERCENTILE")) {
+      producer.setSloPercentile(Double.parseDouble(env.get("ES_SLO_PERCENTILE")));
+    }
+    if (env.containsKey("ES_PROBE_DURATION")) {
+      producer.setProbeDuration(env.get("ES_PROBE_DURATION"));
+    }
+    if (env.containsKey("ES_SEARCH_START")) {
+      producer.setSearchStart(Integer.parseInt(env.get("ES_SEARCH_START")));
+    }
+    if (env.containsKey("ES_SEARCH_MAX_PROBES")) {
+      producer.setSearchMaxProbes(Integer.parseInt(env.get("ES_SEARCH_MAX_PROBES")));
+    }
+    if (env.containsKey("ES_SWEEP")) {
+      producer.setSweep(env.get("ES_SWEEP"));
+    }
+    if (env.containsKey("ES_SWEEP_SAMPLES")) {
+      producer.setSweepSamples(Integer.parseInt(env.get("ES_SWEEP_SAMPLES")));
+    }
+
+    if (env.containsKey("ES_THROUGHPUT")) {
+      producer.setThroughput(Integer.parseInt(env.get("ES_THROUGHPUT")));
+      throughputOverridden = true;
+    }
+    if (env.containsKey("ES_NUM_RECORDS")) {
+      producer.setNumRecords(Long.parseLong(env.get("ES_NUM_RECORDS")));
+      numRecordsOverridden = true;
+    }
+    if (throughputOverridden && numRecordsOverridden) {
+      producer.setSize("");
+    }
+    if ((throughputOverridden && !numRecordsOverridden)
+        || (!throughputOverridden && numRecordsOverridden)) {
+      logger.warn(producerTranslations.getString("producer.envar.warning"));
+    }
+
+    if (env.containsKey("ES_SIZE")) producer.size = env.get("ES_SIZE");
+  }
+
+  public void setSize(String size) {
+    this.size = size;
+  }
+
+  public void setTopic(String topic) {
+    this.topic = topic;
+  }
+
+  public void setNumThreads(Integer numThreads) {
+    this.numThreads = numThreads;
+  }
+
+  public void setNumProducers(Integer numProducers) {
+    this.numProducers = numProducers;
+  }
+
+  public void setProducerAssignment(String producerAssignment) {
+    this.producerAssignment = producerAssignment;
+  }
+
+  public void setWarmUp(String warmUp) {
+    this.warmUp = warmUp;
+  }
+
+  public void setWarmUpRecords(Long warmUpRecords) {
+    this.warmUpRecords = warmUpRecords;
+  }
+
+  public void setDeliveryMode(String deliveryMode) {
+    this.deliveryMode = deliveryMode;
+  }
+
+  public void setTransactionRecords(Integer transactionRecords) {
+    this.transactionRecords = transactionRecords;
+  }
+
+  public void setTransactionInterval(String transactionInterval) {
+    this.transactionInterval = transactionInterval;
+  }
+
+  public void setNumRecords(Long numRecords) {
+    this.numRecords = numRecords;
+  }
 
   public void setThroughput(Integer throughput) {
     this.throughput = throughput;
@@ -352,7 +1506,7 @@ public class Producer {
     this.configFilePath = configFilePath;
   }
 
-  public void setRecordSize(Integer recordSize) {
+  public void setRecordSize(String recordSize) {
     this.recordSize = recordSize;
   }
 
@@ -368,6 +1522,162 @@ public class Producer {
     this.payloadDelimiter = payloadDelimiter;
   }
 
+  public void setTraceFile(String traceFile) {
+    this.traceFile = traceFile;
+  }
+
+  public void setTraceFormat(String traceFormat) {
+    this.traceFormat = traceFormat;
+  }
+
+  public void setTraceSpeed(Double traceSpeed) {
+    this.traceSpeed = traceSpeed;
+  }
+
+  public void setPayloadFormat(String payloadFormat) {
+    this.payloadFormat = payloadFormat;
+  }
+
+  public void setPayloadPoolSize(Integer payloadPoolSize) {
+    this.payloadPoolSize = payloadPoolSize;
+  }
+
+  public void setPayloadContent(String payloadContent) {
+    this.payloadContent = payloadContent;
+  }
+
+  public void setCompareCodecs(Boolean compareCodecs) {
+    this.compareCodecs = compareCodecs;
+  }
+
+  public void setPayloadPoolOffHeap(Boolean payloadPoolOffHeap) {
+    this.payloadPoolOffHeap = payloadPoolOffHeap;
+  }
+
+  public void setKeyDistribution(String keyDistribution) {
+    this.keyDistribution = keyDistribution;
+  }
+
+  public void setKeyCardinality(Integer keyCardinality) {
+    this.keyCardinality = keyCardinality;
+  }
+
+  public void setPartitions(String partitions) {
+    this.partitions = partitions;
+  }
+
+  public void setLoadProfile(String loadProfile) {
+    this.loadProfile = loadProfile;
+  }
+
+  public void setDuration(String duration) {
+    this.duration = duration;
+  }
+
+  public void setReportInterval(Integer reportInterval) {
+    this.reportInterval = reportInterval;
+  }
+
+  public void setMetricsPort(Integer metricsPort) {
+    this.metricsPort = metricsPort;
+  }
+
+  public void setJmx(Boolean jmx) {
+    this.jmx = jmx;
+  }
+
+  public void setResultsJsonPath(String resultsJsonPath) {
+    this.resultsJsonPath = resultsJsonPath;
+  }
+
+  public void setResultsCsvPath(String resultsCsvPath) {
+    this.resultsCsvPath = resultsCsvPath;
+  }
+
+  public void setBaselinePath(String baselinePath) {
+    this.baselinePath = baselinePath;
+  }
+
+  public void setClients(Integer clients) {
+    this.clients = clients;
+  }
+
+  public void setClientRate(Double clientRate) {
+    this.clientRate = clientRate;
+  }
+
+  public void setClientRamp(String clientRamp) {
+    this.clientRamp = clientRamp;
+  }
+
+  public void setResourceUsage(Boolean resourceUsage) {
+    this.resourceUsage = resourceUsage;
+  }
+
+  public void setPartitionBreakdown(Boolean partitionBreakdown) {
+    this.partitionBreakdown = partitionBreakdown;
+  }
+
+  public void setBreakdownTop(Integer breakdownTop) {
+    this.breakdownTop = breakdownTop;
+  }
+
+  public void setEndToEnd(Boolean endToEnd) {
+    this.endToEnd = endToEnd;
+  }
+
+  public void setDryRun(Boolean dryRun) {
+    this.dryRun = dryRun;
+  }
+
+  public void setDryRunDelayMs(Double dryRunDelayMs) {
+    this.dryRunDelayMs = dryRunDelayMs;
+  }
+
+  public void setDryRunJitterMs(Double dryRunJitterMs) {
+    this.dryRunJitterMs = dryRunJitterMs;
+  }
+
+  public void setRegressionThreshold(Double regressionThreshold) {
+    this.regressionThreshold = regressionThreshold;
+  }
+
+  public void setSearch(String search) {
+    this.search = search;
+  }
+
+  public void setSloMs(Double sloMs) {
+    this.sloMs = sloMs;
+  }
+
+  public void setSloPercentile(Double sloPercentile) {
+    this.sloPercentile = sloPercentile;
+  }
+
+  public void setProbeDuration(String probeDuration) {
+    this.probeDuration = probeDuration;
+  }
+
+  public void setSearchStart(Integer searchStart) {
+    this.searchStart = searchStart;
+  }
+
+  public void setSearchMaxProbes(Integer searchMaxProbes) {
+    this.searchMaxProbes = searchMaxProbes;
+  }
+
+  public void setSweep(String sweep) {
+    this.sweep = sweep;
+  }
+
+  public void setSweepSamples(Integer sweepSamples) {
+    this.sweepSamples = sweepSamples;
+  }
+
+  public void setProducerFactory(ProducerFactory producerFactory) {
+    this.producerFactory = producerFactory;
+  }
+
   public String getSize() {
     return size;
   }
@@ -376,6 +1686,39 @@ public class Producer {
     return topic;
   }
 
+  /** The number of Kafka producer instances, which by default is one for each thread. */
+  public Integer getNumProducers() {
+    return numProducers == null ? numThreads : numProducers;
+  }
+
+  public ProducerAssignment getProducerAssignment() {
+    return parsedProducerAssignment;
+  }
+
+  /** How long to warm up before the run, or 0 if the warm-up is not timed. */
+  public long getWarmUpNanos() {
+    return warmUpNanos;
+  }
+
+  /** How many records to warm up with before the run, or 0 if the warm-up is not counted. */
+  public long getWarmUpRecords() {
+    return warmUpRecords;
+  }
+
+  public DeliveryMode getDeliveryMode() {
+    return parsedDeliveryMode;
+  }
+
+  /** The most records in one transaction. */
+  public Integer getTransactionRecords() {
+    return transactionRecords;
+  }
+
+  /** The longest a transaction stays open, or 0 for no limit. */
+  public long getTransactionIntervalNanos() {
+    return transactionIntervalNanos;
+  }
+
   public Integer getNumThreads() {
     return numThreads;
   }
@@ -392,7 +1735,7 @@ public class Producer {
     return configFilePath;
   }
 
-  public Integer getRecordSize() {
+  public String getRecordSize() {
     return recordSize;
   }
 
@@ -407,4 +1750,205 @@ public class Producer {
   public String getPayloadDelimiter() {
     return payloadDelimiter;
   }
+
+  public String getPayloadFormat() {
+    return payloadFormat;
+  }
+
+  /** The trace to replay instead of generating records, or null. */
+  public String getTraceFile() {
+    return traceFile;
+  }
+
+  public String getTraceFormat() {
+    return traceFormat;
+  }
+
+  /** How much faster than it was captured the trace is replayed, or 0 for as fast as possible. */
+  public Double getTraceSpeed() {
+    return traceSpeed;
+  }
+
+  /**
+   * The number of payloads to generate for --record-size. Unless set, this is a single payload for
+   * a fixed record size and enough payloads to represent a record size distribution.
+   */
+  public Integer getPayloadPoolSize() {
+    if (payloadPoolSize != null) {
+      return payloadPoolSize;
+    }
+    // identical payloads would compress unrealistically well, so vary any content but the default
+    return (recordSizeDistribution == null || recordSizeDistribution.isFixed())
+            && parsedPayloadContent == PayloadContent.LETTERS
+        ? FIXED_SIZE_PAYLOAD_POOL_SIZE
+        : DISTRIBUTION_PAYLOAD_POOL_SIZE;
+  }
+
+  public RecordSizeDistribution getRecordSizeDistribution() {
+    return recordSizeDistribution;
+  }
+
+  public Boolean isPayloadPoolOffHeap() {
+    return payloadPoolOffHeap;
+  }
+
+  /** What generated payloads contain. */
+  public PayloadContent getPayloadContent() {
+    return parsedPayloadContent;
+  }
+
+  /** Whether to compare compression codecs on the payloads instead of sending them. */
+  public Boolean isCompareCodecs() {
+    return compareCodecs;
+  }
+
+  public String getKeyDistribution() {
+    return keyDistribution;
+  }
+
+  public Integer getKeyCardinality() {
+    return keyCardinality;
+  }
+
+  public KeyGenerator getKeyGenerator() {
+    return keyGenerator;
+  }
+
+  /**
+   * The partitions that records are pinned to with --partitions, or null to use the partitioner.
+   */
+  public int[] getPartitions() {
+    return partitionList;
+  }
+
+  public String getLoadProfileSpec() {
+    return loadProfile;
+  }
+
+  /** The load profile to follow instead of a constant --throughput, or null if there is none. */
+  public LoadProfile getLoadProfile() {
+    return parsedLoadProfile;
+  }
+
+  public String getDuration() {
+    return duration;
+  }
+
+  /** How long to send for with --duration, or 0 to send --num-records instead. */
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  public Integer getReportInterval() {
+    return reportInterval;
+  }
+
+  public Integer getMetricsPort() {
+    return metricsPort;
+  }
+
+  public Boolean isJmx() {
+    return jmx != null && jmx;
+  }
+
+  public String getResultsJsonPath() {
+    return resultsJsonPath;
+  }
+
+  public String getResultsCsvPath() {
+    return resultsCsvPath;
+  }
+
+  public String getBaselinePath() {
+    return baselinePath;
+  }
+
+  /** The number of simulated clients, or 0 to send from the producer threads directly. */
+  public Integer getClients() {
+    return clients;
+  }
+
+  /** The rate of each simulated client in records per second. */
+  public Double getClientRate() {
+    return clientRate;
+  }
+
+  /** How long the simulated clients take to start one after another, or 0 for all at once. */
+  public long getClientRampNanos() {
+    return clientRampNanos;
+  }
+
+  /** Whether to report the CPU, memory and garbage collection of the tool itself. */
+  public Boolean isResourceUsage() {
+    return resourceUsage;
+  }
+
+  /** Whether acknowledgements are counted by partition and leader broker. */
+  public Boolean isPartitionBreakdown() {
+    return partitionBreakdown;
+  }
+
+  public Integer getBreakdownTop() {
+    return breakdownTop;
+  }
+
+  /** Whether an in-process consumer reads the records back to measure end-to-end latency. */
+  public Boolean isEndToEnd() {
+    return endToEnd;
+  }
+
+  /** Whether records go to an in-process sink rather than to Kafka. */
+  public Boolean isDryRun() {
+    return dryRun;
+  }
+
+  public Double getDryRunDelayMs() {
+    return dryRunDelayMs;
+  }
+
+  public Double getDryRunJitterMs() {
+    return dryRunJitterMs;
+  }
+
+  public Double getRegressionThreshold() {
+    return regressionThreshold;
+  }
+
+  /** The throughput search to run with --search, or null for a normal run. */
+  public ThroughputSearch.Strategy getSearchStrategy() {
+    return searchStrategy;
+  }
+
+  public Double getSloMs() {
+    return sloMs;
+  }
+
+  public Double getSloPercentile() {
+    return sloPercentile;
+  }
+
+  public String getProbeDuration() {
+    return probeDuration;
+  }
+
+  public long getProbeDurationNanos() {
+    return probeDurationNanos;
+  }
+
+  public Integer getSearchStart() {
+    return searchStart;
+  }
+
+  public Integer getSearchMaxProbes() {
+    return searchMaxProbes;
+  }
+
+  /** The producer configurations to compare with --sweep, or null for a normal run. */
+  public ConfigSweep getSweep() {
+    return parsedSweep;
+  }
+
+  public Integer getSweepSamples() {
+    return sweepSamples;
+  }
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.Locale;
+
+/** How the producer threads are assigned to the --num-producers producer instances. */
+public enum ProducerAssignment {
+  /** Thread i always sends through producer i modulo the number of producers. */
+  ROUND_ROBIN,
+  /** Every thread sends each record through the producer for its key. */
+  KEY;
+
+  /** Parses a --producer-assignment value, throwing IllegalArgumentException if it is unknown. */
+  public static ProducerAssignment parse(String value) {
+    return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+  }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.Properties;
+import org.apache.kafka.clients.producer.KafkaProducer;
+
+/** Creates the Kafka clients used by the load engine from the loaded producer configuration. */
+@FunctionalInterface
+public interface ProducerFactory {
+
+  ProducerFactory KAFKA = KafkaProducer::new;
+
+  org.apache.kafka.clients.producer.Producer<byte[], byte[]> create(Properties properties);
+}
@@ -0,0 +1,422 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Statistics for a single producer thread. Sends are counted by the producer thread, while
+ * acknowledgements are recorded by the Kafka I/O thread through {@link SendCallback}, so every
+ * counter is safe to read from other threads while the run is in progress.
+ */
+public class ProducerStats {
+
+  /** Records are grouped by size into buckets of [2^(n-1), 2^n) bytes, with 0 bytes in bucket 0. */
+  static final int SIZE_BUCKETS = 33;
+
+  private final AtomicLong sent = new AtomicLong();
+  private final AtomicLong acked = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicLong ackedBytes = new AtomicLong();
+  private final AtomicLong latencySumMicros = new AtomicLong();
+  private final AtomicLong maxLatencyMicros = new AtomicLong();
+  private final AtomicLong firstAckNanos = new AtomicLong();
+  private final AtomicLong commits = new AtomicLong();
+  private final AtomicLong aborts = new AtomicLong();
+  private final LatencyHistogram commitLatencies = new LatencyHistogram();
+  private final LatencyHistogram latencies = new LatencyHistogram();
+  private final LatencyHistogram correctedLatencies = new LatencyHistogram();
+  private final AtomicLongArray sizeBucketAcked = new AtomicLongArray(SIZE_BUCKETS);
+  private final AtomicLongArray sizeBucketBytes = new AtomicLongArray(SIZE_BUCKETS);
+  // created when the first record of that size is acknowledged
+  private final AtomicReferenceArray<LatencyHistogram> sizeBucketLatencies =
+      new AtomicReferenceArray<>(SIZE_BUCKETS);
+
+  private volatile long startNanos;
+  private volatile long endNanos;
+  private volatile long threadId = -1;
+  private volatile long allocatedAtStart;
+  private volatile long allocatedBytes = -1;
+
+  /** Called by the producer thread when it starts sending. */
+  void start(long nowNanos) {
+    threadId = Thread.currentThread().getId();
+    allocatedAtStart = JvmResources.threadAllocatedBytes(threadId);
+    startNanos = nowNanos;
+  }
+
+  /** Called by the producer thread when it has finished sending. */
+  void finish(long nowNanos) {
+    allocatedBytes = allocatedSinceStart();
+    endNanos = nowNanos;
+  }
+
+  private long allocatedSinceStart() {
+    if (threadId < 0 || allocatedAtStart < 0) {
+      return -1;
+    }
+    long allocated = JvmResources.threadAllocatedBytes(threadId);
+    return allocated < 0 ? -1 : allocated - allocatedAtStart;
+  }
+
+  void recordSend() {
+    sent.incrementAndGet();
+  }
+
+  /**
+   * Records an acknowledged send. The raw latency is measured from the call to send(), while the
+   * corrected latency is measured from the time the rate limiter scheduled the send for, so that
+   * time spent waiting behind a stalled broker is not left out of the results.
+   */
+  void recordAck(long latencyNanos, long correctedLatencyNanos, int bytes) {
+    long latencyMicros = latencyNanos / 1000;
+    if (firstAckNanos.get() == 0) {
+      firstAckNanos.compareAndSet(0, System.nanoTime());
+    }
+    acked.incrementAndGet();
+    ackedBytes.addAndGet(bytes);
+    latencySumMicros.addAndGet(latencyMicros);
+    latencies.record(latencyMicros);
+    correctedLatencies.record(Math.max(correctedLatencyNanos, latencyNanos) / 1000);
+
+    int bucket = sizeBucket(bytes);
+    sizeBucketAcked.incrementAndGet(bucket);
+    sizeBucketBytes.addAndGet(bucket, bytes);
+    LatencyHistogram bucketLatencies = sizeBucketLatencies.get(bucket);
+    if (bucketLatencies == null) {
+      sizeBucketLatencies.compareAndSet(bucket, null, new LatencyHistogram());
+      bucketLatencies = sizeBucketLatencies.get(bucket);
+    }
+    bucketLatencies.record(latencyMicros);
+    long max = maxLatencyMicros.get();
+    while (latencyMicros > max && !maxLatencyMicros.compareAndSet(max, latencyMicros)) {
+      max = maxLatencyMicros.get();
+    }
+  }
+
+  static int sizeBucket(int bytes) {
+    return 32 - Integer.numberOfLeadingZeros(bytes);
+  }
+
+  void recordError() {
+    errors.incrementAndGet();
+  }
+
+  /** Records a committed transaction and how long the call to commit it took. */
+  void recordCommit(long latencyNanos) {
+    commitLatencies.record(latencyNanos / 1000);
+    commits.incrementAndGet();
+  }
+
+  void recordAbort() {
+    aborts.incrementAndGet();
+  }
+
+  /** Copies the current counters into a snapshot that can be merged with other threads. */
+  public Snapshot snapshot() {
+    Snapshot snapshot = new Snapshot();
+    snapshot.sent = sent.get();
+    snapshot.acked = acked.get();
+    snapshot.errors = errors.get();
+    snapshot.ackedBytes = ackedBytes.get();
+    snapshot.latencySumMicros = latencySumMicros.get();
+    snapshot.maxLatencyMicros = maxLatencyMicros.get();
+    snapshot.latencies = latencies.snapshot();
+    snapshot.correctedLatencies = correctedLatencies.snapshot();
+    snapshot.firstAckNanos = firstAckNanos.get();
+    snapshot.commits = commits.get();
+    snapshot.aborts = aborts.get();
+    snapshot.commitLatencies = commitLatencies.snapshot();
+    for (int i = 0; i < SIZE_BUCKETS; i++) {
+      snapshot.sizeBucketAcked[i] = sizeBucketAcked.get(i);
+      snapshot.sizeBucketBytes[i] = sizeBucketBytes.get(i);
+      LatencyHistogram bucketLatencies = sizeBucketLatencies.get(i);
+      if (bucketLatencies != null) {
+        snapshot.sizeBucketLatencies[i] = bucketLatencies.snapshot();
+      }
+    }
+    snapshot.startNanos = startNanos;
+    snapshot.endNanos = endNanos == 0 ? System.nanoTime() : endNanos;
+    snapshot.allocatedBytes = endNanos == 0 ? allocatedSinceStart() : allocatedBytes;
+    return snapshot;
+  }
+
+  /** A point-in-time, mergeable copy of one or more threads' statistics. */
+  public static class Snapshot {
+    private long sent;
+    private long acked;
+    private long errors;
+    private long ackedBytes;
+    private long latencySumMicros;
+    private long maxLatencyMicros;
+    private LatencyHistogram.Snapshot latencies = new LatencyHistogram.Snapshot();
+    private LatencyHistogram.Snapshot correctedLatencies = new LatencyHistogram.Snapshot();
+    private LatencyHistogram.Snapshot endToEndLatencies = new LatencyHistogram.Snapshot();
+    private long firstAckNanos;
+    private long commits;
+    private long aborts;
+    private LatencyHistogram.Snapshot commitLatencies = new LatencyHistogram.Snapshot();
+    private final long[] sizeBucketAcked = new long[SIZE_BUCKETS];
+    private final long[] sizeBucketBytes = new long[SIZE_BUCKETS];
+    private final LatencyHistogram.Snapshot[] sizeBucketLatencies =
+        new LatencyHistogram.Snapshot[SIZE_BUCKETS];
+    private long startNanos;
+    private long endNanos;
+    private long allocatedBytes;
+
+    /** Adds another snapshot into this one; the elapsed window covers both. */
+    public Snapshot merge(Snapshot other) {
+      if (startNanos == 0) {
+        allocatedBytes = other.allocatedBytes;
+      } else if (allocatedBytes < 0 || other.allocatedBytes < 0) {
+        allocatedBytes = -1;
+      } else {
+        allocatedBytes += other.allocatedBytes;
+      }
+      if (startNanos == 0) {
+        startNanos = other.startNanos;
+        endNanos = other.endNanos;
+      } else {
+        startNanos = Math.min(startNanos, other.startNanos);
+        endNanos = Math.max(endNanos, other.endNanos);
+      }
+      sent += other.sent;
+      acked += other.acked;
+      errors += other.errors;
+      ackedBytes += other.ackedBytes;
+      latencySumMicros += other.latencySumMicros;
+      maxLatencyMicros = Math.max(maxLatencyMicros, other.maxLatencyMicros);
+      latencies.merge(other.latencies);
+      correctedLatencies.merge(other.correctedLatencies);
+      endToEndLatencies.merge(other.endToEndLatencies);
+      if (firstAckNanos == 0 || (other.firstAckNanos != 0 && other.firstAckNanos < firstAckNanos)) {
+        firstAckNanos = other.firstAckNanos;
+      }
+      commits += other.commits;
+      aborts += other.aborts;
+      commitLatencies.merge(other.commitLatencies);
+      for (int i = 0; i < SIZE_BUCKETS; i++) {
+        sizeBucketAcked[i] += other.sizeBucketAcked[i];
+        sizeBucketBytes[i] += other.sizeBucketBytes[i];
+        if (other.sizeBucketLatencies[i] != null) {
+          if (sizeBucketLatencies[i] == null) {
+            sizeBucketLatencies[i] = new LatencyHistogram.Snapshot();
+          }
+          sizeBucketLatencies[i].merge(other.sizeBucketLatencies[i]);
+        }
+      }
+      return this;
+    }
+
+    /**
+     * Returns a new snapshot holding only what happened between an earlier snapshot of the same
+     * threads and this one.
+     */
+    public Snapshot since(Snapshot earlier) {
+      Snapshot interval = new Snapshot();
+      interval.sent = sent - earlier.sent;
+      interval.acked = acked - earlier.acked;
+      interval.errors = errors - earlier.errors;
+      interval.ackedBytes = ackedBytes - earlier.ackedBytes;
+      interval.latencySumMicros = latencySumMicros - earlier.latencySumMicros;
+      interval.latencies = latencies.since(earlier.latencies);
+      interval.correctedLatencies = correctedLatencies.since(earlier.correctedLatencies);
+      interval.endToEndLatencies = endToEndLatencies.since(earlier.endToEndLatencies);
+      interval.commits = commits - earlier.commits;
+      interval.aborts = aborts - earlier.aborts;
+      interval.commitLatencies = commitLatencies.since(earlier.commitLatencies);
+      // the exact maximum of the interval is not kept, so use the top of its histogram
+      interval.maxLatencyMicros =
+          Math.min(maxLatencyMicros, interval.latencies.getValueAtPercentile(100));
+      for (int i = 0; i < SIZE_BUCKETS; i++) {
+        interval.sizeBucketAcked[i] = sizeBucketAcked[i] - earlier.sizeBucketAcked[i];
+        interval.sizeBucketBytes[i] = sizeBucketBytes[i] - earlier.sizeBucketBytes[i];
+        if (sizeBucketLatencies[i] != null) {
+          interval.sizeBucketLatencies[i] =
+              earlier.sizeBucketLatencies[i] == null
+                  ? new LatencyHistogram.Snapshot().merge(sizeBucketLatencies[i])
+                  : sizeBucketLatencies[i].since(earlier.sizeBucketLatencies[i]);
+        }
+      }
+      interval.startNanos = earlier.startNanos == 0 ? startNanos : earlier.endNanos;
+      interval.endNanos = endNanos;
+      interval.allocatedBytes =
+          allocatedBytes < 0 || earlier.allocatedBytes < 0
+              ? -1
+              : allocatedBytes - earlier.allocatedBytes;
+      return interval;
+    }
+
+    public long getSent() {
+      return sent;
+    }
+
+    /** Records that have been sent but not yet acknowledged or failed. */
+    public long getInFlight() {
+      return Math.max(0, sent - acked - errors);
+    }
+
+    public long getAcked() {
+      return acked;
+    }
+
+    public long getErrors() {
+      return errors;
+    }
+
+    public long getAckedBytes() {
+      return ackedBytes;
+    }
+
+    public double getElapsedSeconds() {
+      return Math.max(endNanos - startNanos, 1L) / 1e9;
+    }
+
+    public double getRecordsPerSecond() {
+      return acked / getElapsedSeconds();
+    }
+
+    public double getMegabytesPerSecond() {
+      return ackedBytes / (1024.0 * 1024.0) / getElapsedSeconds();
+    }
+
+    public double getAverageLatencyMs() {
+      return acked == 0 ? 0.0 : latencySumMicros / 1000.0 / acked;
+    }
+
+    public double getMaxLatencyMs() {
+      return maxLatencyMicros / 1000.0;
+    }
+
+    /** Heap bytes allocated by the producer threads per record sent, or -1 if not supported. */
+    public double getAllocatedBytesPerRecord() {
+      return allocatedBytes < 0 ? -1 : (double) allocatedBytes / Math.max(sent, 1L);
+    }
+
+    /** Heap allocation rate of the producer threads in MB/sec, or -1 if not supported. */
+    public double getAllocationMegabytesPerSecond() {
+      return allocatedBytes < 0 ? -1 : allocatedBytes / (1024.0 * 1024.0) / getElapsedSeconds();
+    }
+
+    /** The acknowledgement latency at the given percentile, across every merged thread. */
+    public double getLatencyPercentileMs(double percentile) {
+      return Math.min(latencies.getValueAtPercentile(percentile), maxLatencyMicros) / 1000.0;
+    }
+
+    /**
+     * The latency at the given percentile measured from when each send was scheduled, which
+     * includes any time the send loop spent falling behind its --throughput schedule.
+     */
+    public double getCorrectedLatencyPercentileMs(double percentile) {
+      return correctedLatencies.getPercentileMs(percentile);
+    }
+
+    /** The number of size buckets that had at least one record acknowledged. */
+    public int getSizeBucketsUsed() {
+      int used = 0;
+      for (long count : sizeBucketAcked) {
+        used += count > 0 ? 1 : 0;
+      }
+      return used;
+    }
+
+    public long getSizeBucketAcked(int bucket) {
+      return sizeBucketAcked[bucket];
+    }
+
+    public double getSizeBucketRecordsPerSecond(int bucket) {
+      return sizeBucketAcked[bucket] / getElapsedSeconds();
+    }
+
+    public double getSizeBucketMegabytesPerSecond(int bucket) {
+      return sizeBucketBytes[bucket] / (1024.0 * 1024.0) / getElapsedSeconds();
+    }
+
+    public double getSizeBucketLatencyPercentileMs(int bucket, double percentile) {
+      LatencyHistogram.Snapshot bucketLatencies = sizeBucketLatencies[bucket];
+      return bucketLatencies == null ? 0.0 : bucketLatencies.getPercentileMs(percentile);
+    }
+
+    /** The smallest record size, in bytes, counted in the given size bucket. */
+    public static long getSizeBucketMinBytes(int bucket) {
+      return bucket == 0 ? 0 : 1L << (bucket - 1);
+    }
+
+    /** The largest record size, in bytes, counted in the given size bucket. */
+    public static long getSizeBucketMaxBytes(int bucket) {
+      return bucket == 0 ? 0 : (1L << bucket) - 1;
+    }
+
+    public LatencyHistogram.Snapshot getLatencies() {
+      return latencies;
+    }
+
+    public LatencyHistogram.Snapshot getCorrectedLatencies() {
+      return correctedLatencies;
+    }
+
+    /** Adds the latencies measured by the --end-to-end consumer. */
+    Snapshot addEndToEndLatencies(LatencyHistogram.Snapshot latencies) {
+      endToEndLatencies.merge(latencies);
+      return this;
+    }
+
+    /** The number of records read back by the --end-to-end consumer. */
+    public long getConsumed() {
+      return endToEndLatencies.getCount();
+    }
+
+    /** The latency from send until the record was consumed, at the given percentile. */
+    public double getEndToEndLatencyPercentileMs(double percentile) {
+      return endToEndLatencies.getPercentileMs(percentile);
+    }
+
+    public LatencyHistogram.Snapshot getEndToEndLatencies() {
+      return endToEndLatencies;
+    }
+
+    /** The time from the start of sending until the first acknowledgement, or -1 if none. */
+    public double getTimeToFirstAckMs() {
+      return firstAckNanos == 0 ? -1 : (firstAckNanos - startNanos) / 1e6;
+    }
+
+    /** The number of transactions committed. */
+    public long getCommits() {
+      return commits;
+    }
+
+    /** The number of transactions aborted because they could not be committed. */
+    public long getAborts() {
+      return aborts;
+    }
+
+    /** The average number of records acknowledged for each committed transaction. */
+    public double getRecordsPerCommit() {
+      return commits == 0 ? 0.0 : (double) acked / commits;
+    }
+
+    /** How long committing a transaction took, at the given percentile. */
+    public double getCommitLatencyPercentileMs(double percentile) {
+      return commitLatencies.getPercentileMs(percentile);
+    }
+
+    public LatencyHistogram.Snapshot getCommitLatencies() {
+      return commitLatencies;
+    }
+  }
+}
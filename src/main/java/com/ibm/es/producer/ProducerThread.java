@@ -15,66 +15,147 @@
  */
 package com.ibm.es.producer;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import org.apache.kafka.tools.ProducerPerformance;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.errors.AuthorizationException;
+import org.apache.kafka.common.errors.OutOfOrderSequenceException;
+import org.apache.kafka.common.errors.ProducerFencedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class ProducerThread extends Thread {
 
-  private Thread thread;
-  private String threadName;
-  private Producer producer;
+  private static final int CALLBACK_POOL_SIZE = 4096;
+
+  // the producers this thread sends through; with more than one, each key has its own producer
+  private final org.apache.kafka.clients.producer.Producer<byte[], byte[]>[] kafkaProducers;
+  private final long numRecords;
+  private final Workload workload;
+  // null unless records are sent in transactions
+  private final Transactions transactions;
+  private final ProducerStats stats = new ProducerStats();
 
   private static Logger logger = LoggerFactory.getLogger(ProducerThread.class);
 
-  ProducerThread(ThreadGroup threadGroup, String threadName, Producer producer) {
+  ProducerThread(
+      ThreadGroup threadGroup,
+      String threadName,
+      org.apache.kafka.clients.producer.Producer<byte[], byte[]>[] kafkaProducers,
+      long numRecords,
+      Workload workload) {
+    this(threadGroup, threadName, kafkaProducers, numRecords, workload, null);
+  }
+
+  ProducerThread(
+      ThreadGroup threadGroup,
+      String threadName,
+      org.apache.kafka.clients.producer.Producer<byte[], byte[]>[] kafkaProducers,
+      long numRecords,
+      Workload workload,
+      Transactions transactions) {
     super(threadGroup, threadName);
-    this.threadName = threadName;
-    this.producer = producer;
+    this.kafkaProducers = kafkaProducers;
+    this.numRecords = numRecords;
+    this.workload = workload;
+    this.transactions = transactions;
   }
 
   @Override
   public void run() {
-    List<String> argumentsList =
-        new ArrayList<>(
-            Arrays.asList(
-                "--topic", producer.getTopic(),
-                "--num-records", String.valueOf(producer.getNumRecords()),
-                "--throughput", String.valueOf(producer.getThroughput()),
-                "--producer.config", producer.getConfigFilePath()));
-
-    if (producer.shouldPrintMetrics()) {
-      argumentsList.add("--print-metrics");
-    }
+    String topic = workload.getTopic();
+    RateLimiter rateLimiter = workload.getRateLimiter();
+    PayloadSource.Reader payloadReader = workload.getPayloads().newReader();
+    KeyGenerator keys = workload.getKeys();
+    KeyGenerator.Reader keyReader = keys.newReader();
+    SendCallback.Pool callbacks =
+        new SendCallback.Pool(stats, workload.getPartitionStats(), CALLBACK_POOL_SIZE);
 
-    if ("".equals(producer.getPayloadFilePath())) {
-      argumentsList.add("--record-size");
-      argumentsList.add(String.valueOf(producer.getRecordSize()));
-    } else {
-      argumentsList.add("--payload-file");
-      argumentsList.add(producer.getPayloadFilePath());
-
-      argumentsList.add("--payload-delimiter");
-      argumentsList.add(producer.getPayloadDelimiter());
-    }
+    // a transactional thread has a producer of its own
+    org.apache.kafka.clients.producer.Producer<byte[], byte[]> transactional =
+        transactions == null ? null : kafkaProducers[0];
+    long recordsInTransaction = 0;
+    long transactionBeganNanos = 0;
 
+    stats.start(System.nanoTime());
     try {
-      String[] arguments = new String[argumentsList.size()];
-      arguments = argumentsList.toArray(arguments);
-      ProducerPerformance.main(arguments);
+      for (long i = 0; i < numRecords && !isInterrupted(); i++) {
+        byte[] payload = payloadReader.next();
+        int keyIndex = keyReader.next();
+        ProducerRecord<byte[], byte[]> record =
+            new ProducerRecord<>(
+                topic, workload.partitionFor(keyIndex, i), keys.key(keyIndex), payload);
+
+        long scheduledNanos = rateLimiter.acquire();
+        if (workload.isPastEnd(scheduledNanos)) {
+          break;
+        }
+        long sendStartNanos = System.nanoTime();
+        if (transactional != null && recordsInTransaction == 0) {
+          transactional.beginTransaction();
+          transactionBeganNanos = sendStartNanos;
+        }
+        if (workload.isEndToEnd()) {
+          EndToEndConsumer.stamp(record, sendStartNanos);
+        }
+        SendCallback callback = callbacks.acquire();
+        callback.prepare(scheduledNanos, sendStartNanos, payload.length);
+        kafkaProducers[keyIndex < 0 ? 0 : keyIndex % kafkaProducers.length].send(record, callback);
+        stats.recordSend();
+        if (transactional != null
+            && transactions.isDue(
+                ++recordsInTransaction, transactionBeganNanos, System.nanoTime())) {
+          commitTransaction(transactional);
+          recordsInTransaction = 0;
+        }
+      }
+      if (recordsInTransaction > 0) {
+        commitTransaction(transactional);
+      }
+      for (org.apache.kafka.clients.producer.Producer<byte[], byte[]> kafkaProducer :
+          kafkaProducers) {
+        kafkaProducer.flush();
+      }
     } catch (Exception error) {
       logger.error("Failed to execute", error);
+    } finally {
+      stats.finish(System.nanoTime());
     }
   }
 
-  @Override
-  public void start() {
-    if (thread == null) {
-      thread = new Thread(this, threadName);
-      thread.start();
+  /**
+   * Commits the open transaction, timing how long the commit takes, or aborts it if it cannot be
+   * committed, such as when one of its records failed. Errors that leave the producer unusable end
+   * the thread.
+   */
+  private void commitTransaction(
+      org.apache.kafka.clients.producer.Producer<byte[], byte[]> kafkaProducer) {
+    long commitStartNanos = System.nanoTime();
+    try {
+      kafkaProducer.commitTransaction();
+      stats.recordCommit(System.nanoTime() - commitStartNanos);
+    } catch (ProducerFencedException | OutOfOrderSequenceException | AuthorizationException fatal) {
+      throw fatal;
+    } catch (KafkaException error) {
+      logger.debug("Failed to commit a transaction, aborting it", error);
+      kafkaProducer.abortTransaction();
+      stats.recordAbort();
     }
   }
+
+  public long getNumRecords() {
+    return numRecords;
+  }
+
+  /** How the records are grouped into transactions, or null if they are not. */
+  public Transactions getTransactions() {
+    return transactions;
+  }
+
+  public RateLimiter getRateLimiter() {
+    return workload.getRateLimiter();
+  }
+
+  public ProducerStats getStats() {
+    return stats;
+  }
 }
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A rate limiter shared by every producer thread, so that --throughput is the total rate of the
+ * whole process. Each permit is given a fixed slot on a schedule that starts when the limiter is
+ * started; taking a permit is a single atomic increment, so there is no lock for the threads to
+ * contend on.
+ *
+ * <p>With a {@link LoadProfile}, or an adjustable rate, the rate changes over time. Each permit's
+ * slot then follows the previous one by the time it takes to issue one permit at the current rate,
+ * and is claimed with a compare-and-set so that it is still not a lock.
+ */
+public class RateLimiter {
+
+  /** Waits shorter than this are spun rather than parked, as parking overshoots small waits. */
+  private static final long SPIN_THRESHOLD_NANOS = 50_000L;
+  /** The time step used to follow a changing rate while it is below one permit per step. */
+  private static final double PROFILE_STEP_SECONDS = 0.001;
+  // the time each thread has spun waiting for a permit, by thread id, for the resource monitor
+  private static final Map<Long, AtomicLong> SPUN_NANOS = new ConcurrentHashMap<>();
+  private static final ThreadLocal<AtomicLong> SPUN =
+      ThreadLocal.withInitial(
+          () -> SPUN_NANOS.computeIfAbsent(Thread.currentThread().getId(), id -> new AtomicLong()));
+
+  private final int permitsPerSecond;
+  private final double nanosPerPermit;
+  private final LoadProfile profile;
+  // the rate at a number of seconds into the schedule, for a profile or an adjustable rate
+  private final DoubleUnaryOperator rateAt;
+  private volatile double adjustableRate;
+  private final AtomicLong issued = new AtomicLong();
+  // for a changing rate, the slot of the next permit in seconds from the start, as double bits
+  private final AtomicLong nextSlot = new AtomicLong(Double.doubleToRawLongBits(0.0));
+  private volatile long startNanos;
+
+  /** Creates a limiter for the given total rate, where -1 means no limit. */
+  public RateLimiter(int permitsPerSecond) {
+    this.permitsPerSecond = permitsPerSecond;
+    this.nanosPerPermit = permitsPerSecond > 0 ? 1e9 / permitsPerSecond : 0.0;
+    this.profile = null;
+    this.rateAt = null;
+  }
+
+  /** Creates a limiter whose total rate follows the given profile. */
+  public RateLimiter(LoadProfile profile) {
+    this.permitsPerSecond = -1;
+    this.nanosPerPermit = 0.0;
+    this.profile = profile;
+    this.rateAt = profile::rateAt;
+  }
+
+  private RateLimiter(double initialPermitsPerSecond) {
+    this.permitsPerSecond = -1;
+    this.nanosPerPermit = 0.0;
+    this.profile = null;
+    this.adjustableRate = initialPermitsPerSecond;
+    this.rateAt = seconds -> adjustableRate;
+  }
+
+  /** Creates a limiter whose total rate can be changed with {@link #setRate} while it runs. */
+  public static RateLimiter adjustable(double initialPermitsPerSecond) {
+    if (initialPermitsPerSecond < 1) {
+      throw new IllegalArgumentException("The rate must be at least 1 permit per second");
+    }
+    return new RateLimiter(initialPermitsPerSecond);
+  }
+
+  /**
+   * Changes the rate of an adjustable limiter. The schedule restarts from now at the new rate, so
+   * permits that fell behind the old rate are not issued in a burst.
+   */
+  public void setRate(double permitsPerSecond) {
+    if (rateAt == null || profile != null) {
+      throw new IllegalStateException("The rate of this limiter cannot be changed");
+    }
+    if (permitsPerSecond < 1) {
+      throw new IllegalArgumentException("The rate must be at least 1 permit per second");
+    }
+    adjustableRate = permitsPerSecond;
+    double now = (System.nanoTime() - startNanos) / 1e9;
+    nextSlot.set(Double.doubleToRawLongBits(now));
+  }
+
+  public void start(long nowNanos) {
+    startNanos = nowNanos;
+  }
+
+  public boolean isUnlimited() {
+    return rateAt == null && permitsPerSecond <= 0;
+  }
+
+  public int getPermitsPerSecond() {
+    return permitsPerSecond;
+  }
+
+  public LoadProfile getProfile() {
+    return profile;
+  }
+
+  /**
+   * Takes the next permit, waiting until its slot in the schedule is reached. Returns the time the
+   * permit was scheduled for, which is earlier than now if the caller has fallen behind.
+   */
+  public long acquire() {
+    if (isUnlimited()) {
+      return System.nanoTime();
+    }
+    long scheduledNanos;
+    if (rateAt == null) {
+      scheduledNanos = startNanos + (long) (issued.getAndIncrement() * nanosPerPermit);
+    } else {
+      scheduledNanos = startNanos + (long) (claimProfileSlot() * 1e9);
+    }
+    long remaining;
+    boolean spinning = false;
+    long spinStartNanos = 0;
+    while ((remaining = scheduledNanos - System.nanoTime()) > 0) {
+      if (Thread.currentThread().isInterrupted()) {
+        break;
+      }
+      if (remaining > SPIN_THRESHOLD_NANOS) {
+        LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS / 2);
+      } else {
+        if (!spinning) {
+          spinning = true;
+          spinStartNanos = System.nanoTime();
+        }
+        Thread.yield();
+      }
+    }
+    if (spinning) {
+      SPUN.get().addAndGet(System.nanoTime() - spinStartNanos);
+    }
+    return scheduledNanos;
+  }
+
+  /**
+   * The time the given thread has spun waiting for permits, across every limiter. Spinning shows up
+   * as CPU time, so {@link ResourceMonitor} takes it off so that a thread held back by the rate is
+   * not reported as busy.
+   */
+  static long spunNanos(long threadId) {
+    AtomicLong spun = SPUN_NANOS.get(threadId);
+    return spun == null ? 0 : spun.get();
+  }
+
+  /** The time every thread has spun waiting for permits, in total. */
+  static long spunNanos() {
+    long total = 0;
+    for (AtomicLong spun : SPUN_NANOS.values()) {
+      total += spun.get();
+    }
+    return total;
+  }
+
+  private double claimProfileSlot() {
+    while (true) {
+      long bits = nextSlot.get();
+      double slot = Double.longBitsToDouble(bits);
+      double following = slotAfter(slot);
+      if (nextSlot.compareAndSet(bits, Double.doubleToRawLongBits(following))) {
+        return slot;
+      }
+    }
+  }
+
+  /**
+   * Finds when one more permit is due after the given time. At high rates this is a single step; at
+   * low rates the rate is followed a millisecond at a time, so that a change of rate, such as the
+   * start of a burst, is not missed by more than a millisecond.
+   */
+  private double slotAfter(double seconds) {
+    double needed = 1.0;
+    double time = seconds;
+    while (true) {
+      double rate = rateAt.applyAsDouble(time);
+      double permits = rate * PROFILE_STEP_SECONDS;
+      if (permits >= needed) {
+        return time + needed / rate;
+      }
+      needed -= permits;
+      time += PROFILE_STEP_SECONDS;
+    }
+  }
+}
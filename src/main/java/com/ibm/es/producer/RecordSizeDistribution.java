@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The sizes of the records to send, parsed from --record-size. Besides a single size in bytes, this
+ * accepts:
+ *
+ * <ul>
+ *   <li>{@code uniform:MIN-MAX} - any size from MIN to MAX bytes with equal likelihood
+ *   <li>{@code normal:MEAN,STDDEV} - a normal distribution of sizes
+ *   <li>{@code lognormal:MEDIAN,SIGMA} - a log-normal distribution, for long-tailed sizes
+ *   <li>{@code file:PATH} - a weighted histogram, with a size and a weight on each line of PATH
+ * </ul>
+ *
+ * Sizes are sampled once, when the payload pool is generated, rather than for each record.
+ */
+public class RecordSizeDistribution {
+
+  static final int MAX_RECORD_SIZE = 100 * 1024 * 1024;
+
+  private interface Sampler {
+    double sample(Random random);
+  }
+
+  private final String description;
+  private final Sampler sampler;
+  private final boolean fixed;
+
+  private RecordSizeDistribution(String description, Sampler sampler, boolean fixed) {
+    this.description = description;
+    this.sampler = sampler;
+    this.fixed = fixed;
+  }
+
+  /** Parses a --record-size value, throwing IllegalArgumentException if it is not valid. */
+  public static RecordSizeDistribution parse(String value) {
+    String spec = value.trim();
+    int colon = spec.indexOf(':');
+    if (colon < 0) {
+      int size = parseSize(spec);
+      return new RecordSizeDistribution(spec, random -> size, true);
+    }
+
+    String type = spec.substring(0, colon);
+    String arguments = spec.substring(colon + 1);
+    switch (type) {
+      case "uniform":
+        {
+          String[] range = arguments.split("-");
+          requireArguments(spec, range, 2);
+          int min = parseSize(range[0]);
+          int max = parseSize(range[1]);
+          if (max < min) {
+            throw new IllegalArgumentException("Invalid record size range " + spec);
+          }
+          return new RecordSizeDistribution(
+              spec, random -> min + random.nextInt(max - min + 1), min == max);
+        }
+      case "normal":
+        {
+          String[] parameters = arguments.split(",");
+          requireArguments(spec, parameters, 2);
+          double mean = Double.parseDouble(parameters[0]);
+          double deviation = Double.parseDouble(parameters[1]);
+          return new RecordSizeDistribution(
+              spec, random -> mean + deviation * random.nextGaussian(), deviation == 0);
+        }
+      case "lognormal":
+        {
+          String[] parameters = arguments.split(",");
+          requireArguments(spec, parameters, 2);
+          double median = Double.parseDouble(parameters[0]);
+          double sigma = Double.parseDouble(parameters[1]);
+          return new RecordSizeDistribution(
+              spec, random -> median * Math.exp(sigma * random.nextGaussian()), sigma == 0);
+        }
+      case "file":
+        return weightedHistogram(spec, arguments);
+      default:
+        throw new IllegalArgumentException("Unknown record size distribution " + type);
+    }
+  }
+
+  /** Reads a histogram file with lines of "SIZE WEIGHT"; blank lines and # comments are ignored. */
+  private static RecordSizeDistribution weightedHistogram(String spec, String path) {
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Could not read record size histogram " + path, e);
+    }
+    List<Integer> sizes = new ArrayList<>();
+    List<Double> weights = new ArrayList<>();
+    for (String line : lines) {
+      String trimmed = line.trim();
+      if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+        continue;
+      }
+      String[] fields = trimmed.split("[\\s,]+");
+      requireArguments(spec, fields, 2);
+      double weight = Double.parseDouble(fields[1]);
+      if (weight < 0) {
+        throw new IllegalArgumentException("Negative weight in " + path + ": " + line);
+      }
+      sizes.add(parseSize(fields[0]));
+      weights.add(weight);
+    }
+
+    double[] cumulative = new double[sizes.size()];
+    double total = 0;
+    for (int i = 0; i < cumulative.length; i++) {
+      total += weights.get(i);
+      cumulative[i] = total;
+    }
+    if (total <= 0) {
+      throw new IllegalArgumentException("No weighted record sizes in " + path);
+    }
+    final double totalWeight = total;
+    return new RecordSizeDistribution(
+        spec,
+        random -> {
+          int index = Arrays.binarySearch(cumulative, random.nextDouble() * totalWeight);
+          index = index < 0 ? -index - 1 : index;
+          return sizes.get(Math.min(index, cumulative.length - 1));
+        },
+        sizes.size() == 1);
+  }
+
+  private static void requireArguments(String spec, String[] arguments, int expected) {
+    if (arguments.length != expected) {
+      throw new IllegalArgumentException("Invalid record size " + spec);
+    }
+  }
+
+  private static int parseSize(String value) {
+    int size = Integer.parseInt(value.trim());
+    if (size < 0 || size > MAX_RECORD_SIZE) {
+      throw new IllegalArgumentException("Invalid record size " + value);
+    }
+    return size;
+  }
+
+  /** Draws the given number of record sizes from the distribution. */
+  public int[] sample(int count, long seed) {
+    Random random = new Random(seed);
+    int[] sizes = new int[count];
+    for (int i = 0; i < count; i++) {
+      long size = Math.round(sampler.sample(random));
+      sizes[i] = (int) Math.max(0, Math.min(MAX_RECORD_SIZE, size));
+    }
+    return sizes;
+  }
+
+  /** Whether every record has the same size. */
+  public boolean isFixed() {
+    return fixed;
+  }
+
+  @Override
+  public String toString() {
+    return description;
+  }
+}
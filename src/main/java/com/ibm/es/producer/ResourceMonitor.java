@@ -0,0 +1,476 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+
+/**
+ * Samples what the tool itself uses while a run is in progress, so that a plateau in throughput can
+ * be told apart from a limit of the load generator: the CPU time and allocation of the threads that
+ * send records and of the Kafka I/O threads, garbage collection pauses, heap and off-heap memory,
+ * and how full the producers' buffer.memory is. Time spent spinning for the {@link RateLimiter} is
+ * left out of the CPU time, as a thread waiting for its next permit is not busy. Measurements that
+ * the running JVM does not support are reported as -1.
+ */
+public class ResourceMonitor {
+
+  /** A thread busy for this fraction of the time is using a whole core and cannot go faster. */
+  static final double CPU_BOUND_THREAD = 0.9;
+
+  /** The process is CPU-bound when it uses this fraction of every core of the host. */
+  static final double CPU_BOUND_PROCESS = 0.9;
+
+  /**
+   * How often to sample for the figures of the whole run, independently of any interval reports, so
+   * that runs shorter than the report interval still see the threads that send records.
+   */
+  static final long SAMPLE_INTERVAL_MS = 1000;
+
+  /** The process is GC-bound when it is paused for garbage collection this fraction of the time. */
+  static final double GC_BOUND = 0.1;
+
+  // the threads that generate load: producer threads, trace replay threads and client carriers
+  private static final Pattern SENDER_THREAD =
+      Pattern.compile("(producer|warmup|replay|client-carrier)\\d+|trace-reader");
+  private static final String IO_THREAD_PREFIX = "kafka-producer-network-thread";
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+  private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+  private static final OperatingSystemMXBean SYSTEM = ManagementFactory.getOperatingSystemMXBean();
+  private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+  /** What the tool used during an interval, or during the whole run. */
+  public static class Usage {
+    private double senderBusiest = -1;
+    private double senderCores = -1;
+    private double ioBusiest = -1;
+    private double ioCores = -1;
+    private double senderAllocationMegabytesPerSecond = -1;
+    private double ioAllocationMegabytesPerSecond = -1;
+    private double processCpu = -1;
+    private long gcPauses;
+    private double gcPauseMs;
+    private double gcMaxPauseMs;
+    private double elapsedMs;
+    private long heapUsed;
+    private long heapMax;
+    private long offHeapUsed;
+    private double bufferFill = -1;
+
+    /** The fraction of a core used by the busiest thread that sends records. */
+    public double getSenderBusiest() {
+      return senderBusiest;
+    }
+
+    /** The number of cores used by the threads that send records, in total. */
+    public double getSenderCores() {
+      return senderCores;
+    }
+
+    /** The fraction of a core used by the busiest Kafka I/O thread. */
+    public double getIoBusiest() {
+      return ioBusiest;
+    }
+
+    /** The number of cores used by the Kafka I/O threads, in total. */
+    public double getIoCores() {
+      return ioCores;
+    }
+
+    public double getSenderAllocationMegabytesPerSecond() {
+      return senderAllocationMegabytesPerSecond;
+    }
+
+    public double getIoAllocationMegabytesPerSecond() {
+      return ioAllocationMegabytesPerSecond;
+    }
+
+    /** The fraction of all the cores of the host used by this process. */
+    public double getProcessCpu() {
+      return processCpu;
+    }
+
+    public long getGcPauses() {
+      return gcPauses;
+    }
+
+    public double getGcPauseMs() {
+      return gcPauseMs;
+    }
+
+    public double getGcMaxPauseMs() {
+      return gcMaxPauseMs;
+    }
+
+    /** The fraction of the time the process was paused for garbage collection. */
+    public double getGcPauseFraction() {
+      return elapsedMs <= 0 ? 0 : gcPauseMs / elapsedMs;
+    }
+
+    public long getHeapUsed() {
+      return heapUsed;
+    }
+
+    public long getHeapMax() {
+      return heapMax;
+    }
+
+    /** Memory used outside the heap: JVM non-heap memory, direct buffers and mapped files. */
+    public long getOffHeapUsed() {
+      return offHeapUsed;
+    }
+
+    /** The fraction of buffer.memory in use in the fullest producer, or -1 if unknown. */
+    public double getBufferFill() {
+      return bufferFill;
+    }
+
+    /** Whether a thread that sends records, a Kafka I/O thread or the whole host is saturated. */
+    public boolean isCpuBound() {
+      return senderBusiest >= CPU_BOUND_THREAD
+          || ioBusiest >= CPU_BOUND_THREAD
+          || processCpu >= CPU_BOUND_PROCESS;
+    }
+
+    public boolean isGcBound() {
+      return getGcPauseFraction() >= GC_BOUND;
+    }
+  }
+
+  /** The counters read at one point in time. */
+  private static class Readings {
+    final long nanos = System.nanoTime();
+    final Map<Long, long[]> senders = new HashMap<>();
+    final Map<Long, long[]> io = new HashMap<>();
+    long processCpuNanos = -1;
+    long gcPauses;
+    long gcPauseNanos;
+  }
+
+  private final LoadEngine engine;
+  private final boolean cpuSupported;
+  private final AtomicLong gcPauses = new AtomicLong();
+  private final AtomicLong gcPauseNanos = new AtomicLong();
+  private final AtomicLong gcMaxPauseNanos = new AtomicLong();
+  private final AtomicLong runMaxPauseNanos = new AtomicLong();
+  private final List<NotificationEmitter> emitters = new ArrayList<>();
+  private final NotificationListener gcListener = this::onGc;
+  private Readings first;
+  private Readings previous;
+  private Readings timerPrevious;
+  private int samples;
+  private final Usage peak = new Usage();
+  private Thread sampler;
+
+  public ResourceMonitor(LoadEngine engine) {
+    this.engine = engine;
+    this.cpuSupported = enableCpuTime();
+  }
+
+  private static boolean enableCpuTime() {
+    try {
+      if (THREADS.isThreadCpuTimeSupported()) {
+        if (!THREADS.isThreadCpuTimeEnabled()) {
+          THREADS.setThreadCpuTimeEnabled(true);
+        }
+        return true;
+      }
+    } catch (UnsupportedOperationException | SecurityException e) {
+      // fall through and report CPU time as unsupported
+    }
+    return false;
+  }
+
+  /**
+   * Starts counting garbage collection pauses and takes the readings the first sample starts from.
+   */
+  public void start() {
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (collector instanceof NotificationEmitter) {
+        NotificationEmitter emitter = (NotificationEmitter) collector;
+        emitter.addNotificationListener(gcListener, null, null);
+        emitters.add(emitter);
+      }
+    }
+    first = read();
+    previous = first;
+    timerPrevious = first;
+  }
+
+  /**
+   * Samples on a thread of its own at a fixed interval until {@link #close()}. These samples only
+   * count towards the figures of the whole run, so they do not change the intervals that {@link
+   * #sample()} measures.
+   */
+  public void sampleEvery(long interval, TimeUnit unit) {
+    long intervalNanos = unit.toNanos(interval);
+    sampler =
+        new Thread(
+            () -> {
+              long next = System.nanoTime() + intervalNanos;
+              while (!Thread.currentThread().isInterrupted()) {
+                long remaining;
+                while ((remaining = next - System.nanoTime()) > 0
+                    && !Thread.currentThread().isInterrupted()) {
+                  LockSupport.parkNanos(remaining);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                  break;
+                }
+                next += intervalNanos;
+                sampleForRun();
+              }
+            },
+            "resource-sampler");
+    sampler.setDaemon(true);
+    sampler.start();
+  }
+
+  /** Stops sampling and counting garbage collection pauses. */
+  public void close() {
+    if (sampler != null) {
+      sampler.interrupt();
+      try {
+        sampler.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      sampler = null;
+    }
+    for (NotificationEmitter emitter : emitters) {
+      try {
+        emitter.removeNotificationListener(gcListener);
+      } catch (Exception e) {
+        // already removed
+      }
+    }
+    emitters.clear();
+  }
+
+  /**
+   * Counts a collection that stopped the application. Concurrent cycles, which run alongside the
+   * application, are left out.
+   */
+  private void onGc(Notification notification, Object handback) {
+    if (!GC_NOTIFICATION.equals(notification.getType())) {
+      return;
+    }
+    CompositeData info = (CompositeData) notification.getUserData();
+    String action = String.valueOf(info.get("gcAction")).toLowerCase(Locale.ROOT);
+    String name = String.valueOf(info.get("gcName")).toLowerCase(Locale.ROOT);
+    if (action.contains("concurrent") || name.contains("concurrent") || name.contains("cycles")) {
+      return;
+    }
+    CompositeData gcInfo = (CompositeData) info.get("gcInfo");
+    long pauseNanos = ((Number) gcInfo.get("duration")).longValue() * 1_000_000L;
+    gcPauses.incrementAndGet();
+    gcPauseNanos.addAndGet(pauseNanos);
+    gcMaxPauseNanos.accumulateAndGet(pauseNanos, Math::max);
+    runMaxPauseNanos.accumulateAndGet(pauseNanos, Math::max);
+  }
+
+  /** Returns what was used since the previous sample, or since {@link #start()}. */
+  public synchronized Usage sample() {
+    Readings current = read();
+    Usage usage = usage(previous, current, gcMaxPauseNanos.getAndSet(0));
+    previous = current;
+    track(usage);
+    return usage;
+  }
+
+  private synchronized void sampleForRun() {
+    Readings current = read();
+    track(usage(timerPrevious, current, 0));
+    timerPrevious = current;
+  }
+
+  /** Keeps the highest figures of any sample for the whole run. */
+  private void track(Usage usage) {
+    samples++;
+    peak.senderBusiest = Math.max(peak.senderBusiest, usage.senderBusiest);
+    peak.senderCores = Math.max(peak.senderCores, usage.senderCores);
+    peak.ioBusiest = Math.max(peak.ioBusiest, usage.ioBusiest);
+    peak.ioCores = Math.max(peak.ioCores, usage.ioCores);
+    peak.senderAllocationMegabytesPerSecond =
+        Math.max(peak.senderAllocationMegabytesPerSecond, usage.senderAllocationMegabytesPerSecond);
+    peak.ioAllocationMegabytesPerSecond =
+        Math.max(peak.ioAllocationMegabytesPerSecond, usage.ioAllocationMegabytesPerSecond);
+    peak.processCpu = Math.max(peak.processCpu, usage.processCpu);
+    peak.heapUsed = Math.max(peak.heapUsed, usage.heapUsed);
+    peak.heapMax = usage.heapMax;
+    peak.offHeapUsed = Math.max(peak.offHeapUsed, usage.offHeapUsed);
+    peak.bufferFill = Math.max(peak.bufferFill, usage.bufferFill);
+  }
+
+  /**
+   * Returns what was used over the whole run: the highest CPU, allocation, memory and buffer fill
+   * of any sample, and every garbage collection pause since {@link #start()}. Threads can only be
+   * measured while they are alive, so the CPU and allocation of the threads that send records are
+   * only known from samples taken during the run.
+   */
+  public synchronized Usage summarize() {
+    if (samples == 0) {
+      sample();
+    }
+    Usage usage = peak;
+    Readings last = read();
+    usage.elapsedMs = (last.nanos - first.nanos) / 1e6;
+    usage.gcPauses = last.gcPauses - first.gcPauses;
+    usage.gcPauseMs = (last.gcPauseNanos - first.gcPauseNanos) / 1e6;
+    usage.gcMaxPauseMs = runMaxPauseNanos.get() / 1e6;
+    return usage;
+  }
+
+  private Readings read() {
+    Readings readings = new Readings();
+    if (cpuSupported) {
+      ThreadInfo[] infos = THREADS.getThreadInfo(THREADS.getAllThreadIds());
+      for (ThreadInfo info : infos) {
+        if (info == null) {
+          continue;
+        }
+        Map<Long, long[]> kind =
+            SENDER_THREAD.matcher(info.getThreadName()).matches()
+                ? readings.senders
+                : info.getThreadName().startsWith(IO_THREAD_PREFIX) ? readings.io : null;
+        if (kind != null) {
+          long id = info.getThreadId();
+          long cpu = THREADS.getThreadCpuTime(id);
+          if (cpu >= 0 && kind == readings.senders) {
+            // time spun waiting for the rate limiter is CPU time, but not work
+            cpu = Math.max(0, cpu - RateLimiter.spunNanos(id));
+          }
+          kind.put(id, new long[] {cpu, JvmResources.threadAllocatedBytes(id)});
+        }
+      }
+    }
+    if (SYSTEM instanceof com.sun.management.OperatingSystemMXBean) {
+      long processCpuNanos =
+          ((com.sun.management.OperatingSystemMXBean) SYSTEM).getProcessCpuTime();
+      readings.processCpuNanos =
+          processCpuNanos < 0 ? -1 : Math.max(0, processCpuNanos - RateLimiter.spunNanos());
+    }
+    readings.gcPauses = gcPauses.get();
+    readings.gcPauseNanos = gcPauseNanos.get();
+    return readings;
+  }
+
+  private Usage usage(Readings earlier, Readings later, long maxPauseNanos) {
+    Usage usage = new Usage();
+    double elapsedNanos = Math.max(later.nanos - earlier.nanos, 1L);
+    if (cpuSupported) {
+      double[] senders = threadUsage(earlier.senders, later.senders, elapsedNanos);
+      usage.senderBusiest = senders[0];
+      usage.senderCores = senders[1];
+      usage.senderAllocationMegabytesPerSecond = senders[2];
+      double[] io = threadUsage(earlier.io, later.io, elapsedNanos);
+      usage.ioBusiest = io[0];
+      usage.ioCores = io[1];
+      usage.ioAllocationMegabytesPerSecond = io[2];
+    }
+    if (later.processCpuNanos >= 0 && earlier.processCpuNanos >= 0) {
+      usage.processCpu =
+          Math.max(0, later.processCpuNanos - earlier.processCpuNanos)
+              / elapsedNanos
+              / SYSTEM.getAvailableProcessors();
+    }
+    usage.elapsedMs = elapsedNanos / 1e6;
+    usage.gcPauses = later.gcPauses - earlier.gcPauses;
+    usage.gcPauseMs = (later.gcPauseNanos - earlier.gcPauseNanos) / 1e6;
+    usage.gcMaxPauseMs = maxPauseNanos / 1e6;
+    usage.heapUsed = MEMORY.getHeapMemoryUsage().getUsed();
+    usage.heapMax = MEMORY.getHeapMemoryUsage().getMax();
+    long offHeap = MEMORY.getNonHeapMemoryUsage().getUsed();
+    for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      offHeap += Math.max(0, pool.getMemoryUsed());
+    }
+    usage.offHeapUsed = offHeap;
+    usage.bufferFill = bufferFill();
+    return usage;
+  }
+
+  /**
+   * The busiest thread's fraction of a core, the cores used in total and the allocation rate in
+   * MB/sec of a kind of thread. Threads that started during the interval count from their start.
+   */
+  private static double[] threadUsage(
+      Map<Long, long[]> earlier, Map<Long, long[]> later, double elapsedNanos) {
+    double busiest = 0;
+    double cpuNanos = 0;
+    double allocatedBytes = 0;
+    for (Map.Entry<Long, long[]> entry : later.entrySet()) {
+      long[] before = earlier.getOrDefault(entry.getKey(), new long[] {0, 0});
+      long[] after = entry.getValue();
+      if (after[0] >= 0) {
+        double cpu = Math.max(0, after[0] - Math.max(0, before[0]));
+        busiest = Math.max(busiest, cpu / elapsedNanos);
+        cpuNanos += cpu;
+      }
+      if (after[1] >= 0) {
+        allocatedBytes += after[1] - Math.max(0, before[1]);
+      }
+    }
+    return new double[] {
+      busiest, cpuNanos / elapsedNanos, allocatedBytes / (1024.0 * 1024.0) / (elapsedNanos / 1e9)
+    };
+  }
+
+  /** The fill level of buffer.memory in the fullest producer, from the producers' own metrics. */
+  private double bufferFill() {
+    double fullest = -1;
+    for (org.apache.kafka.clients.producer.Producer<byte[], byte[]> kafkaProducer :
+        engine.getKafkaProducers()) {
+      double total = -1;
+      double available = -1;
+      for (Map.Entry<MetricName, ? extends Metric> entry : kafkaProducer.metrics().entrySet()) {
+        MetricName name = entry.getKey();
+        Object value = entry.getValue().metricValue();
+        if ("producer-metrics".equals(name.group()) && value instanceof Number) {
+          if ("buffer-total-bytes".equals(name.name())) {
+            total = ((Number) value).doubleValue();
+          } else if ("buffer-available-bytes".equals(name.name())) {
+            available = ((Number) value).doubleValue();
+          }
+        }
+      }
+      if (total > 0 && available >= 0) {
+        fullest = Math.max(fullest, 1 - available / total);
+      }
+    }
+    return fullest;
+  }
+}
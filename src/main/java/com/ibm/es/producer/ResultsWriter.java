@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes the results of a run for --results-json and --results-csv: a summary of the whole run and,
+ * when interval reports are on, the statistics of every interval. The JSON file also echoes the
+ * configuration of the run so that it can be used as a --baseline later.
+ */
+public class ResultsWriter implements IntervalReporter.Listener {
+
+  private static final String[] CSV_COLUMNS = {
+    "type",
+    "elapsed_seconds",
+    "records",
+    "records_per_second",
+    "mb_per_second",
+    "latency_p50_ms",
+    "latency_p99_ms",
+    "latency_p999_ms",
+    "corrected_latency_p99_ms",
+    "errors",
+    "in_flight"
+  };
+
+  private final List<ProducerStats.Snapshot[]> intervals = new ArrayList<>();
+
+  @Override
+  public synchronized void onInterval(
+      ProducerStats.Snapshot interval, ProducerStats.Snapshot total) {
+    intervals.add(new ProducerStats.Snapshot[] {interval, total});
+  }
+
+  /** The figures of a run that are written to the results and compared against a baseline. */
+  static Map<String, Object> summarize(ProducerStats.Snapshot snapshot) {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("records", snapshot.getAcked());
+    summary.put("errors", snapshot.getErrors());
+    summary.put("bytes", snapshot.getAckedBytes());
+    summary.put("elapsedSeconds", snapshot.getElapsedSeconds());
+    summary.put("recordsPerSecond", snapshot.getRecordsPerSecond());
+    summary.put("megabytesPerSecond", snapshot.getMegabytesPerSecond());
+    Map<String, Object> latency = percentiles(snapshot, false);
+    latency.put("avg", snapshot.getAverageLatencyMs());
+    latency.put("max", snapshot.getMaxLatencyMs());
+    summary.put("latencyMs", latency);
+    summary.put("correctedLatencyMs", percentiles(snapshot, true));
+    if (snapshot.getConsumed() > 0) {
+      summary.put("consumed", snapshot.getConsumed());
+      summary.put("endToEndLatencyMs", percentiles(snapshot.getEndToEndLatencies()));
+    }
+    if (snapshot.getCommits() > 0 || snapshot.getAborts() > 0) {
+      summary.put("commits", snapshot.getCommits());
+      summary.put("aborts", snapshot.getAborts());
+      summary.put("commitLatencyMs", percentiles(snapshot.getCommitLatencies()));
+    }
+    return summary;
+  }
+
+  private static Map<String, Object> percentiles(
+      ProducerStats.Snapshot snapshot, boolean corrected) {
+    Map<String, Object> percentiles = new LinkedHashMap<>();
+    double[] points = {50, 95, 99, 99.9};
+    String[] names = {"p50", "p95", "p99", "p99.9"};
+    for (int i = 0; i < points.length; i++) {
+      percentiles.put(
+          names[i],
+          corrected
+              ? snapshot.getCorrectedLatencyPercentileMs(points[i])
+              : snapshot.getLatencyPercentileMs(points[i]));
+    }
+    return percentiles;
+  }
+
+  private static Map<String, Object> percentiles(LatencyHistogram.Snapshot latencies) {
+    Map<String, Object> percentiles = new LinkedHashMap<>();
+    double[] points = {50, 95, 99, 99.9};
+    String[] names = {"p50", "p95", "p99", "p99.9"};
+    for (int i = 0; i < points.length; i++) {
+      percentiles.put(names[i], latencies.getPercentileMs(points[i]));
+    }
+    return percentiles;
+  }
+
+  /** Writes the configuration, summary and intervals of the run as JSON. */
+  public synchronized void writeJson(
+      String path, Map<String, Object> configuration, ProducerStats.Snapshot total)
+      throws IOException {
+    Map<String, Object> results = new LinkedHashMap<>();
+    results.put("configuration", configuration);
+    results.put("summary", summarize(total));
+    List<Object> series = new ArrayList<>();
+    for (ProducerStats.Snapshot[] interval : intervals) {
+      Map<String, Object> row = new LinkedHashMap<>();
+      row.put("elapsedSeconds", interval[1].getElapsedSeconds());
+      row.put("records", interval[0].getAcked());
+      row.put("recordsPerSecond", interval[0].getRecordsPerSecond());
+      row.put("megabytesPerSecond", interval[0].getMegabytesPerSecond());
+      row.put("latencyMs", percentiles(interval[0], false));
+      row.put("correctedLatencyMs", percentiles(interval[0], true));
+      if (interval[0].getConsumed() > 0) {
+        row.put("endToEndLatencyMs", percentiles(interval[0].getEndToEndLatencies()));
+      }
+      row.put("errors", interval[0].getErrors());
+      row.put("inFlight", interval[1].getInFlight());
+      series.add(row);
+    }
+    results.put("intervals", series);
+    Files.write(Paths.get(path), Json.write(results).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Writes one CSV row for each interval, with a type of "interval", followed by a row for the
+   * whole run with a type of "total".
+   */
+  public synchronized void writeCsv(String path, ProducerStats.Snapshot total) throws IOException {
+    try (PrintWriter out =
+        new PrintWriter(Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8))) {
+      out.println(String.join(",", CSV_COLUMNS));
+      for (ProducerStats.Snapshot[] interval : intervals) {
+        writeCsvRow(out, "interval", interval[0], interval[1]);
+      }
+      writeCsvRow(out, "total", total, total);
+    }
+  }
+
+  private static void writeCsvRow(
+      PrintWriter out,
+      String type,
+      ProducerStats.Snapshot snapshot,
+      ProducerStats.Snapshot cumulative) {
+    out.println(
+        String.format(
+            Locale.ROOT,
+            "%s,%.3f,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%d",
+            type,
+            cumulative.getElapsedSeconds(),
+            snapshot.getAcked(),
+            snapshot.getRecordsPerSecond(),
+            snapshot.getMegabytesPerSecond(),
+            snapshot.getLatencyPercentileMs(50),
+            snapshot.getLatencyPercentileMs(99),
+            snapshot.getLatencyPercentileMs(99.9),
+            snapshot.getCorrectedLatencyPercentileMs(99),
+            snapshot.getErrors(),
+            cumulative.getInFlight()));
+  }
+}
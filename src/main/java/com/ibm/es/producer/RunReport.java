@@ -0,0 +1,300 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * Prints the progress and the summary of a run: a line for each interval, the slowest partitions
+ * and brokers, what the tool itself used and the results of the whole run.
+ */
+public final class RunReport {
+
+  private static ResourceBundle producerTranslations =
+      ResourceBundle.getBundle("MessageBundle", Locale.getDefault());
+
+  private RunReport() {}
+
+  public static void printInterval(ProducerStats.Snapshot interval, ProducerStats.Snapshot total) {
+    System.out.println(
+        String.format(
+            producerTranslations.getString("producer.interval"),
+            interval.getAcked(),
+            interval.getRecordsPerSecond(),
+            interval.getMegabytesPerSecond(),
+            interval.getLatencyPercentileMs(50),
+            interval.getLatencyPercentileMs(99),
+            interval.getLatencyPercentileMs(99.9),
+            interval.getErrors(),
+            total.getInFlight()));
+    if (interval.getConsumed() > 0) {
+      System.out.println(
+          String.format(
+              producerTranslations.getString("producer.interval.endToEnd"),
+              interval.getConsumed(),
+              interval.getEndToEndLatencyPercentileMs(50),
+              interval.getEndToEndLatencyPercentileMs(99),
+              interval.getEndToEndLatencyPercentileMs(99.9)));
+    }
+    Transactions.printInterval(interval);
+  }
+
+  /**
+   * Prints the result of the whole run: throughput, latency, and whatever else the run measured.
+   * The resources used by the tool are printed when a summary of them is given.
+   */
+  public static void printSummary(
+      Producer producer,
+      LoadEngine engine,
+      ProducerStats.Snapshot total,
+      ResourceMonitor.Usage resources) {
+    if (engine.getWarmUp() != null) {
+      printWarmUp(engine.getWarmUp());
+    }
+    System.out.println(
+        String.format(
+            producerTranslations.getString("producer.result"),
+            total.getAcked(),
+            total.getRecordsPerSecond(),
+            total.getMegabytesPerSecond(),
+            total.getAverageLatencyMs(),
+            total.getMaxLatencyMs(),
+            total.getErrors()));
+    System.out.println(
+        String.format(
+            producerTranslations.getString("producer.result.percentiles"),
+            total.getLatencyPercentileMs(50),
+            total.getLatencyPercentileMs(95),
+            total.getLatencyPercentileMs(99),
+            total.getLatencyPercentileMs(99.9)));
+    System.out.println(
+        String.format(
+            producerTranslations.getString("producer.result.correctedPercentiles"),
+            total.getCorrectedLatencyPercentileMs(50),
+            total.getCorrectedLatencyPercentileMs(95),
+            total.getCorrectedLatencyPercentileMs(99),
+            total.getCorrectedLatencyPercentileMs(99.9)));
+    if (producer.isEndToEnd()) {
+      System.out.println(
+          String.format(
+              producerTranslations.getString("producer.result.endToEnd"),
+              total.getEndToEndLatencyPercentileMs(50),
+              total.getEndToEndLatencyPercentileMs(95),
+              total.getEndToEndLatencyPercentileMs(99),
+              total.getEndToEndLatencyPercentileMs(99.9),
+              total.getConsumed()));
+    }
+    if (producer.getDeliveryMode() == DeliveryMode.TRANSACTIONAL) {
+      Transactions.printResult(total);
+    }
+    if (total.getSizeBucketsUsed() > 1) {
+      printSizeBuckets(total);
+    }
+    if (total.getAllocatedBytesPerRecord() >= 0) {
+      System.out.println(
+          String.format(
+              producerTranslations.getString("producer.result.allocation"),
+              total.getAllocatedBytesPerRecord(),
+              total.getAllocationMegabytesPerSecond()));
+    }
+    if (engine.getPartitionStats() != null) {
+      printPartitionBreakdown(engine.getPartitionStats().snapshot(), producer.getBreakdownTop());
+    }
+    if (resources != null) {
+      printResources(resources, "producer.result.resources");
+      printResourceWarnings(resources);
+    }
+    if (engine.getClientCount() > 0) {
+      System.out.println(
+          String.format(
+              producerTranslations.getString("producer.result.clients"),
+              engine.getClientCount(),
+              producer.getNumThreads(),
+              engine.getConnectionCount()));
+      if (engine.getHeapPerClientBytes() >= 0) {
+        System.out.println(
+            String.format(
+                producerTranslations.getString("producer.result.clientHeap"),
+                engine.getHeapPerClientBytes() / 1024.0));
+      }
+    }
+  }
+
+  /** Prints the slowest partitions and brokers of each interval. */
+  public static IntervalReporter.Listener partitionBreakdownReporter(LoadEngine engine, int top) {
+    return new IntervalReporter.Listener() {
+      private PartitionStats.Snapshot previous = engine.getPartitionStats().snapshot();
+
+      @Override
+      public void onInterval(ProducerStats.Snapshot interval, ProducerStats.Snapshot total) {
+        engine.refreshLeaders();
+        PartitionStats.Snapshot current = engine.getPartitionStats().snapshot();
+        printPartitionBreakdown(current.since(previous), top);
+        previous = current;
+      }
+    };
+  }
+
+  private static void printPartitionBreakdown(PartitionStats.Snapshot snapshot, int top) {
+    System.out.println(producerTranslations.getString("producer.breakdown.partitions"));
+    for (PartitionStats.Group partition : snapshot.getSlowestPartitions(top)) {
+      System.out.println(
+          String.format(
+              producerTranslations.getString("producer.breakdown.partition"),
+              partition.getId(),
+              describeBroker(partition.getLeader()),
+              partition.getAcked(),
+              partition.getAcked() / snapshot.getElapsedSeconds(),
+              partition.getLatencyPercentileMs(50),
+              partition.getLatencyPercentileMs(99),
+              partition.getErrors()));
+    }
+    System.out.println(producerTranslations.getString("producer.breakdown.brokers"));
+    for (PartitionStats.Group broker : snapshot.getSlowestBrokers(top)) {
+      System.out.println(
+          String.format(
+              producerTranslations.getString("producer.breakdown.broker"),
+              describeBroker(broker.getId()),
+              broker.getAcked(),
+              broker.getAcked() / snapshot.getElapsedSeconds(),
+              broker.getLatencyPercentileMs(50),
+              broker.getLatencyPercentileMs(99),
+              broker.getErrors()));
+    }
+  }
+
+  private static String describeBroker(int id) {
+    return id == PartitionStats.UNKNOWN_BROKER
+        ? producerTranslations.getString("producer.breakdown.unknownBroker")
+        : String.valueOf(id);
+  }
+
+  /**
+   * Samples what the tool used at each interval, printing it if asked to and warning whenever the
+   * tool itself, rather than the brokers, is what limits the throughput.
+   */
+  public static IntervalReporter.Listener resourceReporter(
+      ResourceMonitor resources, boolean print) {
+    return (interval, total) -> {
+      ResourceMonitor.Usage usage = resources.sample();
+      if (print) {
+        printResources(usage, "producer.interval.resources");
+      }
+      printResourceWarnings(usage);
+    };
+  }
+
+  private static void printResources(ResourceMonitor.Usage usage, String key) {
+    StringBuilder line = new StringBuilder();
+    if (usage.getSenderBusiest() >= 0) {
+      line.append(
+          String.format(
+              producerTranslations.getString(key + ".cpu"),
+              usage.getSenderBusiest() * 100,
+              usage.getSenderCores(),
+              usage.getSenderAllocationMegabytesPerSecond(),
+              usage.getIoBusiest() * 100,
+              usage.getIoCores(),
+              usage.getIoAllocationMegabytesPerSecond()));
+    }
+    if (usage.getProcessCpu() >= 0) {
+      line.append(
+          String.format(
+              producerTranslations.getString("producer.resources.process"),
+              usage.getProcessCpu() * 100,
+              Runtime.getRuntime().availableProcessors()));
+    }
+    line.append(
+        String.format(
+            producerTranslations.getString("producer.resources.memory"),
+            usage.getGcPauses(),
+            usage.getGcPauseMs(),
+            usage.getGcMaxPauseMs(),
+            usage.getHeapUsed() / (1024.0 * 1024.0),
+            usage.getHeapMax() / (1024.0 * 1024.0),
+            usage.getOffHeapUsed() / (1024.0 * 1024.0)));
+    if (usage.getBufferFill() >= 0) {
+      line.append(
+          String.format(
+              producerTranslations.getString("producer.resources.buffer"),
+              usage.getBufferFill() * 100));
+    }
+    System.out.println(String.format(producerTranslations.getString(key), line));
+  }
+
+  private static void printResourceWarnings(ResourceMonitor.Usage usage) {
+    if (usage.isCpuBound()) {
+      System.out.println(
+          String.format(
+              producerTranslations.getString("producer.resources.cpuBound"),
+              usage.getSenderBusiest() * 100,
+              usage.getIoBusiest() * 100,
+              usage.getProcessCpu() * 100));
+    }
+    if (usage.isGcBound()) {
+      System.out.println(
+          String.format(
+              producerTranslations.getString("producer.resources.gcBound"),
+              usage.getGcPauseFraction() * 100));
+    }
+  }
+
+  /** Describes how long a warm-up lasts, such as "10 seconds or 5000 records". */
+  public static String describeWarmUp(long nanos, long records) {
+    String duration =
+        String.format(producerTranslations.getString("producer.warmUp.seconds"), nanos / 1e9);
+    String count =
+        String.format(producerTranslations.getString("producer.warmUp.records"), records);
+    if (nanos > 0 && records > 0) {
+      return String.format(
+          producerTranslations.getString("producer.warmUp.either"), duration, count);
+    }
+    return nanos > 0 ? duration : count;
+  }
+
+  private static void printWarmUp(WarmUp warmUp) {
+    ProducerStats.Snapshot stats = warmUp.getStats();
+    System.out.println(
+        String.format(
+            producerTranslations.getString("producer.result.warmUp"),
+            warmUp.getProducers(),
+            warmUp.getPartitions(),
+            warmUp.getMetadataMs(),
+            stats.getTimeToFirstAckMs(),
+            stats.getAcked(),
+            stats.getElapsedSeconds(),
+            stats.getLatencyPercentileMs(99)));
+  }
+
+  private static void printSizeBuckets(ProducerStats.Snapshot total) {
+    System.out.println(producerTranslations.getString("producer.result.sizeBuckets"));
+    for (int bucket = 0; bucket < ProducerStats.SIZE_BUCKETS; bucket++) {
+      if (total.getSizeBucketAcked(bucket) > 0) {
+        System.out.println(
+            String.format(
+                producerTranslations.getString("producer.result.sizeBucket"),
+                ProducerStats.Snapshot.getSizeBucketMinBytes(bucket),
+                ProducerStats.Snapshot.getSizeBucketMaxBytes(bucket),
+                total.getSizeBucketAcked(bucket),
+                total.getSizeBucketRecordsPerSecond(bucket),
+                total.getSizeBucketMegabytesPerSecond(bucket),
+                total.getSizeBucketLatencyPercentileMs(bucket, 50),
+                total.getSizeBucketLatencyPercentileMs(bucket, 99)));
+      }
+    }
+  }
+}
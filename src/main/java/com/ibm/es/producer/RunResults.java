@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the results of a run for --results-json and --results-csv, and compares the run against
+ * --baseline.
+ */
+public final class RunResults {
+
+  private static Logger logger = LoggerFactory.getLogger(RunResults.class);
+  private static ResourceBundle producerTranslations =
+      ResourceBundle.getBundle("MessageBundle", Locale.getDefault());
+
+  // exit code when the run regressed against --baseline
+  private static final int REGRESSION_EXIT_CODE = 2;
+
+  private RunResults() {}
+
+  /** Writes the results files that were asked for, logging rather than failing the run on error. */
+  public static void write(
+      Producer producer, ResultsWriter results, LoadEngine engine, ProducerStats.Snapshot total) {
+    try {
+      if (producer.getResultsJsonPath() != null) {
+        results.writeJson(
+            producer.getResultsJsonPath(),
+            producer.describe(engine.getProducerProperties()),
+            total);
+      }
+      if (producer.getResultsCsvPath() != null) {
+        results.writeCsv(producer.getResultsCsvPath(), total);
+      }
+    } catch (IOException exception) {
+      System.err.println(producerTranslations.getString("producer.resultsFail"));
+      logger.error(producerTranslations.getString("producer.resultsFail"), exception);
+    }
+  }
+
+  /**
+   * Prints how the run compares against --baseline and returns the exit code, which is non-zero if
+   * the run regressed.
+   */
+  public static int compareWithBaseline(Producer producer, ProducerStats.Snapshot total) {
+    String baselinePath = producer.getBaselinePath();
+    double regressionThreshold = producer.getRegressionThreshold();
+    BaselineComparison comparison;
+    try {
+      comparison = BaselineComparison.compare(baselinePath, total, regressionThreshold);
+    } catch (IOException | IllegalArgumentException exception) {
+      System.err.println(producerTranslations.getString("producer.baselineFail"));
+      logger.error(producerTranslations.getString("producer.baselineFail"), exception);
+      return 1;
+    }
+    for (BaselineComparison.Check check : comparison.getChecks()) {
+      System.out.println(
+          String.format(
+              producerTranslations.getString("producer.baseline.check"),
+              check.getName(),
+              check.getBaseline(),
+              check.getCurrent(),
+              check.getChangePercent(),
+              producerTranslations.getString(
+                  check.isRegressed() ? "producer.baseline.regressed" : "producer.baseline.ok")));
+    }
+    if (comparison.isRegression()) {
+      System.out.println(
+          String.format(
+              producerTranslations.getString("producer.baseline.regression"),
+              regressionThreshold,
+              baselinePath));
+      return REGRESSION_EXIT_CODE;
+    }
+    return 0;
+  }
+}
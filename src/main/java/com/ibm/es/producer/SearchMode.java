@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs --search on a running engine: probes it at different rates and prints each probe, the curve
+ * of throughput against latency that was measured and the highest rate that met the objective.
+ */
+public final class SearchMode {
+
+  private static ResourceBundle producerTranslations =
+      ResourceBundle.getBundle("MessageBundle", Locale.getDefault());
+
+  private SearchMode() {}
+
+  /** Searches for the highest rate the engine sustains and prints what was found. */
+  public static void run(Producer producer, LoadEngine engine) throws InterruptedException {
+    double sloPercentile = producer.getSloPercentile();
+    double sloMs = producer.getSloMs();
+    ThroughputSearch search =
+        new ThroughputSearch(
+            producer.getSearchStrategy(), producer.getSearchStart(), producer.getSearchMaxProbes());
+    search.run(
+        ThroughputSearch.engineProber(
+            engine, producer.getProbeDurationNanos(), TimeUnit.NANOSECONDS, sloPercentile, sloMs),
+        probe -> System.out.println(formatProbe(probe, sloPercentile)));
+
+    System.out.println(producerTranslations.getString("producer.search.curve"));
+    for (ThroughputSearch.Probe probe : search.getCurve()) {
+      System.out.println(formatProbe(probe, sloPercentile));
+    }
+    if (search.getBestRate() > 0) {
+      System.out.println(
+          String.format(
+              producerTranslations.getString("producer.search.result"),
+              search.getBestRate(),
+              sloPercentile,
+              sloMs));
+    } else {
+      System.out.println(
+          String.format(
+              producerTranslations.getString("producer.search.noResult"), sloPercentile, sloMs));
+    }
+  }
+
+  private static String formatProbe(ThroughputSearch.Probe probe, double sloPercentile) {
+    return String.format(
+        producerTranslations.getString("producer.search.probe"),
+        probe.getTargetRate(),
+        probe.getAchievedRate(),
+        sloPercentile,
+        probe.getLatencyMs(),
+        probe.getErrors(),
+        producerTranslations.getString(
+            probe.isPassed() ? "producer.search.passed" : "producer.search.failed"));
+  }
+}
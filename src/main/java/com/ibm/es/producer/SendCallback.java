@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+/**
+ * Records the outcome of a single send into the owning thread's {@link ProducerStats}. Callbacks
+ * are reused through a {@link Pool} once their send has completed, so the send loop does not
+ * allocate a callback per record.
+ */
+class SendCallback implements Callback {
+
+  private final ProducerStats stats;
+  // null unless --partition-breakdown is set
+  private final PartitionStats partitionStats;
+
+  private long scheduledNanos;
+  private long sendStartNanos;
+  private int bytes;
+  private volatile boolean inFlight;
+
+  SendCallback(ProducerStats stats, PartitionStats partitionStats) {
+    this.stats = stats;
+    this.partitionStats = partitionStats;
+  }
+
+  /** Must be called by the producer thread before the callback is handed to send(). */
+  void prepare(long scheduledNanos, long sendStartNanos, int bytes) {
+    this.scheduledNanos = scheduledNanos;
+    this.sendStartNanos = sendStartNanos;
+    this.bytes = bytes;
+    this.inFlight = true;
+  }
+
+  @Override
+  public void onCompletion(RecordMetadata metadata, Exception exception) {
+    if (exception == null) {
+      long nowNanos = System.nanoTime();
+      stats.recordAck(nowNanos - sendStartNanos, nowNanos - scheduledNanos, bytes);
+      if (partitionStats != null) {
+        partitionStats.recordAck(metadata.partition(), (nowNanos - sendStartNanos) / 1000);
+      }
+    } else {
+      stats.recordError();
+      if (partitionStats != null && metadata != null && metadata.partition() >= 0) {
+        partitionStats.recordError(metadata.partition());
+      }
+    }
+    inFlight = false;
+  }
+
+  /**
+   * A fixed ring of callbacks owned by one producer thread. If the next callback in the ring is
+   * still waiting for its acknowledgement a new one is created instead of blocking the send loop.
+   */
+  static class Pool {
+    private final SendCallback[] callbacks;
+    private final ProducerStats stats;
+    private final PartitionStats partitionStats;
+    private int next;
+
+    Pool(ProducerStats stats, PartitionStats partitionStats, int size) {
+      this.stats = stats;
+      this.partitionStats = partitionStats;
+      this.callbacks = new SendCallback[Integer.highestOneBit(Math.max(size, 1) * 2 - 1)];
+      for (int i = 0; i < callbacks.length; i++) {
+        callbacks[i] = new SendCallback(stats, partitionStats);
+      }
+    }
+
+    SendCallback acquire() {
+      SendCallback callback = callbacks[next++ & (callbacks.length - 1)];
+      return callback.inFlight ? new SendCallback(stats, partitionStats) : callback;
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.kafka.clients.consumer.ConsumerGroupMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * A stand-in for a Kafka producer that sends nothing over the network, used by --dry-run. Each
+ * record is acknowledged after a configurable delay plus random jitter, or immediately on the
+ * sending thread when there is neither, so a run measures the tool's own overhead. Like a real
+ * producer, sends block while buffer.memory bytes are waiting to be acknowledged.
+ */
+public class SinkProducer implements org.apache.kafka.clients.producer.Producer<byte[], byte[]> {
+
+  private static final long DEFAULT_BUFFER_MEMORY = 32 * 1024 * 1024L;
+  private static final int OFFSET_SLOTS = 1024;
+
+  private final long delayNanos;
+  private final long jitterNanos;
+  private final int bufferMemory;
+  private final Semaphore buffer;
+  private final boolean delayed;
+  private final AtomicLongArray offsets = new AtomicLongArray(OFFSET_SLOTS);
+  private final SinkTopic sinkTopic;
+
+  public SinkProducer(Properties properties, long delayNanos, long jitterNanos) {
+    this(properties, delayNanos, jitterNanos, null);
+  }
+
+  /**
+   * Creates a sink producer that appends the records it acknowledges to the given topic, so that
+   * they can be consumed, or that discards them if the topic is null.
+   */
+  public SinkProducer(
+      Properties properties, long delayNanos, long jitterNanos, SinkTopic sinkTopic) {
+    this.delayNanos = delayNanos;
+    this.jitterNanos = jitterNanos;
+    this.sinkTopic = sinkTopic;
+    Object configured = properties.get(ProducerConfig.BUFFER_MEMORY_CONFIG);
+    long memory =
+        configured == null ? DEFAULT_BUFFER_MEMORY : Long.parseLong(configured.toString().trim());
+    this.bufferMemory = (int) Math.min(Integer.MAX_VALUE, Math.max(1, memory));
+    this.buffer = new Semaphore(bufferMemory);
+    this.delayed = delayNanos > 0 || jitterNanos > 0;
+  }
+
+  /**
+   * Delayed acknowledgements are scheduled on one thread shared by every sink, so that many sinks,
+   * as with --clients, do not each need a thread.
+   */
+  private static class Acknowledger {
+    static final ScheduledExecutorService INSTANCE =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "sink-acknowledger");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /** Creates sink producers that acknowledge after the given delay and jitter. */
+  public static ProducerFactory factory(long delayNanos, long jitterNanos) {
+    return properties -> new SinkProducer(properties, delayNanos, jitterNanos);
+  }
+
+  /** Creates sink producers that share a topic, which their records can be consumed from. */
+  public static ProducerFactory factory(long delayNanos, long jitterNanos, SinkTopic sinkTopic) {
+    return properties -> new SinkProducer(properties, delayNanos, jitterNanos, sinkTopic);
+  }
+
+  @Override
+  public Future<RecordMetadata> send(ProducerRecord<byte[], byte[]> record) {
+    return send(record, null);
+  }
+
+  @Override
+  public Future<RecordMetadata> send(ProducerRecord<byte[], byte[]> record, Callback callback) {
+    int keySize = record.key() == null ? -1 : record.key().length;
+    int valueSize = record.value() == null ? -1 : record.value().length;
+    // at least one permit for every record, so that flush() waits for empty records too
+    int bytes = Math.min(bufferMemory, Math.max(1, Math.max(0, keySize) + Math.max(0, valueSize)));
+    buffer.acquireUninterruptibly(bytes);
+
+    // the sink topic has a single partition, unless records are sent to others with --partitions
+    int partition = record.partition() == null ? 0 : record.partition();
+    TopicPartition topicPartition = new TopicPartition(record.topic(), partition);
+    long timestamp = record.timestamp() == null ? System.currentTimeMillis() : record.timestamp();
+    // the value is copied, as KafkaProducer copies it into a batch, because payload sources reuse
+    // their buffers once send() returns and the sink topic hands the record to the consumer later
+    ProducerRecord<byte[], byte[]> appended =
+        sinkTopic == null || record.value() == null
+            ? record
+            : new ProducerRecord<>(
+                record.topic(),
+                record.partition(),
+                record.timestamp(),
+                record.key(),
+                record.value().clone(),
+                record.headers());
+    CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+    Runnable acknowledge =
+        () -> {
+          // records reach the sink topic in the order they are acknowledged, as on a broker
+          long offset =
+              sinkTopic != null
+                  ? sinkTopic.append(appended, partition, timestamp)
+                  : offsets.getAndIncrement(partition % OFFSET_SLOTS);
+          RecordMetadata metadata =
+              new RecordMetadata(topicPartition, offset, 0, timestamp, null, keySize, valueSize);
+          buffer.release(bytes);
+          future.complete(metadata);
+          if (callback != null) {
+            callback.onCompletion(metadata, null);
+          }
+        };
+
+    if (delayed) {
+      long jitter = jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos) : 0;
+      Acknowledger.INSTANCE.schedule(acknowledge, delayNanos + jitter, TimeUnit.NANOSECONDS);
+    } else {
+      acknowledge.run();
+    }
+    return future;
+  }
+
+  /** Waits until every record sent so far has been acknowledged. */
+  @Override
+  public void flush() {
+    while (buffer.availablePermits() < bufferMemory) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+  }
+
+  @Override
+  public List<PartitionInfo> partitionsFor(String topic) {
+    return Collections.singletonList(new PartitionInfo(topic, 0, null, null, null));
+  }
+
+  @Override
+  public Map<MetricName, ? extends Metric> metrics() {
+    return Collections.emptyMap();
+  }
+
+  @Override
+  public void close() {
+    close(Duration.ofMillis(Long.MAX_VALUE));
+  }
+
+  @Override
+  public void close(Duration timeout) {
+    flush();
+  }
+
+  // the sink has no transaction coordinator, so transactions always succeed
+
+  @Override
+  public void initTransactions() {}
+
+  @Override
+  public void beginTransaction() {}
+
+  @Override
+  public void sendOffsetsToTransaction(
+      Map<TopicPartition, OffsetAndMetadata> offsets, String consumerGroupId) {}
+
+  @Override
+  public void sendOffsetsToTransaction(
+      Map<TopicPartition, OffsetAndMetadata> offsets, ConsumerGroupMetadata groupMetadata) {}
+
+  @Override
+  public void commitTransaction() {
+    flush();
+  }
+
+  @Override
+  public void abortTransaction() {}
+}
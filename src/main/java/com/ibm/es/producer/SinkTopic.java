@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+
+/**
+ * The topic that {@link SinkProducer}s write to when a dry run also measures --end-to-end latency,
+ * standing in for a broker. Acknowledged records are given the next offset of their partition and
+ * handed to the consumer created by {@link #newConsumer}, which holds them until they are polled.
+ */
+public class SinkTopic {
+
+  private final String topic;
+  private final long[] offsets;
+  private MockConsumer<byte[], byte[]> consumer;
+
+  public SinkTopic(String topic, int partitions) {
+    this.topic = topic;
+    this.offsets = new long[partitions];
+  }
+
+  /** Creates the consumer of the topic, replacing any earlier one. */
+  public synchronized org.apache.kafka.clients.consumer.Consumer<byte[], byte[]> newConsumer() {
+    MockConsumer<byte[], byte[]> created =
+        new MockConsumer<byte[], byte[]>(OffsetResetStrategy.LATEST) {
+          @Override
+          public void close() {
+            detach(this);
+            super.close();
+          }
+        };
+    List<PartitionInfo> partitions = new ArrayList<>();
+    Map<TopicPartition, Long> beginning = new HashMap<>();
+    Map<TopicPartition, Long> end = new HashMap<>();
+    for (int i = 0; i < offsets.length; i++) {
+      partitions.add(new PartitionInfo(topic, i, null, null, null));
+      beginning.put(new TopicPartition(topic, i), 0L);
+      end.put(new TopicPartition(topic, i), offsets[i]);
+    }
+    created.updatePartitions(topic, partitions);
+    created.updateBeginningOffsets(beginning);
+    created.updateEndOffsets(end);
+    consumer = created;
+    return created;
+  }
+
+  private synchronized void detach(MockConsumer<byte[], byte[]> closed) {
+    if (consumer == closed) {
+      consumer = null;
+    }
+  }
+
+  /** Appends an acknowledged record to its partition and returns its offset. */
+  synchronized long append(ProducerRecord<byte[], byte[]> record, int partition, long timestamp) {
+    long offset = offsets[partition]++;
+    if (consumer != null) {
+      consumer.addRecord(
+          new ConsumerRecord<>(
+              topic,
+              partition,
+              offset,
+              timestamp,
+              TimestampType.CREATE_TIME,
+              -1L,
+              record.key() == null ? -1 : record.key().length,
+              record.value() == null ? -1 : record.value().length,
+              record.key(),
+              record.value(),
+              record.headers()));
+    }
+    return offset;
+  }
+}
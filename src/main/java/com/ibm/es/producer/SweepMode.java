@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs --sweep: every combination of the sweep for --duration, each with new producers configured
+ * with the combination layered over the configuration file, and prints them ranked from best to
+ * worst.
+ */
+public final class SweepMode {
+
+  private static Logger logger = LoggerFactory.getLogger(SweepMode.class);
+  private static ResourceBundle producerTranslations =
+      ResourceBundle.getBundle("MessageBundle", Locale.getDefault());
+
+  private SweepMode() {}
+
+  /** Runs the combinations of the sweep and returns the exit code for the tool. */
+  public static int run(Producer producer, ConfigSweep sweep) {
+    List<Map<String, String>> combinations = sweep.combinations(producer.getSweepSamples(), 0L);
+    System.out.println(
+        String.format(
+            producerTranslations.getString("producer.sweep.start"),
+            combinations.size(),
+            sweep.getGridSize(),
+            producer.getDurationNanos() / 1e9));
+    List<ConfigSweep.Result> results = new ArrayList<>();
+    for (Map<String, String> combination : combinations) {
+      LoadEngine engine = producer.createEngine();
+      engine.overrideProperties(combination);
+      try {
+        engine.prepare();
+        engine.start();
+        engine.awaitCompletion();
+        ConfigSweep.Result result = new ConfigSweep.Result(combination, engine.aggregate());
+        results.add(result);
+        System.out.println(formatResult(result));
+      } catch (IOException exception) {
+        System.err.println(producerTranslations.getString("producer.startFail"));
+        logger.error(producerTranslations.getString("producer.startFail"), exception);
+        return 1;
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+        return 1;
+      } finally {
+        engine.close();
+      }
+    }
+
+    boolean rateLimited = producer.getLoadProfile() != null || producer.getThroughput() > 0;
+    System.out.println(
+        producerTranslations.getString(
+            rateLimited ? "producer.sweep.rankedByLatency" : "producer.sweep.rankedByThroughput"));
+    List<ConfigSweep.Result> ranked = ConfigSweep.rank(results, rateLimited);
+    for (int i = 0; i < ranked.size(); i++) {
+      System.out.println(String.format("%3d. %s", i + 1, formatResult(ranked.get(i))));
+    }
+    return 0;
+  }
+
+  private static String formatResult(ConfigSweep.Result result) {
+    ProducerStats.Snapshot total = result.getTotal();
+    return String.format(
+        producerTranslations.getString("producer.sweep.result"),
+        result,
+        total.getRecordsPerSecond(),
+        total.getMegabytesPerSecond(),
+        total.getLatencyPercentileMs(50),
+        total.getLatencyPercentileMs(99),
+        total.getErrors());
+  }
+}
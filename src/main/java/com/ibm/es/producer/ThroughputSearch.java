@@ -0,0 +1,180 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Searches for the highest rate that meets a latency objective, for --search. The search runs a
+ * series of short probes at different target rates. A probe passes if the chosen latency percentile
+ * stays within the objective, no records fail and the producers keep up with the target rate.
+ *
+ * <ul>
+ *   <li>{@code bisect} doubles the rate until a probe fails, then halves the gap between the
+ *       highest passing and lowest failing rates until they are within {@link #PRECISION}
+ *   <li>{@code aimd} adds a tenth of the starting rate after each passing probe and halves the rate
+ *       after each failing one, like TCP congestion control, and reports the best rate seen
+ * </ul>
+ */
+public class ThroughputSearch {
+
+  /** The search stops once the passing and failing rates are this close, as a fraction. */
+  static final double PRECISION = 0.05;
+  /** A probe fails if the achieved rate falls short of the target by more than this fraction. */
+  static final double SHORTFALL = 0.05;
+
+  private static final double AIMD_INCREASE = 0.1;
+  private static final double AIMD_DECREASE = 0.5;
+
+  public enum Strategy {
+    BISECT,
+    AIMD;
+
+    public static Strategy parse(String value) {
+      return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+  }
+
+  /** Runs one probe at a target rate. */
+  public interface Prober {
+    Probe probe(double targetRate) throws InterruptedException;
+  }
+
+  /** The outcome of one probe. */
+  public static class Probe {
+    private final double targetRate;
+    private final double achievedRate;
+    private final double latencyMs;
+    private final long errors;
+    private final boolean passed;
+
+    public Probe(
+        double targetRate, double achievedRate, double latencyMs, long errors, double sloMs) {
+      this.targetRate = targetRate;
+      this.achievedRate = achievedRate;
+      this.latencyMs = latencyMs;
+      this.errors = errors;
+      this.passed =
+          errors == 0 && latencyMs <= sloMs && achievedRate >= targetRate * (1 - SHORTFALL);
+    }
+
+    public double getTargetRate() {
+      return targetRate;
+    }
+
+    public double getAchievedRate() {
+      return achievedRate;
+    }
+
+    public double getLatencyMs() {
+      return latencyMs;
+    }
+
+    public long getErrors() {
+      return errors;
+    }
+
+    public boolean isPassed() {
+      return passed;
+    }
+  }
+
+  private final Strategy strategy;
+  private final double startRate;
+  private final int maxProbes;
+  private final List<Probe> probes = new ArrayList<>();
+
+  public ThroughputSearch(Strategy strategy, double startRate, int maxProbes) {
+    this.strategy = strategy;
+    this.startRate = startRate;
+    this.maxProbes = maxProbes;
+  }
+
+  /**
+   * Creates a prober that changes the rate of a running engine and measures each probe from a
+   * snapshot of every producer thread. The first fifth of each probe is left out of the
+   * measurement, so that records queued at the previous rate do not count against the new one.
+   * Latency is measured from the scheduled send time.
+   */
+  public static Prober engineProber(
+      LoadEngine engine, long probeDuration, TimeUnit unit, double percentile, double sloMs) {
+    long probeNanos = unit.toNanos(probeDuration);
+    return targetRate -> {
+      engine.getRateLimiter().setRate(targetRate);
+      TimeUnit.NANOSECONDS.sleep(probeNanos / 5);
+      ProducerStats.Snapshot start = engine.aggregate();
+      TimeUnit.NANOSECONDS.sleep(probeNanos - probeNanos / 5);
+      ProducerStats.Snapshot probe = engine.aggregate().since(start);
+      return new Probe(
+          targetRate,
+          probe.getRecordsPerSecond(),
+          probe.getCorrectedLatencyPercentileMs(percentile),
+          probe.getErrors(),
+          sloMs);
+    };
+  }
+
+  /** Runs the search, passing each probe to the listener as it completes. */
+  public void run(Prober prober, Consumer<Probe> listener) throws InterruptedException {
+    double rate = startRate;
+    double highestPassed = 0;
+    double lowestFailed = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < maxProbes && rate >= 1; i++) {
+      Probe probe = prober.probe(rate);
+      probes.add(probe);
+      listener.accept(probe);
+      if (probe.isPassed()) {
+        highestPassed = Math.max(highestPassed, rate);
+      } else {
+        lowestFailed = Math.min(lowestFailed, rate);
+      }
+
+      if (strategy == Strategy.AIMD) {
+        rate = probe.isPassed() ? rate + startRate * AIMD_INCREASE : rate * AIMD_DECREASE;
+      } else if (Double.isInfinite(lowestFailed)) {
+        rate = rate * 2;
+      } else if (lowestFailed - highestPassed <= lowestFailed * PRECISION) {
+        break;
+      } else {
+        rate = (highestPassed + lowestFailed) / 2;
+      }
+    }
+  }
+
+  /** The highest target rate that passed, or 0 if none did. */
+  public double getBestRate() {
+    double best = 0;
+    for (Probe probe : probes) {
+      if (probe.isPassed()) {
+        best = Math.max(best, probe.getTargetRate());
+      }
+    }
+    return best;
+  }
+
+  /** Every probe, in order of target rate, as the measured throughput-latency curve. */
+  public List<Probe> getCurve() {
+    List<Probe> curve = new ArrayList<>(probes);
+    Collections.sort(curve, Comparator.comparingDouble(Probe::getTargetRate));
+    return curve;
+  }
+}
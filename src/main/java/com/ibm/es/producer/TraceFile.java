@@ -0,0 +1,237 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+
+/**
+ * A captured stream of records for --trace-file, read from start to end without loading the file
+ * into memory, so traces can be far larger than the heap. Timestamps are milliseconds; only the
+ * differences between them matter. Two formats are supported:
+ *
+ * <ul>
+ *   <li>{@code json} - one JSON object per line, such as {@code {"timestamp": 1589364000123, "key":
+ *       "k1", "headers": {"source": "app"}, "value": "..."}}. The key, headers and value are
+ *       optional UTF-8 strings, and timestamps may have a fractional part.
+ *   <li>{@code binary} - for keys and values that are not text. Each record is an 8 byte timestamp,
+ *       the key, a 4 byte count of headers, each header as its name and its value, and then the
+ *       value. Keys, names and values are each a 4 byte length followed by that many bytes, with a
+ *       length of -1 for null. Every number is big-endian.
+ * </ul>
+ */
+public class TraceFile {
+
+  public enum Format {
+    JSON,
+    BINARY
+  }
+
+  private static final int BUFFER_SIZE = 1024 * 1024;
+  private static final Header[] NO_HEADERS = new Header[0];
+
+  /** One record of the trace. */
+  public static final class Record {
+    private final double timestampMs;
+    private final byte[] key;
+    private final Header[] headers;
+    private final byte[] value;
+
+    Record(double timestampMs, byte[] key, Header[] headers, byte[] value) {
+      this.timestampMs = timestampMs;
+      this.key = key;
+      this.headers = headers;
+      this.value = value;
+    }
+
+    public double getTimestampMs() {
+      return timestampMs;
+    }
+
+    public byte[] getKey() {
+      return key;
+    }
+
+    public Header[] getHeaders() {
+      return headers;
+    }
+
+    public byte[] getValue() {
+      return value;
+    }
+  }
+
+  /** Reads the records of a trace in order. */
+  public interface Reader extends Closeable {
+
+    /** Returns the next record, or null at the end of the trace. */
+    Record next() throws IOException;
+  }
+
+  private final Path path;
+  private final Format format;
+
+  private TraceFile(Path path, Format format) {
+    this.path = path;
+    this.format = format;
+  }
+
+  /** Checks that the trace can be read and has at least one record. */
+  public static TraceFile open(String path, Format format) throws IOException {
+    TraceFile trace = new TraceFile(Paths.get(path), format);
+    try (Reader reader = trace.newReader()) {
+      if (reader.next() == null) {
+        throw new IOException("No records found in " + path);
+      }
+    }
+    return trace;
+  }
+
+  /** Starts reading the trace from the beginning. */
+  public Reader newReader() throws IOException {
+    return format == Format.BINARY ? new BinaryReader() : new JsonReader();
+  }
+
+  private class JsonReader implements Reader {
+    private final BufferedReader in;
+    private long line;
+
+    JsonReader() throws IOException {
+      in =
+          new BufferedReader(
+              new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8),
+              BUFFER_SIZE);
+    }
+
+    @Override
+    public Record next() throws IOException {
+      String text;
+      do {
+        text = in.readLine();
+        line++;
+        if (text == null) {
+          return null;
+        }
+        text = text.trim();
+      } while (text.isEmpty());
+      try {
+        return parse(Json.parse(text));
+      } catch (IllegalArgumentException | ClassCastException e) {
+        throw new IOException("Invalid trace record on line " + line + " of " + path, e);
+      }
+    }
+
+    private Record parse(Object parsed) {
+      Map<?, ?> record = (Map<?, ?>) parsed;
+      Object timestamp = record.get("timestamp");
+      if (!(timestamp instanceof Number)) {
+        throw new IllegalArgumentException("Missing timestamp");
+      }
+      Header[] headers = NO_HEADERS;
+      Map<?, ?> headerMap = (Map<?, ?>) record.get("headers");
+      if (headerMap != null && !headerMap.isEmpty()) {
+        headers = new Header[headerMap.size()];
+        int i = 0;
+        for (Map.Entry<?, ?> header : headerMap.entrySet()) {
+          headers[i++] = new RecordHeader((String) header.getKey(), utf8(header.getValue()));
+        }
+      }
+      return new Record(
+          ((Number) timestamp).doubleValue(),
+          utf8(record.get("key")),
+          headers,
+          utf8(record.get("value")));
+    }
+
+    private byte[] utf8(Object value) {
+      return value == null ? null : ((String) value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  private class BinaryReader implements Reader {
+    private final DataInputStream in;
+    private long records;
+
+    BinaryReader() throws IOException {
+      in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+    }
+
+    @Override
+    public Record next() throws IOException {
+      long timestamp;
+      try {
+        timestamp = in.readLong();
+      } catch (EOFException end) {
+        return null;
+      }
+      try {
+        byte[] key = bytes();
+        int count = in.readInt();
+        if (count < 0) {
+          throw new IOException("Invalid header count " + count);
+        }
+        Header[] headers = count == 0 ? NO_HEADERS : new Header[count];
+        for (int i = 0; i < count; i++) {
+          byte[] name = bytes();
+          if (name == null) {
+            throw new IOException("Missing header name");
+          }
+          headers[i] = new RecordHeader(new String(name, StandardCharsets.UTF_8), bytes());
+        }
+        byte[] value = bytes();
+        records++;
+        return new Record(timestamp, key, headers, value);
+      } catch (IOException e) {
+        throw new IOException("Invalid trace record " + records + " in " + path, e);
+      }
+    }
+
+    private byte[] bytes() throws IOException {
+      int length = in.readInt();
+      if (length < -1) {
+        throw new IOException("Invalid length " + length);
+      }
+      if (length == -1) {
+        return null;
+      }
+      byte[] bytes = new byte[length];
+      in.readFully(bytes);
+      return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays a {@link TraceFile} for --trace-file. One thread reads the trace and hands each record to
+ * a sender thread chosen by its key, so every record with the same key is sent by the same thread
+ * in the order of the trace; records without a key take turns. Each sender waits until the time of
+ * its record, relative to the first record of the trace and scaled by --trace-speed, before sending
+ * it, and latency from the scheduled send time is measured from then.
+ *
+ * <p>The queues between the reader and the senders are bounded, so only a few thousand records are
+ * held in memory at once however large the trace is.
+ */
+public class TraceReplay {
+
+  private static Logger logger = LoggerFactory.getLogger(TraceReplay.class);
+
+  private static final int CALLBACK_POOL_SIZE = 4096;
+  private static final int QUEUE_CAPACITY = 1024;
+  private static final long OFFER_TIMEOUT_MILLIS = 10;
+  private static final TraceFile.Record END = new TraceFile.Record(0, null, null, null);
+
+  private final TraceFile trace;
+  private final double speed;
+  private final Workload workload;
+  private final Sender[] senders;
+  private final Thread reader;
+  private volatile long startNanos;
+  private volatile double firstTimestampMs;
+  private volatile long recordsRead;
+
+  /**
+   * Creates a sender thread for each entry of producers, which holds the producers that thread
+   * sends through. A speed of 0 sends every record as soon as it is read.
+   */
+  TraceReplay(
+      TraceFile trace,
+      List<org.apache.kafka.clients.producer.Producer<byte[], byte[]>[]> producers,
+      double speed,
+      Workload workload) {
+    this.trace = trace;
+    this.speed = speed;
+    this.workload = workload;
+    ThreadGroup group = new ThreadGroup("Replay");
+    this.senders = new Sender[producers.size()];
+    for (int i = 0; i < senders.length; i++) {
+      senders[i] = new Sender(group, String.format("replay%d", i), producers.get(i));
+    }
+    this.reader = new Thread(group, this::read, "trace-reader");
+    reader.setDaemon(true);
+  }
+
+  /** Starts the reader and the senders, with the first record of the trace due at startNanos. */
+  void start(long startNanos) {
+    this.startNanos = startNanos;
+    for (Sender sender : senders) {
+      sender.start();
+    }
+    reader.start();
+  }
+
+  /** Waits until every record has been sent and acknowledged, or the run has ended. */
+  void awaitCompletion() throws InterruptedException {
+    reader.join();
+    for (Sender sender : senders) {
+      sender.join();
+    }
+  }
+
+  void close() {
+    reader.interrupt();
+    for (Sender sender : senders) {
+      sender.interrupt();
+    }
+  }
+
+  /** Combines the statistics of every sender thread. */
+  ProducerStats.Snapshot aggregate() {
+    ProducerStats.Snapshot total = new ProducerStats.Snapshot();
+    for (Sender sender : senders) {
+      total.merge(sender.stats.snapshot());
+    }
+    return total;
+  }
+
+  /** The number of records read from the trace so far. */
+  long getRecordsRead() {
+    return recordsRead;
+  }
+
+  /** The time the record is due to be sent, or 0 to send it at once. */
+  private long dueNanos(TraceFile.Record record) {
+    if (speed == 0) {
+      return 0;
+    }
+    return startNanos + (long) ((record.getTimestampMs() - firstTimestampMs) * 1e6 / speed);
+  }
+
+  private static int hash(byte[] key) {
+    return Utils.toPositive(Utils.murmur2(key));
+  }
+
+  private void read() {
+    try (TraceFile.Reader in = trace.newReader()) {
+      long sequence = 0;
+      TraceFile.Record record;
+      while ((record = in.next()) != null && !Thread.currentThread().isInterrupted()) {
+        if (sequence == 0) {
+          firstTimestampMs = record.getTimestampMs();
+        }
+        if (workload.isPastEnd(Math.max(dueNanos(record), System.nanoTime()))) {
+          break;
+        }
+        int slot =
+            (int)
+                (record.getKey() == null
+                    ? sequence % senders.length
+                    : hash(record.getKey()) % senders.length);
+        if (!hand(senders[slot], record)) {
+          break;
+        }
+        sequence++;
+        recordsRead = sequence;
+      }
+    } catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+    } catch (Exception error) {
+      logger.error("Failed to read the trace", error);
+    } finally {
+      for (Sender sender : senders) {
+        try {
+          hand(sender, END);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  /**
+   * Queues a record for a sender, waiting while its queue is full. Returns false if the sender has
+   * stopped or the run has ended.
+   */
+  private boolean hand(Sender sender, TraceFile.Record record) throws InterruptedException {
+    while (!sender.queue.offer(record, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+      if (!sender.isAlive() || workload.isPastEnd(System.nanoTime())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private class Sender extends Thread {
+    private final org.apache.kafka.clients.producer.Producer<byte[], byte[]>[] kafkaProducers;
+    private final BlockingQueue<TraceFile.Record> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ProducerStats stats = new ProducerStats();
+
+    Sender(
+        ThreadGroup group,
+        String name,
+        org.apache.kafka.clients.producer.Producer<byte[], byte[]>[] kafkaProducers) {
+      super(group, name);
+      this.kafkaProducers = kafkaProducers;
+    }
+
+    @Override
+    public void run() {
+      String topic = workload.getTopic();
+      SendCallback.Pool callbacks =
+          new SendCallback.Pool(stats, workload.getPartitionStats(), CALLBACK_POOL_SIZE);
+      stats.start(System.nanoTime());
+      try {
+        long sequence = 0;
+        TraceFile.Record record;
+        while ((record = queue.take()) != END) {
+          long scheduledNanos = dueNanos(record);
+          long remaining;
+          while ((remaining = scheduledNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (isInterrupted()) {
+              return;
+            }
+          }
+          if (workload.isPastEnd(scheduledNanos)) {
+            break;
+          }
+          int keyHash = record.getKey() == null ? -1 : hash(record.getKey());
+          ProducerRecord<byte[], byte[]> producerRecord =
+              new ProducerRecord<>(
+                  topic,
+                  workload.partitionFor(keyHash, sequence++),
+                  null,
+                  record.getKey(),
+                  record.getValue(),
+                  Arrays.asList(record.getHeaders()));
+          long sendStartNanos = System.nanoTime();
+          if (workload.isEndToEnd()) {
+            EndToEndConsumer.stamp(producerRecord, sendStartNanos);
+          }
+          int bytes = record.getValue() == null ? 0 : record.getValue().length;
+          SendCallback callback = callbacks.acquire();
+          callback.prepare(
+              scheduledNanos == 0 ? sendStartNanos : scheduledNanos, sendStartNanos, bytes);
+          kafkaProducers[keyHash < 0 ? 0 : keyHash % kafkaProducers.length].send(
+              producerRecord, callback);
+          stats.recordSend();
+        }
+        for (org.apache.kafka.clients.producer.Producer<byte[], byte[]> kafkaProducer :
+            kafkaProducers) {
+          kafkaProducer.flush();
+        }
+      } catch (InterruptedException interrupted) {
+        // the run was closed
+      } catch (Exception error) {
+        logger.error("Failed to execute", error);
+      } finally {
+        stats.finish(System.nanoTime());
+      }
+    }
+  }
+}
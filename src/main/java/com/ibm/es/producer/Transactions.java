@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * How each producer thread groups its records into transactions for --delivery-mode transactional.
+ * A transaction is committed once it holds --transaction-records records, or once
+ * --transaction-interval has passed since it began, whichever comes first. Both are checked as each
+ * record is sent.
+ */
+public class Transactions {
+
+  private static ResourceBundle producerTranslations =
+      ResourceBundle.getBundle("MessageBundle", Locale.getDefault());
+
+  private final long records;
+  private final long intervalNanos;
+
+  Transactions(long records, long intervalNanos) {
+    this.records = records;
+    this.intervalNanos = intervalNanos;
+  }
+
+  /** Whether a transaction that began at the given time and holds this many records is complete. */
+  boolean isDue(long recordsInTransaction, long beganNanos, long nowNanos) {
+    return recordsInTransaction >= records
+        || (intervalNanos > 0 && nowNanos - beganNanos >= intervalNanos);
+  }
+
+  public long getRecords() {
+    return records;
+  }
+
+  /** The longest a transaction stays open, or 0 for no limit. */
+  public long getIntervalNanos() {
+    return intervalNanos;
+  }
+
+  /** Prints the transactions that ended during an interval, if there were any. */
+  static void printInterval(ProducerStats.Snapshot interval) {
+    if (interval.getCommits() > 0 || interval.getAborts() > 0) {
+      System.out.println(
+          String.format(
+              producerTranslations.getString("producer.interval.transactions"),
+              interval.getCommits(),
+              interval.getAborts(),
+              interval.getCommitLatencyPercentileMs(50),
+              interval.getCommitLatencyPercentileMs(99)));
+    }
+  }
+
+  /** Prints the commits, aborts and commit latency of a whole transactional run. */
+  static void printResult(ProducerStats.Snapshot total) {
+    System.out.println(
+        String.format(
+            producerTranslations.getString("producer.result.transactions"),
+            total.getCommits(),
+            total.getRecordsPerCommit(),
+            total.getAborts(),
+            total.getCommitLatencyPercentileMs(50),
+            total.getCommitLatencyPercentileMs(99),
+            total.getCommitLatencyPercentileMs(100)));
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The warm-up before a measured run, for --warm-up and --warm-up-records. First every producer
+ * fetches the metadata of the topic at the same time, which opens its first connection to the
+ * cluster, TLS and SASL handshakes included. Then the producer threads send warm-up records through
+ * the same producers, which opens their connections to the partition leaders and lets the JIT
+ * compile the send path. None of this is counted in the statistics of the run.
+ */
+public class WarmUp {
+
+  private static Logger logger = LoggerFactory.getLogger(WarmUp.class);
+
+  private final long durationNanos;
+  private final long records;
+  private long metadataNanos = -1;
+  private int producers;
+  private final AtomicInteger partitions = new AtomicInteger();
+  private ProducerStats.Snapshot stats = new ProducerStats.Snapshot();
+
+  WarmUp(long durationNanos, long records) {
+    this.durationNanos = durationNanos;
+    this.records = records;
+  }
+
+  /** How long to warm up for, or 0 to end only after {@link #getRecords()} records. */
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  /** How many records to warm up with, or 0 to end only after {@link #getDurationNanos()}. */
+  public long getRecords() {
+    return records;
+  }
+
+  /**
+   * Fetches the metadata of the topic with each producer on a thread of its own, so connections are
+   * set up in parallel rather than one producer after another, and waits for all of them.
+   */
+  void fetchMetadata(
+      List<org.apache.kafka.clients.producer.Producer<byte[], byte[]>> kafkaProducers, String topic)
+      throws InterruptedException {
+    long startNanos = System.nanoTime();
+    List<Thread> fetches = new ArrayList<>();
+    for (org.apache.kafka.clients.producer.Producer<byte[], byte[]> kafkaProducer :
+        kafkaProducers) {
+      Thread fetch =
+          new Thread(
+              () -> {
+                try {
+                  partitions.accumulateAndGet(kafkaProducer.partitionsFor(topic).size(), Math::max);
+                } catch (Exception error) {
+                  logger.warn("Failed to fetch the metadata of " + topic, error);
+                }
+              },
+              "metadata" + fetches.size());
+      fetch.setDaemon(true);
+      fetch.start();
+      fetches.add(fetch);
+    }
+    for (Thread fetch : fetches) {
+      fetch.join();
+    }
+    metadataNanos = System.nanoTime() - startNanos;
+    producers = kafkaProducers.size();
+  }
+
+  /** Runs the warm-up threads to the end and keeps their statistics apart from the run's. */
+  void run(List<ProducerThread> threads, Workload workload) throws InterruptedException {
+    workload.start(System.nanoTime());
+    for (ProducerThread thread : threads) {
+      thread.start();
+    }
+    ProducerStats.Snapshot total = new ProducerStats.Snapshot();
+    for (ProducerThread thread : threads) {
+      thread.join();
+      total.merge(thread.getStats().snapshot());
+    }
+    stats = total;
+  }
+
+  /** How long it took for every producer to have the metadata of the topic. */
+  public double getMetadataMs() {
+    return metadataNanos / 1e6;
+  }
+
+  /** The number of producers that fetched metadata. */
+  public int getProducers() {
+    return producers;
+  }
+
+  /** The number of partitions of the topic, as found by the metadata fetch. */
+  public int getPartitions() {
+    return partitions.get();
+  }
+
+  /** The statistics of the warm-up records. */
+  public ProducerStats.Snapshot getStats() {
+    return stats;
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.es.producer;
+
+/**
+ * What every producer thread in a run sends: the topic, the shared rate limiter, the payloads, the
+ * keys and the partitions to target. It is built once by the {@link LoadEngine} and shared by the
+ * threads.
+ */
+public class Workload {
+
+  private final String topic;
+  private final RateLimiter rateLimiter;
+  private final PayloadSource payloads;
+  private final KeyGenerator keys;
+  private final Integer[] partitions;
+  private final long durationNanos;
+  private final PartitionStats partitionStats;
+  private final boolean endToEnd;
+  private volatile long endNanos;
+  private volatile boolean stopped;
+
+  Workload(
+      String topic,
+      RateLimiter rateLimiter,
+      PayloadSource payloads,
+      KeyGenerator keys,
+      int[] partitions,
+      long durationNanos,
+      PartitionStats partitionStats,
+      boolean endToEnd) {
+    this.topic = topic;
+    this.rateLimiter = rateLimiter;
+    this.payloads = payloads;
+    this.keys = keys;
+    this.durationNanos = durationNanos;
+    this.partitionStats = partitionStats;
+    this.endToEnd = endToEnd;
+    if (partitions == null || partitions.length == 0) {
+      this.partitions = null;
+    } else {
+      // boxed once here so that choosing a partition does not allocate
+      this.partitions = new Integer[partitions.length];
+      for (int i = 0; i < partitions.length; i++) {
+        this.partitions[i] = partitions[i];
+      }
+    }
+  }
+
+  /** Starts the clock for the rate limiter and for --duration. */
+  void start(long nowNanos) {
+    rateLimiter.start(nowNanos);
+    if (partitionStats != null) {
+      partitionStats.start(nowNanos);
+    }
+    endNanos = nowNanos + durationNanos;
+  }
+
+  /** Whether the run has a --duration, rather than ending after --num-records. */
+  public boolean hasDuration() {
+    return durationNanos > 0;
+  }
+
+  /** Asks the producer threads to stop sending before their next record. */
+  void stop() {
+    stopped = true;
+  }
+
+  /**
+   * Whether a send scheduled for the given time falls after the end of the run, either because the
+   * --duration is up or because the run was stopped.
+   */
+  boolean isPastEnd(long nanos) {
+    return stopped || (durationNanos > 0 && nanos - endNanos >= 0);
+  }
+
+  public String getTopic() {
+    return topic;
+  }
+
+  public RateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  public PayloadSource getPayloads() {
+    return payloads;
+  }
+
+  public KeyGenerator getKeys() {
+    return keys;
+  }
+
+  /** The statistics of each partition for --partition-breakdown, or null. */
+  public PartitionStats getPartitionStats() {
+    return partitionStats;
+  }
+
+  /** Whether records are stamped with the time they are sent, for --end-to-end. */
+  public boolean isEndToEnd() {
+    return endToEnd;
+  }
+
+  /**
+   * The partition to send a record to, or null to leave it to the partitioner. When partitions are
+   * pinned, a key always maps to the same pinned partition and unkeyed records take turns.
+   */
+  Integer partitionFor(int keyIndex, long sequence) {
+    if (partitions == null) {
+      return null;
+    }
+    long slot = keyIndex >= 0 ? keyIndex : sequence;
+    return partitions[(int) (slot % partitions.length)];
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cucumber;
+
+import static org.junit.Assert.*;
+
+import com.ibm.es.producer.KeyGenerator;
+import cucumber.api.java.en.Given;
+import cucumber.api.java.en.Then;
+import cucumber.api.java.en.When;
+
+public class KeyStepdefs {
+
+  private KeyGenerator keys;
+  private int[] counts;
+  private int draws;
+
+  @Given("a key distribution of {string} with {string} keys")
+  public void a_key_distribution_of_with_keys(String distribution, String cardinality) {
+    keys = KeyGenerator.create(distribution, Integer.parseInt(cardinality));
+  }
+
+  @When("{string} keys are chosen")
+  public void keys_are_chosen(String count) {
+    draws = Integer.parseInt(count);
+    counts = new int[keys.getCardinality()];
+    KeyGenerator.Reader reader = keys.newReader();
+    for (int i = 0; i < draws; i++) {
+      counts[reader.next()]++;
+    }
+  }
+
+  @Then("every key was chosen")
+  public void every_key_was_chosen() {
+    for (int count : counts) {
+      assertTrue(count > 0);
+    }
+  }
+
+  @Then("every key was chosen {string} times")
+  public void every_key_was_chosen_times(String expected) {
+    for (int count : counts) {
+      assertEquals(Integer.parseInt(expected), count);
+    }
+  }
+
+  @Then("the most frequent key took between {string} and {string} percent of the records")
+  public void the_most_frequent_key_took_between_and_percent_of_the_records(
+      String min, String max) {
+    double percent = 100.0 * counts[0] / draws;
+    assertTrue("percent was " + percent, percent >= Double.parseDouble(min));
+    assertTrue("percent was " + percent, percent <= Double.parseDouble(max));
+  }
+
+  @Then("records have no key")
+  public void records_have_no_key() {
+    assertFalse(keys.hasKeys());
+    assertEquals(-1, keys.newReader().next());
+    assertNull(keys.key(-1));
+  }
+
+  @Then("the key distribution {string} is rejected")
+  public void the_key_distribution_is_rejected(String distribution) {
+    try {
+      KeyGenerator.create(distribution, 100);
+      fail("Expected " + distribution + " to be rejected");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+}
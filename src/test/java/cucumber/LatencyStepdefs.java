@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cucumber;
+
+import static org.junit.Assert.*;
+
+import com.ibm.es.producer.LatencyHistogram;
+import cucumber.api.java.en.Given;
+import cucumber.api.java.en.Then;
+import cucumber.api.java.en.When;
+
+public class LatencyStepdefs {
+
+  private LatencyHistogram histogram;
+  private LatencyHistogram otherHistogram;
+  private LatencyHistogram.Snapshot snapshot;
+
+  @Given("a latency histogram")
+  public void a_latency_histogram() {
+    histogram = new LatencyHistogram();
+  }
+
+  @Given("another latency histogram")
+  public void another_latency_histogram() {
+    otherHistogram = new LatencyHistogram();
+  }
+
+  @When("latencies from {string} to {string} microseconds are recorded")
+  public void latencies_are_recorded(String from, String to) {
+    for (long value = Long.parseLong(from); value <= Long.parseLong(to); value++) {
+      histogram.record(value);
+    }
+    snapshot = histogram.snapshot();
+  }
+
+  @When("latencies from {string} to {string} microseconds are recorded in the other histogram")
+  public void latencies_are_recorded_in_the_other_histogram(String from, String to) {
+    for (long value = Long.parseLong(from); value <= Long.parseLong(to); value++) {
+      otherHistogram.record(value);
+    }
+  }
+
+  @When("the histograms are merged")
+  public void the_histograms_are_merged() {
+    snapshot = histogram.snapshot().merge(otherHistogram.snapshot());
+  }
+
+  @Then("the merged histogram holds {string} latencies")
+  public void the_merged_histogram_holds_latencies(String expected) {
+    assertEquals(Long.parseLong(expected), snapshot.getCount());
+  }
+
+  @Then("the {string} percentile is within one percent of {string} microseconds")
+  public void the_percentile_is_within_one_percent_of(String percentile, String expected) {
+    long expectedValue = Long.parseLong(expected);
+    long actualValue = snapshot.getValueAtPercentile(Double.parseDouble(percentile));
+    assertEquals(expectedValue, actualValue, Math.max(1.0, expectedValue * 0.01));
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cucumber;
+
+import static org.junit.Assert.*;
+
+import com.ibm.es.producer.LoadProfile;
+import com.ibm.es.producer.RateLimiter;
+import cucumber.api.java.en.Given;
+import cucumber.api.java.en.Then;
+import cucumber.api.java.en.When;
+import java.util.concurrent.TimeUnit;
+
+public class LoadProfileStepdefs {
+
+  private LoadProfile profile;
+  private long[] scheduled;
+
+  @Given("a load profile of {string}")
+  public void a_load_profile_of(String spec) {
+    profile = LoadProfile.parse(spec);
+  }
+
+  @When("the first {string} permits are scheduled")
+  public void the_first_permits_are_scheduled(String count) {
+    RateLimiter rateLimiter = new RateLimiter(profile);
+    // start the schedule an hour ago so that no permit has to wait
+    long startNanos = System.nanoTime() - TimeUnit.HOURS.toNanos(1);
+    rateLimiter.start(startNanos);
+    scheduled = new long[Integer.parseInt(count)];
+    for (int i = 0; i < scheduled.length; i++) {
+      scheduled[i] = rateLimiter.acquire() - startNanos;
+    }
+  }
+
+  @Then("the rate at {string} seconds is {string} records per second")
+  public void the_rate_at_seconds_is_records_per_second(String seconds, String expected) {
+    assertEquals(Double.parseDouble(expected), profile.rateAt(Double.parseDouble(seconds)), 0.001);
+  }
+
+  @Then("the load profile lasts {string} seconds")
+  public void the_load_profile_lasts_seconds(String expected) {
+    assertEquals(Double.parseDouble(expected), profile.getLengthSeconds(), 0.001);
+  }
+
+  @Then("between {string} and {string} permits were scheduled in the first {string} seconds")
+  public void between_and_permits_were_scheduled_in_the_first_seconds(
+      String min, String max, String seconds) {
+    long limit = (long) (Double.parseDouble(seconds) * 1e9);
+    long count = 0;
+    for (long time : scheduled) {
+      if (time < limit) {
+        count++;
+      }
+    }
+    assertTrue("count was " + count, count >= Long.parseLong(min));
+    assertTrue("count was " + count, count <= Long.parseLong(max));
+  }
+
+  @Then("the load profile {string} is rejected")
+  public void the_load_profile_is_rejected(String spec) {
+    try {
+      LoadProfile.parse(spec);
+      fail("Expected " + spec + " to be rejected");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cucumber;
+
+import static org.junit.Assert.*;
+
+import com.ibm.es.producer.CodecComparison;
+import com.ibm.es.producer.PayloadContent;
+import com.ibm.es.producer.PayloadFile;
+import com.ibm.es.producer.PayloadPool;
+import com.ibm.es.producer.PayloadSource;
+import cucumber.api.java.After;
+import cucumber.api.java.en.Given;
+import cucumber.api.java.en.Then;
+import cucumber.api.java.en.When;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class PayloadStepdefs {
+
+  private File file;
+  private PayloadFile payloadFile;
+  private PayloadPool payloadPool;
+  private List<String> payloadsRead = new ArrayList<>();
+
+  @After
+  public void afterEach() {
+    if (file != null) {
+      file.delete();
+    }
+  }
+
+  @Given("a payload file containing {string}")
+  public void a_payload_file_containing(String content) throws IOException {
+    file = File.createTempFile("payloads", ".txt");
+    Files.write(file.toPath(), unescape(content).getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Given("a binary payload file with payloads {string}")
+  public void a_binary_payload_file_with_payloads(String payloads) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    for (String payload : payloads.split(",")) {
+      byte[] value = unescape(payload).getBytes(StandardCharsets.UTF_8);
+      output.writeInt(value.length);
+      output.write(value);
+    }
+    file = File.createTempFile("payloads", ".bin");
+    Files.write(file.toPath(), bytes.toByteArray());
+  }
+
+  @When("the payload file is opened as {string} with delimiter {string}")
+  public void the_payload_file_is_opened_as_with_delimiter(String format, String delimiter)
+      throws IOException {
+    payloadFile =
+        PayloadFile.open(
+            file.getPath(), unescape(delimiter), PayloadFile.Format.valueOf(format.toUpperCase()));
+  }
+
+  @Then("the payload file holds {string} payloads")
+  public void the_payload_file_holds_payloads(String expected) {
+    assertEquals(Integer.parseInt(expected), payloadFile.getCount());
+  }
+
+  @Then("payload {string} is {string}")
+  public void payload_is(String index, String expected) {
+    assertEquals(
+        unescape(expected),
+        new String(payloadFile.get(Integer.parseInt(index)), StandardCharsets.UTF_8));
+  }
+
+  @Given("a payload pool of {string} payloads of {string} bytes stored {string}")
+  public void a_payload_pool_of_payloads_of_bytes_stored(
+      String count, String size, String storage) {
+    int[] sizes = new int[Integer.parseInt(count)];
+    Arrays.fill(sizes, Integer.parseInt(size));
+    payloadPool = PayloadPool.generate(sizes, "off-heap".equals(storage), 0L);
+  }
+
+  @Given("a payload pool of {string} payloads of {string} bytes containing {string}")
+  public void a_payload_pool_of_payloads_of_bytes_containing(
+      String count, String size, String content) {
+    int[] sizes = new int[Integer.parseInt(count)];
+    Arrays.fill(sizes, Integer.parseInt(size));
+    payloadPool = PayloadPool.generate(sizes, PayloadContent.parse(content), false, 0L);
+  }
+
+  @Given("a payload template {string}")
+  public void a_payload_template(String template) throws IOException {
+    file = File.createTempFile("template", ".json");
+    Files.write(file.toPath(), template.getBytes(StandardCharsets.UTF_8));
+    payloadPool =
+        PayloadPool.generate(
+            new int[16], PayloadContent.parse("template:" + file.getAbsolutePath()), false, 0L);
+  }
+
+  @When("{string} payloads are read from the pool")
+  public void payloads_are_read_from_the_pool(String count) {
+    PayloadSource.Reader reader = payloadPool.newReader();
+    for (int i = 0; i < Integer.parseInt(count); i++) {
+      payloadsRead.add(new String(reader.next(), StandardCharsets.ISO_8859_1));
+    }
+  }
+
+  @Then("{string} distinct payloads were read")
+  public void distinct_payloads_were_read(String expected) {
+    assertEquals(Integer.parseInt(expected), new HashSet<>(payloadsRead).size());
+  }
+
+  @Then("every payload read was {string} bytes")
+  public void every_payload_read_was_bytes(String expected) {
+    for (String payload : payloadsRead) {
+      assertEquals(Integer.parseInt(expected), payload.length());
+    }
+  }
+
+  @Then("every payload read matches {string}")
+  public void every_payload_read_matches(String pattern) {
+    for (String payload : payloadsRead) {
+      assertTrue(payload, payload.matches(pattern));
+    }
+  }
+
+  @Then("the payloads read compress with {string} to between {string} and {string} of their size")
+  public void the_payloads_read_compress_to_between(String codec, String min, String max) {
+    CodecComparison comparison = new CodecComparison(16384);
+    for (String payload : payloadsRead) {
+      comparison.add(null, payload.getBytes(StandardCharsets.ISO_8859_1));
+    }
+    for (CodecComparison.Result result : comparison.run(TimeUnit.MILLISECONDS.toNanos(10))) {
+      if (result.getCodec().name.equals(codec)) {
+        assertTrue(
+            result.getRatio() + " is not between " + min + " and " + max,
+            result.getRatio() >= Double.parseDouble(min)
+                && result.getRatio() <= Double.parseDouble(max));
+        return;
+      }
+    }
+    fail("No result for " + codec);
+  }
+
+  private static String unescape(String value) {
+    return value.replace("\\n", "\n");
+  }
+}
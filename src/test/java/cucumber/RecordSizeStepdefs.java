@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cucumber;
+
+import static org.junit.Assert.*;
+
+import com.ibm.es.producer.RecordSizeDistribution;
+import cucumber.api.java.After;
+import cucumber.api.java.en.Given;
+import cucumber.api.java.en.Then;
+import cucumber.api.java.en.When;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class RecordSizeStepdefs {
+
+  private RecordSizeDistribution distribution;
+  private int[] sizes;
+  private File file;
+
+  @After
+  public void afterEach() {
+    if (file != null) {
+      file.delete();
+    }
+  }
+
+  @Given("a record size of {string}")
+  public void a_record_size_of(String recordSize) {
+    distribution = RecordSizeDistribution.parse(recordSize);
+  }
+
+  @Given("a record size histogram file containing {string} and {string}")
+  public void a_record_size_histogram_file_containing_and(String line1, String line2)
+      throws IOException {
+    file = File.createTempFile("sizes", ".txt");
+    Files.write(
+        file.toPath(), Arrays.asList("# size weight", line1, line2), StandardCharsets.UTF_8);
+    distribution = RecordSizeDistribution.parse("file:" + file.getPath());
+  }
+
+  @When("{string} record sizes are sampled")
+  public void record_sizes_are_sampled(String count) {
+    sizes = distribution.sample(Integer.parseInt(count), 42L);
+  }
+
+  @Then("every sampled size is between {string} and {string} bytes")
+  public void every_sampled_size_is_between_and_bytes(String min, String max) {
+    for (int size : sizes) {
+      assertTrue(size >= Integer.parseInt(min));
+      assertTrue(size <= Integer.parseInt(max));
+    }
+  }
+
+  @Then("the median sampled size is within five percent of {string} bytes")
+  public void the_median_sampled_size_is_within_five_percent_of_bytes(String expected) {
+    int[] sorted = sizes.clone();
+    Arrays.sort(sorted);
+    double median = sorted[sorted.length / 2];
+    assertEquals(Double.parseDouble(expected), median, Double.parseDouble(expected) * 0.05);
+  }
+
+  @Then("between {string} and {string} sampled sizes are {string} bytes")
+  public void between_and_sampled_sizes_are_bytes(String min, String max, String size) {
+    long count = Arrays.stream(sizes).filter(s -> s == Integer.parseInt(size)).count();
+    assertTrue(count >= Long.parseLong(min));
+    assertTrue(count <= Long.parseLong(max));
+  }
+
+  @Then("the record size {string} is rejected")
+  public void the_record_size_is_rejected(String recordSize) {
+    try {
+      RecordSizeDistribution.parse(recordSize);
+      fail("Expected " + recordSize + " to be rejected");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cucumber;
+
+import static org.junit.Assert.*;
+
+import com.ibm.es.producer.ThroughputSearch;
+import cucumber.api.java.en.Given;
+import cucumber.api.java.en.Then;
+import cucumber.api.java.en.When;
+
+public class SearchStepdefs {
+
+  private double capacity;
+  private ThroughputSearch search;
+
+  @Given("a cluster that keeps latency within the objective up to {string} records per second")
+  public void a_cluster_that_keeps_latency_within_the_objective_up_to(String rate) {
+    capacity = Double.parseDouble(rate);
+  }
+
+  @When("a {string} search starts at {string} records per second with at most {string} probes")
+  public void a_search_starts_at_with_at_most_probes(String strategy, String start, String probes)
+      throws InterruptedException {
+    search =
+        new ThroughputSearch(
+            ThroughputSearch.Strategy.parse(strategy),
+            Double.parseDouble(start),
+            Integer.parseInt(probes));
+    // latency is 1 ms up to the capacity and 100 ms beyond it, against an objective of 10 ms
+    search.run(
+        target -> new ThroughputSearch.Probe(target, target, target <= capacity ? 1 : 100, 0, 10),
+        probe -> {});
+  }
+
+  @Then("the best rate found is between {string} and {string} records per second")
+  public void the_best_rate_found_is_between(String min, String max) {
+    double best = search.getBestRate();
+    assertTrue("best was " + best, best >= Double.parseDouble(min));
+    assertTrue("best was " + best, best <= Double.parseDouble(max));
+  }
+
+  @Then("the curve holds {string} probes in order of rate")
+  public void the_curve_holds_probes_in_order_of_rate(String count) {
+    assertEquals(Integer.parseInt(count), search.getCurve().size());
+    double previous = 0;
+    for (ThroughputSearch.Probe probe : search.getCurve()) {
+      assertTrue(probe.getTargetRate() >= previous);
+      previous = probe.getTargetRate();
+    }
+  }
+
+  @Then("a probe that falls short of its target rate fails")
+  public void a_probe_that_falls_short_of_its_target_rate_fails() {
+    assertFalse(new ThroughputSearch.Probe(1000, 800, 1, 0, 10).isPassed());
+    assertFalse(new ThroughputSearch.Probe(1000, 1000, 1, 1, 10).isPassed());
+    assertTrue(new ThroughputSearch.Probe(1000, 990, 1, 0, 10).isPassed());
+  }
+}
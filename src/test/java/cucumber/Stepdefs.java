@@ -15,28 +15,97 @@
  */
 package cucumber;
 
+import static java.util.stream.Collectors.joining;
 import static org.junit.Assert.*;
 
+import com.ibm.es.producer.IntervalReporter;
+import com.ibm.es.producer.LiveMetrics;
+import com.ibm.es.producer.LoadEngine;
+import com.ibm.es.producer.MetricsServer;
+import com.ibm.es.producer.PartitionStats;
 import com.ibm.es.producer.Producer;
-import cucumber.api.java.Before;
+import com.ibm.es.producer.ProducerStats;
+import com.ibm.es.producer.ProducerThread;
+import com.ibm.es.producer.RateLimiter;
+import com.ibm.es.producer.ResourceMonitor;
+import com.ibm.es.producer.WarmUp;
+import cucumber.api.java.After;
 import cucumber.api.java.en.Given;
 import cucumber.api.java.en.Then;
 import cucumber.api.java.en.When;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import org.apache.kafka.tools.ProducerPerformance;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.commons.io.IOUtils;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.clients.producer.internals.DefaultPartitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 
 public class Stepdefs {
 
-  private String[] performanceArguments;
+  private static final String TEST_CONFIG = "src/test/resources/cucumber/test.config";
+
   private List<String> argumentsList = new ArrayList<>();
+  private Producer producer;
+  private LoadEngine engine;
+  private List<MockProducer<byte[], byte[]>> mockProducers = new ArrayList<>();
+  private List<Properties> producerProperties = new ArrayList<>();
+  private long stallMs;
+  private int stallAfterRecords = -1;
+  private int failEveryCommit;
+  private ResourceMonitor.Usage resourceSample;
+  private ResourceMonitor.Usage resourceSummary;
+  private String output;
+  private int topicPartitions;
+  private int topicBrokers;
+  private long reportIntervalMs;
+  private List<ProducerStats.Snapshot> intervals = new CopyOnWriteArrayList<>();
+  private String scrapedMetrics;
+  private Map<String, Object> jmxAttributes = new HashMap<>();
+  private Map<String, File> files = new HashMap<>();
+  private int exitCode;
+  private List<String> configLines = new ArrayList<>();
 
-  @Before
-  public void beforeEach() {
-    ProducerPerformance.reset();
+  @After
+  public void afterEach() {
+    if (engine != null) {
+      engine.close();
+    }
+    for (File file : files.values()) {
+      file.delete();
+    }
   }
 
   @Given("an instance of the es-producer")
@@ -48,43 +117,585 @@ public class Stepdefs {
     argumentsList.add(string2);
   }
 
-  @When("I check the arguments that the Kafka performance script is called with")
-  public void i_check_the_arguments_that_the_Kafka_performance_script_is_called_with() {
-    String[] arguments = ensureMinimumArgumentsAreProvided(argumentsList);
-    Producer.main(arguments);
-  }
-
   @When("I provide the print metrics argument {string}")
   public void i_provide_the_print_metrics_argument(String string) {
     argumentsList.add(string);
   }
 
-  @Then("it was called with {string} of {string}")
-  public void i_check_the_arguments_the_Kafka_performance_script_has_been_called_with(
-      String string1, String string2) {
-    performanceArguments = ProducerPerformance.getArguments();
-    assertTrue(Arrays.asList(performanceArguments).contains(string1));
-    Integer index = Arrays.asList(performanceArguments).indexOf(string1);
-    assertEquals(string2, performanceArguments[index + 1]);
+  @Given("the topic has {string} partitions led by {string} brokers")
+  public void the_topic_has_partitions_led_by_brokers(String partitions, String brokers) {
+    topicPartitions = Integer.parseInt(partitions);
+    topicBrokers = Integer.parseInt(brokers);
+  }
+
+  @When("I provide the flag {string}")
+  public void i_provide_the_flag(String flag) {
+    argumentsList.add(flag);
+  }
+
+  @When("I provide a trace of {string} records with {string} keys captured {string} ms apart")
+  public void i_provide_a_trace(String records, String keys, String intervalMs) throws IOException {
+    File file = File.createTempFile("trace", ".json");
+    files.put("--trace-file", file);
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < Integer.parseInt(records); i++) {
+      lines.add(
+          String.format(
+              "{\"timestamp\": %d, \"key\": \"key-%d\", \"headers\": {\"source\": \"trace\"},"
+                  + " \"value\": \"%d\"}",
+              1000 + i * Long.parseLong(intervalMs), i % Integer.parseInt(keys), i));
+    }
+    Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+    argumentsList.add("--trace-file");
+    argumentsList.add(file.getPath());
+  }
+
+  @When("I provide argument {string} of a temporary {string} file")
+  public void i_provide_argument_of_a_temporary_file(String argument, String suffix)
+      throws IOException {
+    File file = File.createTempFile("results", "." + suffix);
+    files.put(argument, file);
+    argumentsList.add(argument);
+    argumentsList.add(file.getPath());
+  }
+
+  @When(
+      "I provide argument {string} of a baseline with {string} records per second and {string} ms 99th percentile latency")
+  public void i_provide_argument_of_a_baseline(String argument, String throughput, String p99)
+      throws IOException {
+    File file = File.createTempFile("baseline", ".json");
+    files.put(argument, file);
+    String baseline =
+        String.format(
+            "{\"summary\": {\"recordsPerSecond\": %s, \"latencyMs\": {\"p99\": %s}}}",
+            throughput, p99);
+    Files.write(file.toPath(), baseline.getBytes(StandardCharsets.UTF_8));
+    argumentsList.add(argument);
+    argumentsList.add(file.getPath());
+  }
+
+  @When("the mock producer stalls for {string} ms after {string} records")
+  public void the_mock_producer_stalls_for_ms_after_records(String ms, String records) {
+    stallMs = Long.parseLong(ms);
+    stallAfterRecords = Integer.parseInt(records);
+  }
+
+  @When("every {string} transaction of each mock producer fails to commit")
+  public void every_transaction_of_each_mock_producer_fails_to_commit(String nth) {
+    failEveryCommit = Integer.parseInt(nth);
+  }
+
+  @When("intervals are reported every {string} ms")
+  public void intervals_are_reported_every_ms(String ms) {
+    reportIntervalMs = Long.parseLong(ms);
+  }
+
+  @When("the producer config also sets {string} to {string}")
+  public void the_producer_config_also_sets_to(String name, String value) {
+    configLines.add(name + "=" + value);
+  }
+
+  @When("I configure the es-producer")
+  public void i_configure_the_es_producer() {
+    if (!configLines.isEmpty()) {
+      writeProducerConfig();
+    }
+    String[] arguments = ensureMinimumArgumentsAreProvided(argumentsList);
+    producer = Producer.configure(arguments);
+    assertNotNull(producer);
+    producer.setProducerFactory(
+        properties -> {
+          MockProducer<byte[], byte[]> mockProducer =
+              topicPartitions > 0
+                  ? new StallingMockProducer(cluster(producer.getTopic()))
+                  : new StallingMockProducer();
+          mockProducers.add(mockProducer);
+          producerProperties.add(properties);
+          return mockProducer;
+        });
+  }
+
+  /**
+   * A cluster of {@code topicBrokers} brokers, with partition p of the topic led by broker p % n.
+   */
+  private Cluster cluster(String topic) {
+    Node[] nodes = new Node[topicBrokers];
+    for (int i = 0; i < topicBrokers; i++) {
+      nodes[i] = new Node(i, "broker-" + i, 9092);
+    }
+    List<PartitionInfo> partitions = new ArrayList<>();
+    for (int p = 0; p < topicPartitions; p++) {
+      Node leader = nodes[p % topicBrokers];
+      partitions.add(new PartitionInfo(topic, p, leader, nodes, nodes));
+    }
+    return new Cluster(
+        "cluster",
+        Arrays.asList(nodes),
+        partitions,
+        Collections.emptySet(),
+        Collections.emptySet());
+  }
+
+  private void writeProducerConfig() {
+    try {
+      File file = File.createTempFile("producer", ".config");
+      files.put("--producer-config", file);
+      List<String> lines = new ArrayList<>(Files.readAllLines(new File(TEST_CONFIG).toPath()));
+      lines.addAll(configLines);
+      Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+      argumentsList.add("--producer-config");
+      argumentsList.add(file.getPath());
+      configLines.clear();
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  @When("I prepare the producer threads")
+  public void i_prepare_the_producer_threads() throws IOException, InterruptedException {
+    i_configure_the_es_producer();
+    engine = producer.createEngine();
+    engine.prepare();
+  }
+
+  @When("I run the es-producer against a mock producer")
+  public void i_run_the_es_producer_against_a_mock_producer()
+      throws IOException, InterruptedException {
+    i_prepare_the_producer_threads();
+    engine.start();
+    IntervalReporter reporter = null;
+    if (reportIntervalMs > 0) {
+      reporter = new IntervalReporter(engine, reportIntervalMs, TimeUnit.MILLISECONDS);
+      reporter.addListener((interval, total) -> intervals.add(interval));
+      reporter.start();
+    }
+    engine.awaitCompletion();
+    if (reporter != null) {
+      reporter.finish();
+    }
+  }
+
+  @When("I sample resources while the es-producer runs against a mock producer")
+  public void i_sample_resources_while_the_es_producer_runs_against_a_mock_producer()
+      throws IOException, InterruptedException {
+    i_prepare_the_producer_threads();
+    ResourceMonitor monitor = new ResourceMonitor(engine);
+    monitor.start();
+    engine.start();
+    Thread.sleep(100);
+    resourceSample = monitor.sample();
+    engine.awaitCompletion();
+    resourceSummary = monitor.summarize();
+    monitor.close();
+  }
+
+  @When("I run the es-producer in a dry run")
+  public void i_run_the_es_producer_in_a_dry_run() throws IOException, InterruptedException {
+    argumentsList.add("--dry-run");
+    i_run_the_es_producer_against_a_mock_producer();
+    assertTrue(mockProducers.isEmpty());
+  }
+
+  @When("I run the es-producer tool against a mock producer")
+  public void i_run_the_es_producer_tool_against_a_mock_producer() {
+    i_configure_the_es_producer();
+    exitCode = producer.run();
+  }
+
+  @When("I run the es-producer tool against a mock producer and capture its output")
+  public void i_run_the_es_producer_tool_against_a_mock_producer_and_capture_its_output() {
+    PrintStream stdout = System.out;
+    ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(captured, true));
+    try {
+      i_run_the_es_producer_tool_against_a_mock_producer();
+    } finally {
+      System.setOut(stdout);
+    }
+    output = new String(captured.toByteArray(), StandardCharsets.UTF_8);
+    System.out.print(output);
+  }
+
+  @Then("the output has a line matching {string}")
+  public void the_output_has_a_line_matching(String regex) {
+    assertTrue(output, Pattern.compile(regex, Pattern.MULTILINE).matcher(output).find());
+  }
+
+  @Then("the output has no line matching {string}")
+  public void the_output_has_no_line_matching(String regex) {
+    assertFalse(output, Pattern.compile(regex, Pattern.MULTILINE).matcher(output).find());
+  }
+
+  @Then("the exit code is {string}")
+  public void the_exit_code_is(String expected) {
+    assertEquals(Integer.parseInt(expected), exitCode);
+  }
+
+  @Then("producers were created with {string} set to each of {string}")
+  public void producers_were_created_with_set_to_each_of(String property, String values) {
+    Set<Object> used = new TreeSet<>();
+    for (Properties properties : producerProperties) {
+      used.add(properties.get(property));
+    }
+    assertEquals(new TreeSet<>(Arrays.asList(values.split(","))), used);
+  }
+
+  @Then("the {string} file contains {string}")
+  public void the_file_contains(String argument, String expected) throws IOException {
+    String content =
+        new String(Files.readAllBytes(files.get(argument).toPath()), StandardCharsets.UTF_8);
+    assertTrue(content, content.contains(expected));
+  }
+
+  @Then("the {string} file has {string} lines starting with {string}")
+  public void the_file_has_lines_starting_with(String argument, String count, String prefix)
+      throws IOException {
+    long lines =
+        Files.readAllLines(files.get(argument).toPath(), StandardCharsets.UTF_8)
+            .stream()
+            .filter(line -> line.startsWith(prefix))
+            .count();
+    assertEquals(Long.parseLong(count), lines);
+  }
+
+  @Then("the {string} setting is {string}")
+  public void the_setting_is(String setting, String expected) {
+    assertEquals(expected, getSetting(setting));
+  }
+
+  @Then("metrics will be printed")
+  public void metrics_will_be_printed() {
+    assertTrue(producer.shouldPrintMetrics());
+  }
+
+  @Then("{string} producer threads were created")
+  public void producer_threads_were_created(String expectedCount) {
+    assertEquals(Integer.parseInt(expectedCount), engine.getThreads().size());
+  }
+
+  @Then("each producer thread was assigned {string} of {string}")
+  public void each_producer_thread_was_assigned(String setting, String expected) {
+    for (ProducerThread thread : engine.getThreads()) {
+      switch (setting) {
+        case "num-records":
+          assertEquals(Long.parseLong(expected), thread.getNumRecords());
+          break;
+        default:
+          fail("Unknown thread setting " + setting);
+      }
+    }
+  }
+
+  @Then("the producer threads share a rate limit of {string} records per second")
+  public void the_producer_threads_share_a_rate_limit(String expected) {
+    RateLimiter rateLimiter = engine.getRateLimiter();
+    for (ProducerThread thread : engine.getThreads()) {
+      assertSame(rateLimiter, thread.getRateLimiter());
+    }
+    assertEquals(Integer.parseInt(expected), rateLimiter.getPermitsPerSecond());
+  }
+
+  @Then("the producer threads were assigned {string} records in total")
+  public void the_producer_threads_were_assigned_records_in_total(String expected) {
+    long total = 0;
+    long min = Long.MAX_VALUE;
+    long max = 0;
+    for (ProducerThread thread : engine.getThreads()) {
+      total += thread.getNumRecords();
+      min = Math.min(min, thread.getNumRecords());
+      max = Math.max(max, thread.getNumRecords());
+    }
+    assertEquals(Long.parseLong(expected), total);
+    assertTrue(max - min <= 1);
+  }
+
+  @Then("{string} transactions were committed and {string} aborted")
+  public void transactions_were_committed_and_aborted(String committed, String aborted) {
+    ProducerStats.Snapshot total = engine.aggregate();
+    assertEquals(Long.parseLong(committed), total.getCommits());
+    assertEquals(Long.parseLong(aborted), total.getAborts());
+    int sent = 0;
+    for (MockProducer<byte[], byte[]> mockProducer : mockProducers) {
+      assertTrue(mockProducer.transactionInitialized());
+      assertFalse(mockProducer.transactionInFlight());
+      sent += mockProducer.history().size();
+    }
+    // the records of aborted transactions are discarded
+    assertEquals(
+        total.getAcked() * total.getCommits() / (total.getCommits() + total.getAborts()), sent);
+  }
+
+  @Then("the sender threads were busy and the heap was measured")
+  public void the_sender_threads_were_busy_and_the_heap_was_measured() {
+    if (resourceSample.getSenderBusiest() >= 0) {
+      assertTrue(resourceSample.getSenderCores() > 0);
+      assertTrue(resourceSummary.getSenderBusiest() >= resourceSample.getSenderBusiest());
+    }
+    assertTrue(resourceSummary.getHeapUsed() > 0);
+    assertTrue(resourceSummary.getOffHeapUsed() > 0);
+    assertTrue(resourceSummary.getGcPauses() >= 0);
+    // mock producers have no buffer.memory metrics
+    assertEquals(-1, resourceSummary.getBufferFill(), 0);
+  }
+
+  @Then("{string} records were acknowledged after {string} warm-up records")
+  public void records_were_acknowledged_after_warm_up_records(String expected, String warmUp) {
+    assertEquals(Long.parseLong(expected), engine.aggregate().getAcked());
+    WarmUp warmUpStats = engine.getWarmUp();
+    assertEquals(Long.parseLong(warmUp), warmUpStats.getStats().getAcked());
+    assertEquals(producer.getNumProducers().intValue(), warmUpStats.getProducers());
+    assertTrue(warmUpStats.getStats().getTimeToFirstAckMs() >= 0);
+    int sent = 0;
+    for (MockProducer<byte[], byte[]> mockProducer : mockProducers) {
+      sent += mockProducer.history().size();
+    }
+    assertEquals(Integer.parseInt(expected) + Integer.parseInt(warmUp), sent);
+  }
+
+  @Then("{string} records were acknowledged")
+  public void records_were_acknowledged(String expectedCount) {
+    ProducerStats.Snapshot total = engine.aggregate();
+    assertEquals(Long.parseLong(expectedCount), total.getAcked());
+    assertEquals(0, total.getErrors());
+    int sent = 0;
+    for (MockProducer<byte[], byte[]> mockProducer : mockProducers) {
+      sent += mockProducer.history().size();
+    }
+    assertEquals(Integer.parseInt(expectedCount), sent);
+  }
+
+  @Then("between {string} and {string} records were acknowledged")
+  public void between_and_records_were_acknowledged(String min, String max) {
+    long acked = engine.aggregate().getAcked();
+    assertTrue("acked " + acked, acked >= Long.parseLong(min));
+    assertTrue("acked " + acked, acked <= Long.parseLong(max));
+  }
+
+  @Then("{string} producers were created")
+  public void producers_were_created(String count) {
+    assertEquals(Integer.parseInt(count), mockProducers.size());
+  }
+
+  @Then("each key was sent through a single producer")
+  public void each_key_was_sent_through_a_single_producer() {
+    Map<String, MockProducer<byte[], byte[]>> producerForKey = new HashMap<>();
+    for (MockProducer<byte[], byte[]> mockProducer : mockProducers) {
+      for (ProducerRecord<byte[], byte[]> record : mockProducer.history()) {
+        String key = new String(record.key(), StandardCharsets.UTF_8);
+        assertSame(key, mockProducer, producerForKey.computeIfAbsent(key, k -> mockProducer));
+      }
+    }
+  }
+
+  @Then("the records of each key were sent in the order of the trace")
+  public void the_records_of_each_key_were_sent_in_the_order_of_the_trace() {
+    for (MockProducer<byte[], byte[]> mockProducer : mockProducers) {
+      Map<String, Integer> last = new HashMap<>();
+      for (ProducerRecord<byte[], byte[]> record : mockProducer.history()) {
+        String key = new String(record.key(), StandardCharsets.UTF_8);
+        int sequence = Integer.parseInt(new String(record.value(), StandardCharsets.UTF_8));
+        assertTrue(key, last.getOrDefault(key, -1) < sequence);
+        last.put(key, sequence);
+        assertNotNull(record.headers().lastHeader("source"));
+      }
+    }
+  }
+
+  @Then("no producer was created with a property starting {string}")
+  public void no_producer_was_created_with_a_property_starting(String prefix) {
+    for (Properties properties : producerProperties) {
+      for (String name : properties.stringPropertyNames()) {
+        assertFalse(name, name.startsWith(prefix));
+      }
+    }
+  }
+
+  @Then("{string} simulated clients each had their own producer")
+  public void simulated_clients_each_had_their_own_producer(String count) {
+    assertEquals(Integer.parseInt(count), engine.getClientCount());
+    assertEquals(Integer.parseInt(count), mockProducers.size());
+    assertTrue(engine.getHeapPerClientBytes() >= 0);
+  }
+
+  @Then("the records took at least {string} ms to send")
+  public void the_records_took_at_least_ms_to_send(String ms) {
+    double elapsedMs = engine.aggregate().getElapsedSeconds() * 1000;
+    assertTrue("took " + elapsedMs, elapsedMs >= Double.parseDouble(ms));
+  }
+
+  @Then("at least {string} intervals were reported")
+  public void at_least_intervals_were_reported(String expected) {
+    assertTrue(intervals.size() >= Integer.parseInt(expected));
+  }
+
+  @Then("the intervals account for no more than the records acknowledged")
+  public void the_intervals_account_for_no_more_than_the_records_acknowledged() {
+    long acked = 0;
+    for (ProducerStats.Snapshot interval : intervals) {
+      assertTrue(interval.getAcked() >= 0);
+      // an acknowledgement being recorded while the snapshot is taken may be counted in only one
+      long difference = interval.getAcked() - interval.getLatencies().getCount();
+      assertTrue(Math.abs(difference) <= engine.getThreads().size());
+      acked += interval.getAcked();
+    }
+    assertTrue(acked > 0);
+    assertTrue(acked <= engine.aggregate().getAcked());
+  }
+
+  @When("I scrape the live metrics endpoint")
+  public void i_scrape_the_live_metrics_endpoint() throws IOException {
+    MetricsServer server = MetricsServer.start(0, new LiveMetrics(engine));
+    try {
+      URL url = new URL("http://localhost:" + server.getPort() + "/metrics");
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      assertEquals(200, connection.getResponseCode());
+      assertTrue(connection.getContentType().startsWith("text/plain"));
+      try (InputStream in = connection.getInputStream()) {
+        scrapedMetrics = IOUtils.toString(in, StandardCharsets.UTF_8);
+      }
+    } finally {
+      server.stop();
+    }
+  }
+
+  @When("I read the live metrics over JMX")
+  public void i_read_the_live_metrics_over_jmx() throws JMException {
+    LiveMetrics liveMetrics = new LiveMetrics(engine);
+    liveMetrics.register();
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName("com.ibm.es.producer:type=LiveMetrics");
+      for (String attribute : new String[] {"RecordsAcknowledged", "Errors", "RecordsInFlight"}) {
+        jmxAttributes.put(attribute, server.getAttribute(name, attribute));
+      }
+    } finally {
+      liveMetrics.unregister();
+    }
+  }
+
+  @Then("the scraped metrics include {string}")
+  public void the_scraped_metrics_include(String line) {
+    assertTrue(scrapedMetrics, scrapedMetrics.contains(line + "\n"));
+  }
+
+  @Then("the JMX attribute {string} is {string}")
+  public void the_jmx_attribute_is(String attribute, String expected) {
+    assertEquals(expected, String.valueOf(jmxAttributes.get(attribute)));
+  }
+
+  @Then("the {string} percentile latency from send is below {string} ms")
+  public void the_percentile_latency_from_send_is_below_ms(String percentile, String ms) {
+    double latency = engine.aggregate().getLatencyPercentileMs(Double.parseDouble(percentile));
+    assertTrue("latency was " + latency, latency < Double.parseDouble(ms));
   }
 
-  @Then("it was called with the print metrics argument")
-  public void it_was_called_with_the_print_metrics_argument() {
-    performanceArguments = ProducerPerformance.getArguments();
-    assertTrue(Arrays.asList(performanceArguments).contains("--print-metrics"));
+  @Then("the {string} percentile latency from send is at least {string} ms")
+  public void the_percentile_latency_from_send_is_at_least_ms(String percentile, String ms) {
+    double latency = engine.aggregate().getLatencyPercentileMs(Double.parseDouble(percentile));
+    assertTrue("latency was " + latency, latency >= Double.parseDouble(ms));
   }
 
-  @Then("it was called {string} times")
-  public void it_was_called_times(String expectedCallCount) {
-    int expectedValue = Integer.valueOf(expectedCallCount);
-    int actualValue = ProducerPerformance.getCallCount();
-    assertEquals(expectedValue, actualValue);
+  @Then("{string} records were consumed")
+  public void records_were_consumed(String expected) {
+    assertEquals(Long.parseLong(expected), engine.aggregate().getConsumed());
+  }
+
+  @Then("the {string} percentile latency from send to consume is at least {string} ms")
+  public void the_percentile_latency_from_send_to_consume_is_at_least_ms(
+      String percentile, String ms) {
+    double latency =
+        engine.aggregate().getEndToEndLatencyPercentileMs(Double.parseDouble(percentile));
+    assertTrue("latency was " + latency, latency >= Double.parseDouble(ms));
+  }
+
+  @Then("the {string} percentile latency from the scheduled send time is at least {string} ms")
+  public void the_percentile_latency_from_the_scheduled_send_time_is_at_least_ms(
+      String percentile, String ms) {
+    double latency =
+        engine.aggregate().getCorrectedLatencyPercentileMs(Double.parseDouble(percentile));
+    assertTrue("latency was " + latency, latency >= Double.parseDouble(ms));
+  }
+
+  @Then("the records were reported in more than {string} size buckets")
+  public void the_records_were_reported_in_more_than_size_buckets(String expected) {
+    assertTrue(engine.aggregate().getSizeBucketsUsed() > Integer.parseInt(expected));
+  }
+
+  @Then("the records were sent with {string} distinct keys")
+  public void the_records_were_sent_with_distinct_keys(String expected) {
+    Set<String> keys = new HashSet<>();
+    for (MockProducer<byte[], byte[]> mockProducer : mockProducers) {
+      for (ProducerRecord<byte[], byte[]> record : mockProducer.history()) {
+        assertNotNull(record.key());
+        keys.add(new String(record.key(), StandardCharsets.UTF_8));
+      }
+    }
+    assertEquals(Integer.parseInt(expected), keys.size());
+  }
+
+  @Then("the records were sent to partitions {string}")
+  public void the_records_were_sent_to_partitions(String expected) {
+    Set<Integer> partitions = new TreeSet<>();
+    for (MockProducer<byte[], byte[]> mockProducer : mockProducers) {
+      for (ProducerRecord<byte[], byte[]> record : mockProducer.history()) {
+        partitions.add(record.partition());
+      }
+    }
+    assertEquals(expected, partitions.stream().map(String::valueOf).collect(joining(",")));
+  }
+
+  @Then("the slowest partitions were {string}")
+  public void the_slowest_partitions_were(String expected) {
+    Set<Integer> partitions = new TreeSet<>();
+    for (PartitionStats.Group partition :
+        engine.getPartitionStats().snapshot().getSlowestPartitions(Integer.MAX_VALUE)) {
+      partitions.add(partition.getId());
+    }
+    assertEquals(expected, partitions.stream().map(String::valueOf).collect(joining(",")));
+  }
+
+  @Then("broker {string} led every partition and acknowledged {string} records")
+  public void broker_led_every_partition(String broker, String expected) {
+    PartitionStats.Snapshot snapshot = engine.getPartitionStats().snapshot();
+    for (PartitionStats.Group partition : snapshot.getSlowestPartitions(Integer.MAX_VALUE)) {
+      assertEquals(Integer.parseInt(broker), partition.getLeader());
+    }
+    List<PartitionStats.Group> brokers = snapshot.getSlowestBrokers(Integer.MAX_VALUE);
+    assertEquals(1, brokers.size());
+    assertEquals(Integer.parseInt(broker), brokers.get(0).getId());
+    assertEquals(Long.parseLong(expected), brokers.get(0).getAcked());
+  }
+
+  private String getSetting(String setting) {
+    switch (setting) {
+      case "topic":
+        return producer.getTopic();
+      case "payload-file":
+        return producer.getPayloadFilePath();
+      case "payload-delimiter":
+        return producer.getPayloadDelimiter();
+      case "producer-config":
+        return producer.getConfigFilePath();
+      case "record-size":
+        return producer.getRecordSize();
+      case "num-records":
+        return String.valueOf(producer.getNumRecords());
+      case "throughput":
+        return String.valueOf(producer.getThroughput());
+      case "key-distribution":
+        return producer.getKeyDistribution();
+      case "key-cardinality":
+        return String.valueOf(producer.getKeyCardinality());
+      default:
+        fail("Unknown setting " + setting);
+        return null;
+    }
   }
 
   private String[] ensureMinimumArgumentsAreProvided(List<String> testedArgs) {
     List<String> newArgsList = new ArrayList<>(testedArgs);
     Map<String[], String> requiredArgsMap = new HashMap<>();
-    requiredArgsMap.put(new String[] {"--producer-config", "-c"}, "config.config");
+    requiredArgsMap.put(new String[] {"--producer-config", "-c"}, TEST_CONFIG);
     requiredArgsMap.put(new String[] {"--topic", "-t"}, "topic");
 
     for (Map.Entry<String[], String> entry : requiredArgsMap.entrySet()) {
@@ -96,4 +707,44 @@ public class Stepdefs {
 
     return newArgsList.toArray(new String[0]);
   }
+
+  /** A mock producer that blocks once, like a producer whose buffer is full during a stall. */
+  private class StallingMockProducer extends MockProducer<byte[], byte[]> {
+    private int sends;
+    private int commits;
+
+    StallingMockProducer() {
+      super(true, new ByteArraySerializer(), new ByteArraySerializer());
+    }
+
+    StallingMockProducer(Cluster cluster) {
+      super(
+          cluster,
+          true,
+          new DefaultPartitioner(),
+          new ByteArraySerializer(),
+          new ByteArraySerializer());
+    }
+
+    @Override
+    public synchronized Future<RecordMetadata> send(
+        ProducerRecord<byte[], byte[]> record, Callback callback) {
+      if (sends++ == stallAfterRecords) {
+        try {
+          Thread.sleep(stallMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return super.send(record, callback);
+    }
+
+    @Override
+    public void commitTransaction() {
+      if (failEveryCommit > 0 && ++commits % failEveryCommit == 0) {
+        throw new KafkaException("Injected commit failure");
+      }
+      super.commitTransaction();
+    }
+  }
 }
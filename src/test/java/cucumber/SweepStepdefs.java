@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 IBM Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cucumber;
+
+import static org.junit.Assert.*;
+
+import com.ibm.es.producer.ConfigSweep;
+import cucumber.api.java.en.Then;
+import cucumber.api.java.en.When;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class SweepStepdefs {
+
+  private ConfigSweep sweep;
+  private List<Map<String, String>> combinations;
+
+  @When("I parse the sweep {string}")
+  public void i_parse_the_sweep(String spec) {
+    sweep = ConfigSweep.parse(spec);
+  }
+
+  @When("I take {string} samples of the sweep")
+  public void i_take_samples_of_the_sweep(String samples) {
+    combinations = sweep.combinations(Integer.parseInt(samples), 42L);
+  }
+
+  @Then("the sweep has {string} combinations")
+  public void the_sweep_has_combinations(String count) {
+    assertEquals(Long.parseLong(count), sweep.getGridSize());
+  }
+
+  @Then("{string} combinations are run")
+  public void combinations_are_run(String count) {
+    assertEquals(Integer.parseInt(count), combinations.size());
+    assertEquals(combinations.size(), new HashSet<>(combinations).size());
+  }
+
+  @Then("{string} takes the values {string}")
+  public void takes_the_values(String property, String values) {
+    List<String> expected = new ArrayList<>();
+    for (String value : values.split(",")) {
+      expected.add(value);
+    }
+    Set<String> seen = new HashSet<>();
+    for (Map<String, String> combination : sweep.combinations(0, 0L)) {
+      seen.add(combination.get(property));
+    }
+    assertEquals(new HashSet<>(expected), seen);
+  }
+
+  @Then("every value of {string} is used at least {string} times")
+  public void every_value_of_is_used_at_least_times(String property, String times) {
+    Map<String, Integer> uses = new HashMap<>();
+    for (Map<String, String> combination : sweep.combinations(0, 0L)) {
+      uses.put(combination.get(property), 0);
+    }
+    for (Map<String, String> combination : combinations) {
+      uses.merge(combination.get(property), 1, Integer::sum);
+    }
+    for (Map.Entry<String, Integer> use : uses.entrySet()) {
+      assertTrue(use.toString(), use.getValue() >= Integer.parseInt(times));
+    }
+  }
+
+  @Then("the sweep {string} is rejected")
+  public void the_sweep_is_rejected(String spec) {
+    try {
+      ConfigSweep.parse(spec);
+      fail("Expected " + spec + " to be rejected");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+}
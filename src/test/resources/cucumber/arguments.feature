@@ -3,25 +3,25 @@ Feature: Arguments are correctly interpreted
     Scenario Outline: Provided parameters are correctly interpreted
         Given an instance of the es-producer
         When I provide argument "<argument>" of "<value>"
-        And I check the arguments that the Kafka performance script is called with
-        Then it was called with "<producerArgument>" of "<value>"
+        And I configure the es-producer
+        Then the "<setting>" setting is "<value>"
 
         Examples:
-            | argument          | value         | producerArgument  |
-            | --topic           | topic         | --topic           |
-            | --payload-file    | file.txt      | --payload-file    |
-            | --producer-config | config.config | --producer.config |
-            | --record-size     | 1             | --record-size     |
-            | -t                | topic         | --topic           |
-            | -f                | file,txt      | --payload-file    |
-            | -c                | config.config | --producer.config |
-            | -r                | 1             | --record-size     |
+            | argument          | value         | setting         |
+            | --topic           | topic         | topic           |
+            | --payload-file    | file.txt      | payload-file    |
+            | --producer-config | config.config | producer-config |
+            | --record-size     | 1             | record-size     |
+            | -t                | topic         | topic           |
+            | -f                | file,txt      | payload-file    |
+            | -c                | config.config | producer-config |
+            | -r                | 1             | record-size     |
 
     Scenario Outline: Print metrics is correctly interpreted
          Given an instance of the es-producer
          When I provide the print metrics argument "<argument>"
-         And I check the arguments that the Kafka performance script is called with
-         Then it was called with the print metrics argument
+         And I configure the es-producer
+         Then metrics will be printed
 
          Examples:
             | argument        |
@@ -32,16 +32,16 @@ Feature: Arguments are correctly interpreted
         Given an instance of the es-producer
         When I provide argument "--payload-file" of "file.txt"
         When I provide argument "--payload-delimiter" of ";"
-        And I check the arguments that the Kafka performance script is called with
-        Then it was called with "--payload-file" of "file.txt"
-        And it was called with "--payload-delimiter" of ";"
+        And I configure the es-producer
+        Then the "payload-file" setting is "file.txt"
+        And the "payload-delimiter" setting is ";"
 
     Scenario Outline: Size is correctly translated to number of records and throughput
         Given an instance of the es-producer
         When I provide argument "--size" of "<size>"
-        And I check the arguments that the Kafka performance script is called with
-        Then it was called with "--num-records" of "<records>"
-        And it was called with "--throughput" of "<throughput>"
+        And I configure the es-producer
+        Then the "num-records" setting is "<records>"
+        And the "throughput" setting is "<throughput>"
 
         Examples:
             | size   | records | throughput |
@@ -54,23 +54,33 @@ Feature: Arguments are correctly interpreted
          When I provide argument "--size" of "small"
          When I provide argument "--num-records" of "1"
          When I provide argument "--throughput" of "1"
-         And I check the arguments that the Kafka performance script is called with
-         Then it was called with "--num-records" of "60000"
-         And it was called with "--throughput" of "1000"
+         And I configure the es-producer
+         Then the "num-records" setting is "60000"
+         And the "throughput" setting is "1000"
 
     Scenario: If size is not provided but number of records and throughput are, then they are used
         Given an instance of the es-producer
         When I provide argument "--num-records" of "1"
         When I provide argument "--throughput" of "1"
-        And I check the arguments that the Kafka performance script is called with
-        Then it was called with "--num-records" of "1"
-        And it was called with "--throughput" of "1"
+        And I configure the es-producer
+        Then the "num-records" setting is "1"
+        And the "throughput" setting is "1"
 
     Scenario: If --num-threads is specified, that many threads are spawned, and workload is split between them
          Given an instance of the es-producer
          When I provide argument "--num-threads" of "2"
          When I provide argument "--size" of "small"
-         And I check the arguments that the Kafka performance script is called with
-         Then it was called "2" times
-         Then it was called with "--num-records" of "30000"
-         And it was called with "--throughput" of "1000"
\ No newline at end of file
+         And I prepare the producer threads
+         Then "2" producer threads were created
+         And each producer thread was assigned "num-records" of "30000"
+         And the producer threads share a rate limit of "1000" records per second
+
+    Scenario: Records that do not divide evenly are split exactly between the threads
+        Given an instance of the es-producer
+        When I provide argument "--num-threads" of "3"
+        When I provide argument "--num-records" of "10"
+        When I provide argument "--throughput" of "8000"
+        And I prepare the producer threads
+        Then "3" producer threads were created
+        And the producer threads were assigned "10" records in total
+        And the producer threads share a rate limit of "8000" records per second
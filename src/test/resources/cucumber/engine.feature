@@ -0,0 +1,202 @@
+Feature: The load engine sends and measures the workload
+
+    Scenario: Every record is sent through the in-process engine and counted once
+        Given an instance of the es-producer
+        When I provide argument "--num-threads" of "4"
+        When I provide argument "--num-records" of "1000"
+        And I run the es-producer against a mock producer
+        Then "1000" records were acknowledged
+
+    Scenario: Latency is measured from the scheduled send time when the producer stalls
+        Given an instance of the es-producer
+        When I provide argument "--num-records" of "500"
+        When I provide argument "--throughput" of "1000"
+        And the mock producer stalls for "200" ms after "50" records
+        And I run the es-producer against a mock producer
+        Then "500" records were acknowledged
+        And the "99" percentile latency from send is below "50" ms
+        And the "99" percentile latency from the scheduled send time is at least "100" ms
+
+    Scenario: A run with a duration ends when the time is up rather than after a number of records
+        Given an instance of the es-producer
+        When I provide argument "--num-threads" of "2"
+        When I provide argument "--num-records" of "100"
+        When I provide argument "--throughput" of "1000"
+        When I provide argument "--duration" of "500ms"
+        And I run the es-producer against a mock producer
+        Then between "450" and "510" records were acknowledged
+
+    Scenario: Statistics are reported at intervals while the run is in progress
+        Given an instance of the es-producer
+        When I provide argument "--num-threads" of "2"
+        When I provide argument "--throughput" of "2000"
+        When I provide argument "--duration" of "1s"
+        And intervals are reported every "200" ms
+        And I run the es-producer against a mock producer
+        Then at least "3" intervals were reported
+        And the intervals account for no more than the records acknowledged
+
+    Scenario: A dry run acknowledges every record without Kafka or a configuration file
+        Given an instance of the es-producer
+        When I provide argument "--producer-config" of "does-not-exist.config"
+        When I provide argument "--num-threads" of "2"
+        When I provide argument "--num-records" of "1000"
+        And I run the es-producer in a dry run
+        Then between "1000" and "1000" records were acknowledged
+
+    Scenario: A dry run acknowledges records after the configured delay and jitter
+        Given an instance of the es-producer
+        When I provide argument "--num-records" of "200"
+        When I provide argument "--throughput" of "1000"
+        When I provide argument "--dry-run-delay-ms" of "20"
+        When I provide argument "--dry-run-jitter-ms" of "10"
+        And I run the es-producer in a dry run
+        Then between "200" and "200" records were acknowledged
+        And the "50" percentile latency from send is at least "20" ms
+        And the "99" percentile latency from send is below "100" ms
+
+    Scenario: A dry run can measure the latency from send to consume
+        Given an instance of the es-producer
+        When I provide argument "--num-threads" of "2"
+        When I provide argument "--num-records" of "500"
+        When I provide argument "--partitions" of "0,1"
+        When I provide argument "--dry-run-delay-ms" of "10"
+        When I provide the flag "--end-to-end"
+        And I run the es-producer in a dry run
+        Then between "500" and "500" records were acknowledged
+        And "500" records were consumed
+        And the "50" percentile latency from send to consume is at least "10" ms
+
+    Scenario: A trace is replayed with its timing and the order of each key
+        Given an instance of the es-producer
+        When I provide argument "--num-threads" of "3"
+        When I provide a trace of "200" records with "7" keys captured "1" ms apart
+        When I provide argument "--trace-speed" of "2"
+        And I run the es-producer against a mock producer
+        Then "200" records were acknowledged
+        And each key was sent through a single producer
+        And the records of each key were sent in the order of the trace
+        And the records took at least "90" ms to send
+
+    Scenario: Simulated clients share the records and each send at their own rate
+        Given an instance of the es-producer
+        When I provide argument "--clients" of "200"
+        When I provide argument "--client-rate" of "20"
+        When I provide argument "--num-threads" of "2"
+        When I provide argument "--num-records" of "2000"
+        And I run the es-producer against a mock producer
+        Then "2000" records were acknowledged
+        And "200" simulated clients each had their own producer
+        And the records took at least "450" ms to send
+
+    Scenario: Simulated clients run for a duration and can start one after another
+        Given an instance of the es-producer
+        When I provide argument "--clients" of "50"
+        When I provide argument "--client-rate" of "10"
+        When I provide argument "--client-ramp" of "100ms"
+        When I provide argument "--duration" of "1s"
+        And I run the es-producer against a mock producer
+        Then between "500" and "500" records were acknowledged
+
+    Scenario: Producer threads can share a single producer
+        Given an instance of the es-producer
+        When I provide argument "--num-threads" of "4"
+        When I provide argument "--num-producers" of "1"
+        When I provide argument "--num-records" of "1000"
+        And I run the es-producer against a mock producer
+        Then "1000" records were acknowledged
+        And "1" producers were created
+
+    Scenario: Records can be assigned to producers by key
+        Given an instance of the es-producer
+        When I provide argument "--num-threads" of "4"
+        When I provide argument "--num-producers" of "3"
+        When I provide argument "--producer-assignment" of "key"
+        When I provide argument "--key-distribution" of "uniform"
+        When I provide argument "--key-cardinality" of "20"
+        When I provide argument "--num-records" of "1000"
+        And I run the es-producer against a mock producer
+        Then "1000" records were acknowledged
+        And "3" producers were created
+        And each key was sent through a single producer
+
+    Scenario: Latency can be broken down by partition and broker
+        Given an instance of the es-producer
+        And the topic has "6" partitions led by "2" brokers
+        When I provide argument "--num-threads" of "2"
+        When I provide argument "--num-records" of "1000"
+        When I provide argument "--partitions" of "3,5"
+        When I provide the flag "--partition-breakdown"
+        And I run the es-producer against a mock producer
+        Then "1000" records were acknowledged
+        And the slowest partitions were "3,5"
+        And broker "1" led every partition and acknowledged "1000" records
+
+    Scenario: Producer instances can override the shared configuration
+        Given an instance of the es-producer
+        When I provide argument "--num-threads" of "2"
+        When I provide argument "--num-records" of "10"
+        And the producer config also sets "linger.ms" to "5"
+        And the producer config also sets "instance.1.linger.ms" to "20"
+        And I run the es-producer against a mock producer
+        Then producers were created with "linger.ms" set to each of "5,20"
+        And no producer was created with a property starting "instance."
+
+    Scenario: Codecs are compared without sending
+        Given an instance of the es-producer
+        When I provide argument "--payload-content" of "ratio:0.5"
+        When I provide argument "--duration" of "50ms"
+        When I provide the flag "--compare-codecs"
+        And I run the es-producer tool against a mock producer
+        Then the exit code is "0"
+        And "0" producers were created
+
+    Scenario: Transactional producers commit every few records and count aborted transactions
+        Given an instance of the es-producer
+        When I provide argument "--num-threads" of "2"
+        When I provide argument "--num-records" of "100"
+        When I provide argument "--delivery-mode" of "transactional"
+        When I provide argument "--transaction-records" of "10"
+        And every "5" transaction of each mock producer fails to commit
+        And I run the es-producer against a mock producer
+        Then "8" transactions were committed and "2" aborted
+        And producers were created with "transactional.id" set to each of "es-producer-0,es-producer-1"
+        And producers were created with "enable.idempotence" set to each of "true"
+        And producers were created with "acks" set to each of "all"
+
+    Scenario: Warm-up records are sent before the run and kept out of its statistics
+        Given an instance of the es-producer
+        When I provide argument "--num-threads" of "2"
+        When I provide argument "--num-records" of "100"
+        When I provide argument "--warm-up-records" of "41"
+        And I run the es-producer against a mock producer
+        Then "100" records were acknowledged after "41" warm-up records
+
+    Scenario: The resources used by the tool itself are sampled during the run
+        Given an instance of the es-producer
+        When I provide argument "--num-threads" of "2"
+        When I provide argument "--duration" of "300ms"
+        And I sample resources while the es-producer runs against a mock producer
+        Then the sender threads were busy and the heap was measured
+
+    Scenario: The resources used by the tool itself are sampled in runs shorter than an interval
+        Given an instance of the es-producer
+        When I provide argument "--num-threads" of "2"
+        When I provide argument "--report-interval" of "0"
+        When I provide argument "--duration" of "2s"
+        When I provide the flag "--resource-usage"
+        And I run the es-producer tool against a mock producer and capture its output
+        Then the exit code is "0"
+        And the output has a line matching "^Resources at their highest during the run: busiest sender thread [1-9]"
+
+    Scenario: Waiting for the rate limiter is not reported as CPU-bound
+        Given an instance of the es-producer
+        When I provide argument "--throughput" of "30000"
+        When I provide argument "--report-interval" of "0"
+        When I provide argument "--duration" of "2s"
+        When I provide the flag "--dry-run"
+        When I provide the flag "--resource-usage"
+        And I run the es-producer tool against a mock producer and capture its output
+        Then the exit code is "0"
+        And the output has a line matching "^Resources at their highest during the run"
+        And the output has no line matching "CPU-bound"
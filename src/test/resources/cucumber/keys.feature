@@ -0,0 +1,47 @@
+Feature: Record keys can follow a distribution
+
+    Scenario: Records have no key by default
+        Given a key distribution of "none" with "1000" keys
+        Then records have no key
+
+    Scenario: Sequential keys cycle through every key in turn
+        Given a key distribution of "sequential" with "100" keys
+        When "1000" keys are chosen
+        Then every key was chosen "10" times
+
+    Scenario Outline: Skewed key distributions concentrate records on a few keys
+        Given a key distribution of "<key-distribution>" with "<cardinality>" keys
+        When "100000" keys are chosen
+        Then the most frequent key took between "<min>" and "<max>" percent of the records
+
+        Examples:
+            | key-distribution | cardinality | min | max |
+            | uniform          | 10          | 8   | 12  |
+            | zipf:1.0         | 100         | 17  | 22  |
+            | hotkey:0.5       | 100         | 48  | 52  |
+
+    Scenario: Uniform keys reach every key
+        Given a key distribution of "uniform" with "100" keys
+        When "100000" keys are chosen
+        Then every key was chosen
+
+    Scenario Outline: Invalid key distributions are rejected
+        Then the key distribution "<key-distribution>" is rejected
+
+        Examples:
+            | key-distribution |
+            | random           |
+            | zipf             |
+            | hotkey:2         |
+
+    Scenario: Keyed records are spread over the pinned partitions
+        Given an instance of the es-producer
+        When I provide argument "--key-distribution" of "sequential"
+        When I provide argument "--key-cardinality" of "10"
+        When I provide argument "--partitions" of "3,5"
+        When I provide argument "--num-threads" of "2"
+        When I provide argument "--num-records" of "1000"
+        And I run the es-producer against a mock producer
+        Then "1000" records were acknowledged
+        And the records were sent with "10" distinct keys
+        And the records were sent to partitions "3,5"
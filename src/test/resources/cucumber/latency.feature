@@ -0,0 +1,24 @@
+Feature: Latencies are recorded into mergeable histograms
+
+    Scenario Outline: Percentiles are accurate to within one percent
+        Given a latency histogram
+        When latencies from "1" to "<max>" microseconds are recorded
+        Then the "<percentile>" percentile is within one percent of "<expected>" microseconds
+
+        Examples:
+            | max     | percentile | expected |
+            | 100     | 50         | 50       |
+            | 100000  | 50         | 50000    |
+            | 100000  | 99         | 99000    |
+            | 100000  | 99.9       | 99900    |
+            | 5000000 | 99.99      | 4999500  |
+
+    Scenario: Histograms from different threads are merged into one distribution
+        Given a latency histogram
+        And another latency histogram
+        When latencies from "1" to "1000" microseconds are recorded
+        And latencies from "100001" to "101000" microseconds are recorded in the other histogram
+        And the histograms are merged
+        Then the merged histogram holds "2000" latencies
+        And the "25" percentile is within one percent of "500" microseconds
+        And the "75" percentile is within one percent of "100500" microseconds
@@ -0,0 +1,24 @@
+Feature: Live statistics are exposed while the run is in progress
+
+    Scenario: The statistics are served in the Prometheus text format
+        Given an instance of the es-producer
+        When I provide argument "--num-threads" of "2"
+        When I provide argument "--num-records" of "1000"
+        When I provide argument "--record-size" of "10"
+        And I run the es-producer against a mock producer
+        And I scrape the live metrics endpoint
+        Then the scraped metrics include "# TYPE es_producer_records_acknowledged_total counter"
+        And the scraped metrics include "es_producer_records_acknowledged_total 1000"
+        And the scraped metrics include "es_producer_acknowledged_bytes_total 10000"
+        And the scraped metrics include "es_producer_errors_total 0"
+        And the scraped metrics include "es_producer_records_in_flight 0"
+        And the scraped metrics include "es_producer_latency_ms_count 1000"
+
+    Scenario: The statistics are registered as a JMX MBean
+        Given an instance of the es-producer
+        When I provide argument "--num-records" of "500"
+        And I run the es-producer against a mock producer
+        And I read the live metrics over JMX
+        Then the JMX attribute "RecordsAcknowledged" is "500"
+        And the JMX attribute "Errors" is "0"
+        And the JMX attribute "RecordsInFlight" is "0"
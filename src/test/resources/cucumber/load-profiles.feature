@@ -0,0 +1,52 @@
+Feature: The target rate can follow a load profile
+
+    Scenario Outline: Each kind of phase sets the rate over time
+        Given a load profile of "<load-profile>"
+        Then the rate at "<seconds>" seconds is "<rate>" records per second
+        And the load profile lasts "<length>" seconds
+
+        Examples:
+            | load-profile                        | seconds | rate | length |
+            | constant:500:10s                    | 5       | 500  | 10     |
+            | ramp:1000-5000:40s                  | 10      | 2000 | 40     |
+            | step:1000-4000:1000:30s             | 65      | 3000 | 120    |
+            | sine:1000:500:20s:1m                | 5       | 1500 | 60     |
+            | burst:100:5000:500ms:5s:1m          | 10.25   | 5000 | 60     |
+            | burst:100:5000:500ms:5s:1m          | 11      | 100  | 60     |
+            | constant:100:10s,ramp:100-200:10s   | 15      | 150  | 20     |
+            | ramp:100-200:10s                    | 3600    | 200  | 10     |
+
+    Scenario: Permits follow a ramp
+        Given a load profile of "ramp:0-2000:2s,constant:2000:1m"
+        When the first "5000" permits are scheduled
+        Then between "490" and "510" permits were scheduled in the first "1" seconds
+        And between "1990" and "2010" permits were scheduled in the first "2" seconds
+        And between "3990" and "4010" permits were scheduled in the first "3" seconds
+
+    Scenario: Permits follow bursts
+        Given a load profile of "burst:10:1000:1s:2s:1m"
+        When the first "2000" permits are scheduled
+        Then between "1000" and "1002" permits were scheduled in the first "1" seconds
+        And between "1009" and "1012" permits were scheduled in the first "2" seconds
+
+    Scenario Outline: Invalid load profiles are rejected
+        Then the load profile "<load-profile>" is rejected
+
+        Examples:
+            | load-profile             |
+            | constant:100             |
+            | ramp:100:10s             |
+            | ramp:100-0:10s           |
+            | sine:100:200:10s:1m      |
+            | burst:1:10:5s:1s:1m      |
+            | wave:100:10s             |
+            | constant:100:-5s         |
+            | file:missing             |
+
+    Scenario: A load profile overrides the throughput
+        Given an instance of the es-producer
+        When I provide argument "--throughput" of "10"
+        When I provide argument "--load-profile" of "constant:100000:1m"
+        When I provide argument "--num-records" of "1000"
+        And I run the es-producer against a mock producer
+        Then "1000" records were acknowledged
@@ -0,0 +1,52 @@
+Feature: Payload files are indexed once and shared by every thread
+
+    Scenario Outline: Text payload files are split on the delimiter
+        Given a payload file containing "<content>"
+        When the payload file is opened as "text" with delimiter "<delimiter>"
+        Then the payload file holds "<count>" payloads
+        And payload "<index>" is "<payload>"
+
+        Examples:
+            | content              | delimiter | count | index | payload |
+            | one\\ntwo\\nthree    | \\n       | 3     | 1     | two     |
+            | one\\ntwo\\nthree\\n | \\n       | 3     | 2     | three   |
+            | a;b;;c               | ;         | 3     | 2     | c       |
+            | first--second        | --        | 2     | 1     | second  |
+            | aaab                 | aab       | 1     | 0     | a       |
+            | héllo\\nwörld        | \\n       | 2     | 1     | wörld   |
+
+    Scenario: Binary payload files use length-prefixed payloads
+        Given a binary payload file with payloads "alpha,be\nta,gamma"
+        When the payload file is opened as "binary" with delimiter "\n"
+        Then the payload file holds "3" payloads
+        And payload "1" is "be\nta"
+
+    Scenario Outline: Generated payload pools are cycled through without generating new payloads
+        Given a payload pool of "4" payloads of "10" bytes stored "<storage>"
+        When "8" payloads are read from the pool
+        Then "4" distinct payloads were read
+        And every payload read was "10" bytes
+
+        Examples:
+            | storage  |
+            | on-heap  |
+            | off-heap |
+
+    Scenario Outline: Generated payloads compress as much as their content allows
+        Given a payload pool of "256" payloads of "1024" bytes containing "<content>"
+        When "256" payloads are read from the pool
+        Then every payload read was "1024" bytes
+        And the payloads read compress with "<codec>" to between "<min>" and "<max>" of their size
+
+        Examples:
+            | content   | codec | min  | max  |
+            | random    | lz4   | 0.98 | 1.05 |
+            | ratio:0.3 | lz4   | 0.25 | 0.45 |
+            | ratio:0.6 | gzip  | 0.55 | 0.75 |
+            | entropy:0 | zstd  | 0    | 0.05 |
+
+    Scenario: Template payloads fill in their placeholders
+        Given a payload template "{\"id\": ${int:1-100}, \"status\": \"${choice:new|done}\", \"ref\": \"${string:4}\"}"
+        When "16" payloads are read from the pool
+        Then "16" distinct payloads were read
+        And every payload read matches "\{\"id\": \d{1,3}, \"status\": \"(new|done)\", \"ref\": \"[\w-]{4}\"\}"
@@ -0,0 +1,39 @@
+Feature: Record sizes can follow a distribution
+
+    Scenario Outline: Sampled record sizes follow the distribution
+        Given a record size of "<record-size>"
+        When "10000" record sizes are sampled
+        Then every sampled size is between "<min>" and "<max>" bytes
+        And the median sampled size is within five percent of "<median>" bytes
+
+        Examples:
+            | record-size        | min  | max     | median |
+            | 100                | 100  | 100     | 100    |
+            | uniform:100-200    | 100  | 200     | 150    |
+            | normal:1000,100    | 500  | 1500    | 1000   |
+            | lognormal:512,1.0  | 1    | 1000000 | 512    |
+
+    Scenario: A weighted histogram file gives mostly small records with occasional large ones
+        Given a record size histogram file containing "200 990" and "204800 10"
+        When "10000" record sizes are sampled
+        Then every sampled size is between "200" and "204800" bytes
+        And between "50" and "200" sampled sizes are "204800" bytes
+
+    Scenario Outline: Invalid record sizes are rejected
+        Then the record size "<record-size>" is rejected
+
+        Examples:
+            | record-size     |
+            | -1              |
+            | uniform:200-100 |
+            | normal:100      |
+            | zipf:1.0        |
+            | file:missing    |
+
+    Scenario: Results are broken down by record size
+        Given an instance of the es-producer
+        When I provide argument "--record-size" of "uniform:1-4000"
+        When I provide argument "--num-records" of "2000"
+        And I run the es-producer against a mock producer
+        Then "2000" records were acknowledged
+        And the records were reported in more than "5" size buckets
@@ -0,0 +1,37 @@
+Feature: Results can be written for other tools and compared against a baseline
+
+    Scenario: The results are written as JSON with the configuration of the run
+        Given an instance of the es-producer
+        When I provide argument "--num-records" of "1000"
+        When I provide argument "--results-json" of a temporary "json" file
+        And I run the es-producer tool against a mock producer
+        Then the exit code is "0"
+        And the "--results-json" file contains '"topic": "topic"'
+        And the "--results-json" file contains '"bootstrap.servers": "localhost:9092"'
+        And the "--results-json" file contains '"records": 1000'
+        And the "--results-json" file contains '"errors": 0'
+        And the "--results-json" file contains '"p99": '
+
+    Scenario: The statistics of every interval are written as CSV
+        Given an instance of the es-producer
+        When I provide argument "--throughput" of "1000"
+        When I provide argument "--duration" of "1500ms"
+        When I provide argument "--report-interval" of "1"
+        When I provide argument "--results-csv" of a temporary "csv" file
+        And I run the es-producer tool against a mock producer
+        Then the exit code is "0"
+        And the "--results-csv" file has "1" lines starting with "type,elapsed_seconds,records"
+        And the "--results-csv" file has "1" lines starting with "interval,"
+        And the "--results-csv" file has "1" lines starting with "total,"
+
+    Scenario Outline: A run is compared against a baseline
+        Given an instance of the es-producer
+        When I provide argument "--num-records" of "1000"
+        When I provide argument "--baseline" of a baseline with "<throughput>" records per second and "<p99>" ms 99th percentile latency
+        And I run the es-producer tool against a mock producer
+        Then the exit code is "<exit-code>"
+
+        Examples:
+            | throughput    | p99     | exit-code |
+            | 1             | 1000000 | 0         |
+            | 1000000000000 | 1000000 | 2         |
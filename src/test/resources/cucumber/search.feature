@@ -0,0 +1,32 @@
+Feature: The highest rate that meets a latency objective can be searched for
+
+    Scenario: A bisection search converges on the highest passing rate
+        Given a cluster that keeps latency within the objective up to "37000" records per second
+        When a "bisect" search starts at "1000" records per second with at most "30" probes
+        Then the best rate found is between "35150" and "37000" records per second
+
+    Scenario: An AIMD search reports the best rate it reached
+        Given a cluster that keeps latency within the objective up to "5000" records per second
+        When a "aimd" search starts at "1000" records per second with at most "60" probes
+        Then the best rate found is between "4900" and "5000" records per second
+
+    Scenario: The search stops after the maximum number of probes
+        Given a cluster that keeps latency within the objective up to "1000000" records per second
+        When a "bisect" search starts at "1000" records per second with at most "4" probes
+        Then the best rate found is between "8000" and "8000" records per second
+        And the curve holds "4" probes in order of rate
+
+    Scenario: Probes fail on errors or when the target rate is not reached
+        Then a probe that falls short of its target rate fails
+
+    Scenario: The search probes a running engine
+        Given an instance of the es-producer
+        When I provide argument "--search" of "bisect"
+        When I provide argument "--slo-ms" of "1000"
+        When I provide argument "--probe-duration" of "250ms"
+        When I provide argument "--search-start" of "200"
+        When I provide argument "--search-max-probes" of "2"
+        And I run the es-producer tool against a mock producer and capture its output
+        Then the exit code is "0"
+        And the output has a line matching "^target 200\.0 records/sec, achieved [1-9]"
+        And the output has a line matching "^target 400\.0 records/sec, achieved [1-9]"
@@ -0,0 +1,45 @@
+Feature: Producer configurations can be compared with a sweep
+
+    Scenario: Every combination of the listed values is run
+        When I parse the sweep "acks=1,all;linger.ms=0,5,20"
+        Then the sweep has "6" combinations
+        And "acks" takes the values "1,all"
+        And "linger.ms" takes the values "0,5,20"
+
+    Scenario: Values can be given as ranges
+        When I parse the sweep "batch.size=16384..131072*2;linger.ms=0..20+10"
+        Then the sweep has "12" combinations
+        And "batch.size" takes the values "16384,32768,65536,131072"
+        And "linger.ms" takes the values "0,10,20"
+
+    Scenario: A sample of the combinations uses every value
+        When I parse the sweep "batch.size=16384..524288*2;linger.ms=0..50+10;compression.type=none,lz4,zstd"
+        And I take "12" samples of the sweep
+        Then "12" combinations are run
+        And every value of "batch.size" is used at least "2" times
+        And every value of "linger.ms" is used at least "2" times
+        And every value of "compression.type" is used at least "4" times
+
+    Scenario Outline: Invalid sweeps are rejected
+        Then the sweep "<sweep>" is rejected
+
+        Examples:
+            | sweep                  |
+            | acks                   |
+            | acks=                  |
+            | linger.ms=20..0+10     |
+            | linger.ms=0..20+0      |
+            | batch.size=1..10*1     |
+            | linger.ms=0..100000+1  |
+            | file:/does/not/exist   |
+
+    Scenario: Each combination runs with its own producers
+        Given an instance of the es-producer
+        When I provide argument "--sweep" of "linger.ms=0,5;acks=1,all"
+        When I provide argument "--num-threads" of "2"
+        When I provide argument "--duration" of "100ms"
+        When I provide argument "--throughput" of "1000"
+        And I run the es-producer tool against a mock producer
+        Then the exit code is "0"
+        And producers were created with "linger.ms" set to each of "0,5"
+        And producers were created with "acks" set to each of "1,all"